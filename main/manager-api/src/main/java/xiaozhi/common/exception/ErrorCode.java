@@ -251,4 +251,8 @@ public interface ErrorCode {
     int AGENT_TAG_NOT_EXIST = 10198; // 标签不存在
 
     int RAG_DOCUMENT_PARSING_DELETE_ERROR = 10199; // 文档解析中，禁止删除
+
+    // 聊天记录上报相关错误码
+    int CHAT_REPORT_BUSY = 10200; // 聊天记录上报队列已满，稍后重试
+    int CHAT_REPORT_FORMAT_ERROR = 10201; // 聊天上报数据格式错误
 }
@@ -0,0 +1,59 @@
+package xiaozhi.common.redis;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 本地缓存加载保护
+ * <p>
+ * 加载前按key登记，失效时撤销对应key的登记。加载完成后先写入缓存再确认登记，
+ * 确认失败说明加载期间发生了失效，由调用方撤回刚写入的值，不会把失效前读到的旧值留在缓存中。
+ * 只影响同一key的加载，其他key的失效不会丢弃正在进行的加载。
+ *
+ * @param <K> 缓存key类型
+ */
+public class CacheLoadGuard<K> {
+    private final ConcurrentHashMap<K, Object> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 开始加载
+     *
+     * @param key 缓存key
+     * @return 加载凭证，写入缓存后交给 {@link #confirm}
+     */
+    public Object begin(K key) {
+        Object ticket = new Object();
+        loading.put(key, ticket);
+        return ticket;
+    }
+
+    /**
+     * 确认加载结果，应在写入缓存之后调用
+     *
+     * @return 加载期间未发生失效时返回true，返回false时调用方应撤回写入的值
+     */
+    public boolean confirm(K key, Object ticket) {
+        return loading.remove(key, ticket);
+    }
+
+    /**
+     * 失效单个key，应在清除缓存之后调用
+     */
+    public void invalidate(K key) {
+        loading.remove(key);
+    }
+
+    /**
+     * 失效满足条件的key
+     */
+    public void invalidateIf(Predicate<K> predicate) {
+        loading.keySet().removeIf(predicate);
+    }
+
+    /**
+     * 失效全部key
+     */
+    public void invalidateAll() {
+        loading.clear();
+    }
+}
@@ -0,0 +1,59 @@
+package xiaozhi.common.redis;
+
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 后台任务锁
+ * <p>
+ * 多节点部署时，迁移、清理等后台任务只在取得锁的节点上运行。锁带过期时间，持有锁的节点异常退出后自动释放；
+ * 运行时间较长的任务需要在过期前续期。
+ */
+@Component
+@RequiredArgsConstructor
+public class ClusterJobLock {
+    private final RedisUtils redisUtils;
+
+    /**
+     * 本节点的标识，续期和释放时只处理本节点持有的锁
+     */
+    private final String owner = UUID.randomUUID().toString();
+
+    /**
+     * 尝试取得锁
+     *
+     * @param job           任务名称
+     * @param expireSeconds 锁的过期时间，单位：秒
+     * @return 是否取得锁，其他节点正在运行该任务时返回false
+     */
+    public boolean tryAcquire(String job, long expireSeconds) {
+        return Boolean.TRUE.equals(redisUtils.setIfAbsent(RedisKeys.getJobLockKey(job), owner, expireSeconds));
+    }
+
+    /**
+     * 续期本节点持有的锁
+     *
+     * @return 是否仍持有锁，返回false时任务应停止
+     */
+    public boolean renew(String job, long expireSeconds) {
+        String key = RedisKeys.getJobLockKey(job);
+        if (!owner.equals(redisUtils.get(key))) {
+            return false;
+        }
+        redisUtils.expire(key, expireSeconds);
+        return true;
+    }
+
+    /**
+     * 释放本节点持有的锁
+     */
+    public void release(String job) {
+        String key = RedisKeys.getJobLockKey(job);
+        if (owner.equals(redisUtils.get(key))) {
+            redisUtils.delete(key);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package xiaozhi.common.redis;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.utils.TransactionUtils;
+
+/**
+ * 本地缓存跨节点失效
+ * <p>
+ * 本节点在事务提交后清除本地缓存，再在Redis频道上广播，其他节点收到消息后清除各自的缓存。
+ */
+@Component
+@RequiredArgsConstructor
+public class LocalCacheInvalidator {
+    private final RedisUtils redisUtils;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 订阅失效通知
+     *
+     * @param listener 接收反序列化后的消息内容
+     * @param channels 频道
+     */
+    public void subscribe(Consumer<Object> listener, String... channels) {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> listener.accept(redisTemplate.getValueSerializer().deserialize(message.getBody())),
+                Arrays.stream(channels).map(ChannelTopic::new).toList());
+    }
+
+    /**
+     * 处于事务中时在提交后清除本节点缓存并广播，否则立即执行
+     *
+     * @param local   清除本节点缓存
+     * @param channel 频道
+     * @param message 消息内容
+     */
+    public void invalidateAfterCommit(Runnable local, String channel, Object message) {
+        TransactionUtils.afterCommit(() -> {
+            local.run();
+            redisUtils.publish(channel, message);
+        });
+    }
+}
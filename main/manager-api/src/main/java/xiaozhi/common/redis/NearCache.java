@@ -0,0 +1,262 @@
+package xiaozhi.common.redis;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Redis本地近端缓存
+ * <p>
+ * 位于RedisUtils之下，只缓存配置了前缀的key。缓存的是序列化后的字节，命中时重新反序列化，
+ * 调用方拿到的始终是独立的对象，修改返回值不会污染缓存。
+ * 通过RedisUtils写入或删除时先清除本地缓存，再在Redis频道上广播key，其他节点收到后清除各自的缓存。
+ */
+@Slf4j
+@Component
+public class NearCache implements MessageListener {
+    /**
+     * 清空全部缓存的广播内容
+     */
+    private static final String ALL = "*";
+    /**
+     * hash字段缓存key的分隔符
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+    /**
+     * hGetAll缓存key的后缀
+     */
+    private static final String ENTRIES_SUFFIX = FIELD_SEPARATOR + "*";
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final NearCacheProperties properties;
+    private final Cache<String, Object> cache;
+    /**
+     * 已缓存过hash字段的key，清除时需要连同字段一起清除
+     */
+    private final Set<String> hashKeys = ConcurrentHashMap.newKeySet();
+    private final CacheLoadGuard<String> loadGuard = new CacheLoadGuard<>();
+    private final LongAdder localInvalidations = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    public NearCache(NearCacheProperties properties) {
+        this.properties = properties;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 开启时订阅其他节点的失效通知
+     */
+    @PostConstruct
+    public void subscribe() {
+        if (properties.isEnabled()) {
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(properties.getChannel()));
+        }
+    }
+
+    /**
+     * key是否走本地缓存
+     */
+    public boolean accepts(String key) {
+        if (!properties.isEnabled() || key == null) {
+            return false;
+        }
+        for (String prefix : properties.getKeyPrefixes()) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取普通值，未命中时从loader加载，空值不缓存
+     */
+    public Object get(String key, Supplier<Object> loader) {
+        return load(key, loader);
+    }
+
+    /**
+     * 读取hash字段，未命中时从loader加载，空值不缓存
+     */
+    public Object hGet(String key, String field, Supplier<Object> loader) {
+        hashKeys.add(key);
+        return load(key + FIELD_SEPARATOR + field, loader);
+    }
+
+    /**
+     * 读取整个hash，未命中时从loader加载，空hash不缓存
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> hGetAll(String key, Supplier<Map<String, Object>> loader) {
+        hashKeys.add(key);
+        String cacheKey = key + ENTRIES_SUFFIX;
+        Map<String, byte[]> cached = (Map<String, byte[]>) cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            Map<String, Object> entries = new LinkedHashMap<>(cached.size());
+            cached.forEach((field, bytes) -> entries.put(field, serializer().deserialize(bytes)));
+            return entries;
+        }
+        Object ticket = loadGuard.begin(cacheKey);
+        Map<String, Object> entries = loader.get();
+        if (entries != null && !entries.isEmpty()) {
+            Map<String, byte[]> serialized = new HashMap<>(entries.size());
+            entries.forEach((field, value) -> serialized.put(field, serializer().serialize(value)));
+            store(cacheKey, serialized, ticket);
+        }
+        return entries;
+    }
+
+    /**
+     * 清除本节点缓存并通知其他节点
+     */
+    public void invalidate(String key) {
+        if (!accepts(key)) {
+            return;
+        }
+        evict(key);
+        localInvalidations.increment();
+        publish(key);
+    }
+
+    public void invalidate(Collection<String> keys) {
+        for (String key : keys) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * 清空本节点缓存并通知其他节点
+     */
+    public void invalidateAll() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        cache.invalidateAll();
+        loadGuard.invalidateAll();
+        localInvalidations.increment();
+        publish(ALL);
+    }
+
+    /**
+     * 只清空本节点缓存，不通知其他节点
+     */
+    public void clearLocal() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        cache.invalidateAll();
+        loadGuard.invalidateAll();
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object key = serializer().deserialize(message.getBody());
+        if (!(key instanceof String str)) {
+            return;
+        }
+        remoteInvalidations.increment();
+        if (ALL.equals(str)) {
+            cache.invalidateAll();
+            loadGuard.invalidateAll();
+        } else {
+            evict(str);
+        }
+    }
+
+    /**
+     * 命中率等统计信息
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("size", cache.size());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("localInvalidations", localInvalidations.sum());
+        result.put("remoteInvalidations", remoteInvalidations.sum());
+        return result;
+    }
+
+    private Object load(String cacheKey, Supplier<Object> loader) {
+        byte[] cached = (byte[]) cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return serializer().deserialize(cached);
+        }
+        Object ticket = loadGuard.begin(cacheKey);
+        Object value = loader.get();
+        if (value != null) {
+            store(cacheKey, serializer().serialize(value), ticket);
+        }
+        return value;
+    }
+
+    /**
+     * 加载期间key被失效时撤回写入的值，避免失效前从Redis读到的旧值留在缓存中
+     */
+    private void store(String cacheKey, Object value, Object ticket) {
+        cache.put(cacheKey, value);
+        if (!loadGuard.confirm(cacheKey, ticket)) {
+            cache.invalidate(cacheKey);
+        }
+    }
+
+    private void evict(String key) {
+        cache.invalidate(key);
+        loadGuard.invalidate(key);
+        if (hashKeys.contains(key)) {
+            String prefix = key + FIELD_SEPARATOR;
+            cache.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+            loadGuard.invalidateIf(k -> k.startsWith(prefix));
+        }
+    }
+
+    private void publish(String key) {
+        try {
+            redisTemplate.convertAndSend(properties.getChannel(), key);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖过期时间兜底
+            log.warn("近端缓存失效通知发送失败，key：{}，原因：{}", key, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> serializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+}
@@ -0,0 +1,44 @@
+package xiaozhi.common.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * 本地近端缓存配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "renren.redis.near-cache")
+public class NearCacheProperties {
+    /**
+     * 是否开启本地近端缓存
+     */
+    private boolean enabled = false;
+    /**
+     * 最大缓存条目数，超出后按最近最少使用淘汰
+     */
+    private long maximumSize = 10000;
+    /**
+     * 写入后过期时长，单位：秒
+     */
+    private long expireSeconds = 60;
+    /**
+     * 失效通知的Redis频道
+     */
+    private String channel = "near-cache:invalidate";
+    /**
+     * 允许本地缓存的key前缀，只应包含读多写少且只通过RedisUtils写入的key
+     */
+    private List<String> keyPrefixes = new ArrayList<>(List.of(
+            "sys:dict:data:",
+            "sys:username:id:",
+            "model:name:",
+            "model:data:",
+            "timbre:name:",
+            "timbre:details:",
+            "agent:device:count:",
+            RedisKeys.getServerConfigKey()));
+}
@@ -1,8 +1,10 @@
 package xiaozhi.common.redis;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -15,6 +17,7 @@ import jakarta.annotation.Resource;
  * Website: https://www.renren.io
  */
 @Configuration
+@EnableConfigurationProperties(NearCacheProperties.class)
 public class RedisConfig {
     @Resource
     private RedisConnectionFactory factory;
@@ -30,4 +33,14 @@ public class RedisConfig {
 
         return redisTemplate;
     }
+
+    /**
+     * Redis频道订阅容器，近端缓存失效通知、配置变更通知等共用
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer() {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        return container;
+    }
 }
\ No newline at end of file
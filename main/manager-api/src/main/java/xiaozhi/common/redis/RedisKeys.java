@@ -76,6 +76,13 @@ public class RedisKeys {
         return "server:config";
     }
 
+    /**
+     * 获取系统配置缓存对应的全局配置版本号key
+     */
+    public static String getServerConfigVersionKey() {
+        return "server:config:version";
+    }
+
     /**
      * 获取音色详情缓存key
      */
@@ -91,17 +98,10 @@ public class RedisKeys {
     }
 
     /**
-     * OTA固件ID的Key
-     */
-    public static String getOtaIdKey(String uuid) {
-        return "ota:id:" + uuid;
-    }
-
-    /**
-     * OTA固件下载次数的Key
+     * OTA固件下载令牌的Key，保存下载目标、次数上限和已下载次数
      */
-    public static String getOtaDownloadCountKey(String uuid) {
-        return "ota:download:count:" + uuid;
+    public static String getOtaDownloadTokenKey(String token) {
+        return "ota:download:token:" + token;
     }
 
     /**
@@ -187,4 +187,46 @@ public class RedisKeys {
     public static String getOtaUploadCountKey(Long username) {
         return "ota:upload:count:" + username;
     }
+
+    /**
+     * 固件文件保护标记，存在期间文件没有引用也不会被删除
+     */
+    public static String getOtaBlobPinKey(String fileName) {
+        return "ota:blob:pin:" + fileName;
+    }
+
+    /**
+     * 后台任务锁，多节点部署时同一任务只在一个节点上运行
+     */
+    public static String getJobLockKey(String job) {
+        return "job:lock:" + job;
+    }
+
+    /**
+     * 全局配置版本号Key（系统参数、模型配置、音色等变更时递增）
+     */
+    public static String getConfigVersionKey() {
+        return "config:version";
+    }
+
+    /**
+     * 智能体配置版本号Key（智能体、插件映射、声纹等变更时递增）
+     */
+    public static String getAgentConfigVersionKey(String agentId) {
+        return "config:version:agent:" + agentId;
+    }
+
+    /**
+     * 各WebSocket节点上报的负载，field为节点地址
+     */
+    public static String getServerWebSocketLoadKey() {
+        return "server:ws:load";
+    }
+
+    /**
+     * 批量调用设备工具任务进度
+     */
+    public static String getDeviceToolsBatchKey(String taskId) {
+        return "device:tools:batch:" + taskId;
+    }
 }
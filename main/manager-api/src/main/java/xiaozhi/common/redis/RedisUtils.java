@@ -8,7 +8,10 @@ import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
@@ -28,6 +31,12 @@ public class RedisUtils {
     @Autowired
     private ResourcesUtils resourceUtils;
 
+    /**
+     * 本地近端缓存，未开启时直接访问Redis
+     */
+    @Autowired
+    private NearCache nearCache;
+
     /**
      * 默认过期时长为24小时，单位：秒
      */
@@ -47,6 +56,7 @@ public class RedisUtils {
 
     public Long increment(String key, long expire) {
         Long increment = redisTemplate.opsForValue().increment(key, 1L);
+        nearCache.invalidate(key);
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
         }
@@ -54,17 +64,22 @@ public class RedisUtils {
     }
 
     public Long increment(String key) {
-        return redisTemplate.opsForValue().increment(key, 1L);
+        Long increment = redisTemplate.opsForValue().increment(key, 1L);
+        nearCache.invalidate(key);
+        return increment;
     }
 
     public Long decrement(String key) {
-        return redisTemplate.opsForValue().decrement(key, 1L);
+        Long decrement = redisTemplate.opsForValue().decrement(key, 1L);
+        nearCache.invalidate(key);
+        return decrement;
     }
 
 
 
     public void set(String key, Object value, long expire) {
         redisTemplate.opsForValue().set(key, value);
+        nearCache.invalidate(key);
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
         }
@@ -74,7 +89,64 @@ public class RedisUtils {
         set(key, value, DEFAULT_EXPIRE);
     }
 
+    /**
+     * 批量设置多个key，通过管道一次发送
+     */
+    @SuppressWarnings("unchecked")
+    public void mSet(Map<String, Object> map, long expire) {
+        if (map.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ValueOperations<String, Object> valueOperations = (ValueOperations<String, Object>) operations
+                        .opsForValue();
+                map.forEach((key, value) -> {
+                    if (expire != NOT_EXPIRE) {
+                        valueOperations.set(key, value, expire, TimeUnit.SECONDS);
+                    } else {
+                        valueOperations.set(key, value);
+                    }
+                });
+                return null;
+            }
+        });
+        nearCache.invalidate(map.keySet());
+    }
+
+    /**
+     * key不存在时才设置，不设置过期时长
+     *
+     * @return 是否设置成功
+     */
+    public Boolean setIfAbsent(String key, Object value) {
+        Boolean success = redisTemplate.opsForValue().setIfAbsent(key, value);
+        if (Boolean.TRUE.equals(success)) {
+            nearCache.invalidate(key);
+        }
+        return success;
+    }
+
+    /**
+     * key不存在时才设置，并设置过期时长
+     *
+     * @param expire 过期时长，单位：秒
+     * @return 是否设置成功
+     */
+    public Boolean setIfAbsent(String key, Object value, long expire) {
+        Boolean success = redisTemplate.opsForValue().setIfAbsent(key, value, expire, TimeUnit.SECONDS);
+        if (Boolean.TRUE.equals(success)) {
+            nearCache.invalidate(key);
+        }
+        return success;
+    }
+
     public Object get(String key, long expire) {
+        // 带续期的读取必须访问Redis
+        if (expire == NOT_EXPIRE && nearCache.accepts(key)) {
+            return nearCache.get(key, () -> redisTemplate.opsForValue().get(key));
+        }
         Object value = redisTemplate.opsForValue().get(key);
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
@@ -86,20 +158,35 @@ public class RedisUtils {
         return get(key, NOT_EXPIRE);
     }
 
+    /**
+     * 批量获取多个key的值，返回顺序与keys一致，不存在的key对应null
+     */
+    public List<Object> mGet(Collection<String> keys) {
+        return redisTemplate.opsForValue().multiGet(keys);
+    }
+
     public void delete(String key) {
         redisTemplate.delete(key);
+        nearCache.invalidate(key);
     }
 
     public void delete(Collection<String> keys) {
         redisTemplate.delete(keys);
+        nearCache.invalidate(keys);
     }
 
     public Object hGet(String key, String field) {
+        if (nearCache.accepts(key)) {
+            return nearCache.hGet(key, field, () -> redisTemplate.opsForHash().get(key, field));
+        }
         return redisTemplate.opsForHash().get(key, field);
     }
 
     public Map<String, Object> hGetAll(String key) {
         HashOperations<String, String, Object> hashOperations = redisTemplate.opsForHash();
+        if (nearCache.accepts(key)) {
+            return nearCache.hGetAll(key, () -> hashOperations.entries(key));
+        }
         return hashOperations.entries(key);
     }
 
@@ -109,6 +196,7 @@ public class RedisUtils {
 
     public void hMSet(String key, Map<String, Object> map, long expire) {
         redisTemplate.opsForHash().putAll(key, map);
+        nearCache.invalidate(key);
 
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
@@ -121,6 +209,7 @@ public class RedisUtils {
 
     public void hSet(String key, String field, Object value, long expire) {
         redisTemplate.opsForHash().put(key, field, value);
+        nearCache.invalidate(key);
 
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
@@ -131,8 +220,16 @@ public class RedisUtils {
         redisTemplate.expire(key, expire, TimeUnit.SECONDS);
     }
 
+    /**
+     * 获取key的剩余有效期，单位：秒。key不存在时返回-2，没有过期时间时返回-1
+     */
+    public Long getExpire(String key) {
+        return redisTemplate.getExpire(key, TimeUnit.SECONDS);
+    }
+
     public void hDel(String key, Object... fields) {
         redisTemplate.opsForHash().delete(key, fields);
+        nearCache.invalidate(key);
     }
 
     public void leftPush(String key, Object value) {
@@ -152,6 +249,13 @@ public class RedisUtils {
     }
 
 
+    /**
+     * 向Redis频道发布消息
+     */
+    public void publish(String channel, Object message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
     /**
      * 清空所有 Redis 数据库中的所有键
      */
@@ -167,7 +271,7 @@ public class RedisUtils {
         // 执行 Lua 脚本
         List<String> keys = Collections.emptyList(); // 如果脚本不依赖 key，可以传入空列表
         redisTemplate.execute(redisScript, keys);
-
+        nearCache.invalidateAll();
     }
 
     /**
@@ -0,0 +1,48 @@
+package xiaozhi.common.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC签名工具类
+ * <p>
+ * Mac实例创建和初始化开销较大且不是线程安全的，这里按线程、按密钥复用已初始化的实例。
+ */
+public class HmacUtils {
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    /**
+     * 每个线程缓存的密钥数上限，密钥变更后旧实例随之淘汰
+     */
+    private static final int MAX_KEYS_PER_THREAD = 8;
+
+    private static final ThreadLocal<Map<String, Mac>> HMAC_SHA256_INSTANCES = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * 计算HMAC-SHA256签名
+     *
+     * @param secretKey 密钥
+     * @param content   签名内容
+     * @return 签名
+     */
+    public static byte[] hmacSha256(String secretKey, String content)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        Map<String, Mac> instances = HMAC_SHA256_INSTANCES.get();
+        Mac mac = instances.get(secretKey);
+        if (mac == null) {
+            if (instances.size() >= MAX_KEYS_PER_THREAD) {
+                instances.clear();
+            }
+            mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
+            instances.put(secretKey, mac);
+        }
+        // doFinal完成后实例自动重置，可以直接用于下一次签名
+        return mac.doFinal(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
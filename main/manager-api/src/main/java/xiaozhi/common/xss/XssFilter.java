@@ -1,6 +1,8 @@
 package xiaozhi.common.xss;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.springframework.util.PathMatcher;
 
@@ -39,7 +41,18 @@ public class XssFilter implements Filter {
             return;
         }
 
-        chain.doFilter(new XssHttpServletRequestWrapper(httpServletRequest), response);
+        chain.doFilter(new XssHttpServletRequestWrapper(httpServletRequest, getRawFields(httpServletRequest)),
+                response);
+    }
+
+    private Set<String> getRawFields(HttpServletRequest request) {
+        Set<String> rawFields = new HashSet<>();
+        for (XssProperties.RawField rawField : properties.getRawFields()) {
+            if (pathMatcher.match(rawField.getUrl(), request.getServletPath())) {
+                rawFields.addAll(rawField.getFields());
+            }
+        }
+        return rawFields;
     }
 
     private boolean shouldNotFilter(HttpServletRequest request) {
@@ -3,13 +3,19 @@ package xiaozhi.common.xss;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
+import com.fasterxml.jackson.core.JacksonException;
+
 import cn.hutool.core.io.IoUtil;
 import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletInputStream;
@@ -22,9 +28,25 @@ import jakarta.servlet.http.HttpServletRequestWrapper;
  * Website: https://www.renren.io
  */
 public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper {
+    /**
+     * 原样保留的JSON字段
+     */
+    private final Set<String> rawFields;
+    /**
+     * 过滤结果缓存，同一请求中重复读取时不再过滤
+     */
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, String[]> parameters = new HashMap<>();
+    private Map<String, String[]> parameterMap;
+    private byte[] body;
 
     public XssHttpServletRequestWrapper(HttpServletRequest request) {
+        this(request, Collections.emptySet());
+    }
+
+    public XssHttpServletRequestWrapper(HttpServletRequest request, Set<String> rawFields) {
         super(request);
+        this.rawFields = rawFields;
     }
 
     @Override
@@ -34,15 +56,10 @@ public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper {
             return super.getInputStream();
         }
 
-        // 为空，直接返回
-        String json = IoUtil.readUtf8(super.getInputStream());
-        if (StringUtils.isBlank(json)) {
-            return super.getInputStream();
+        if (body == null) {
+            body = sanitizeBody(IoUtil.readBytes(super.getInputStream()));
         }
-
-        // xss过滤
-        json = xssEncode(json);
-        final ByteArrayInputStream bis = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        final ByteArrayInputStream bis = new ByteArrayInputStream(body);
         return new ServletInputStream() {
             @Override
             public boolean isFinished() {
@@ -63,54 +80,86 @@ public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper {
             public int read() {
                 return bis.read();
             }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return bis.read(b, off, len);
+            }
         };
     }
 
+    /**
+     * 逐个过滤JSON中的字符串值；不是合法JSON时按原方式整体过滤，由后续的JSON解析报错
+     */
+    private byte[] sanitizeBody(byte[] json) {
+        if (json.length == 0) {
+            return json;
+        }
+        try {
+            return XssJsonSanitizer.sanitize(json, rawFields);
+        } catch (JacksonException e) {
+            return xssEncode(new String(json, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public String getParameter(String name) {
-        String value = super.getParameter(xssEncode(name));
-        if (StringUtils.isNotBlank(value)) {
-            value = xssEncode(value);
-        }
-        return value;
+        String[] values = getParameterValues(name);
+        return values == null ? null : values[0];
     }
 
     @Override
     public String[] getParameterValues(String name) {
-        String[] parameters = super.getParameterValues(name);
-        if (parameters == null || parameters.length == 0) {
-            return null;
-        }
-
-        for (int i = 0; i < parameters.length; i++) {
-            parameters[i] = xssEncode(parameters[i]);
+        String[] values;
+        if (parameters.containsKey(name)) {
+            values = parameters.get(name);
+        } else {
+            values = super.getParameterValues(xssEncode(name));
+            if (values != null && values.length > 0) {
+                values = encodeValues(values);
+            } else {
+                values = null;
+            }
+            parameters.put(name, values);
         }
-        return parameters;
+        return values == null ? null : values.clone();
     }
 
     @Override
     public Map<String, String[]> getParameterMap() {
-        Map<String, String[]> map = new LinkedHashMap<>();
-        Map<String, String[]> parameters = super.getParameterMap();
-        for (String key : parameters.keySet()) {
-            String[] values = parameters.get(key);
-            for (int i = 0; i < values.length; i++) {
-                values[i] = xssEncode(values[i]);
+        if (parameterMap == null) {
+            Map<String, String[]> map = new LinkedHashMap<>();
+            for (Map.Entry<String, String[]> entry : super.getParameterMap().entrySet()) {
+                map.put(entry.getKey(), encodeValues(entry.getValue()));
             }
-            map.put(key, values);
+            parameterMap = Collections.unmodifiableMap(map);
         }
-        return map;
+        return parameterMap;
     }
 
     @Override
     public String getHeader(String name) {
+        if (headers.containsKey(name)) {
+            return headers.get(name);
+        }
         String value = super.getHeader(xssEncode(name));
         if (StringUtils.isNotBlank(value)) {
             value = xssEncode(value);
         }
+        headers.put(name, value);
         return value;
     }
 
+    private String[] encodeValues(String[] values) {
+        String[] encoded = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = xssEncode(values[i]);
+        }
+        return encoded;
+    }
+
     private String xssEncode(String input) {
         return XssUtils.filter(input);
     }
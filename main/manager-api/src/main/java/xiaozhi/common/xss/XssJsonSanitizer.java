@@ -0,0 +1,100 @@
+package xiaozhi.common.xss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * JSON请求体XSS过滤
+ * <p>
+ * 逐个读取JSON记号并原样写出，只对需要过滤的字段名和字符串值调用jsoup，不构建对象树：
+ * <ul>
+ * <li>请求体中没有 &lt;、&amp; 和转义符时，任何字符串解码后都不含标签和实体，直接返回原内容，不解析</li>
+ * <li>不含 &lt; 和 &amp; 的字符串原样写出</li>
+ * <li>原样保留的字段（如base64音频、模型配置）及其下级内容不过滤</li>
+ * </ul>
+ * 字符串值过滤时保留换行和空白，与过滤前的文本一致。
+ */
+public class XssJsonSanitizer {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 过滤JSON请求体
+     *
+     * @param json      UTF-8编码的JSON
+     * @param rawFields 原样保留的字段名，任意层级的同名字段都不过滤
+     * @return 过滤后的JSON，不需要过滤时返回原数组
+     * @throws IOException JSON格式错误
+     */
+    public static byte[] sanitize(byte[] json, Set<String> rawFields) throws IOException {
+        if (!mayNeedFilter(json)) {
+            return json;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length + 256);
+        try (JsonParser parser = JSON_FACTORY.createParser(json);
+                JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            // 大于0时位于原样保留的对象或数组中
+            int rawDepth = 0;
+            boolean rawValue = false;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (rawDepth > 0) {
+                    generator.copyCurrentEventExact(parser);
+                    if (token.isStructStart()) {
+                        rawDepth++;
+                    } else if (token.isStructEnd()) {
+                        rawDepth--;
+                    }
+                    continue;
+                }
+                switch (token) {
+                    case FIELD_NAME -> {
+                        String name = parser.currentName();
+                        rawValue = rawFields.contains(name);
+                        generator.writeFieldName(XssUtils.needsFilter(name) ? XssUtils.filterText(name) : name);
+                    }
+                    case VALUE_STRING -> {
+                        char[] chars = parser.getTextCharacters();
+                        int offset = parser.getTextOffset();
+                        int length = parser.getTextLength();
+                        if (rawValue || !XssUtils.needsFilter(chars, offset, length)) {
+                            generator.writeString(chars, offset, length);
+                        } else {
+                            generator.writeString(XssUtils.filterText(parser.getText()));
+                        }
+                        rawValue = false;
+                    }
+                    case START_OBJECT, START_ARRAY -> {
+                        generator.copyCurrentEvent(parser);
+                        if (rawValue) {
+                            rawDepth = 1;
+                        }
+                        rawValue = false;
+                    }
+                    default -> {
+                        generator.copyCurrentEventExact(parser);
+                        rawValue = false;
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 标签和实体只能以 &lt;、&amp; 原文或反斜杠转义的形式出现在JSON中，UTF-8多字节字符不含这些字节
+     */
+    private static boolean mayNeedFilter(byte[] json) {
+        for (byte b : json) {
+            if (b == '<' || b == '&' || b == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -23,4 +23,20 @@ public class XssProperties {
      * 排除的URL列表
      */
     private List<String> excludeUrls = Collections.emptyList();
+    /**
+     * 原样保留的JSON字段，字段及其下级内容不做XSS过滤，用于base64数据、配置等不会作为HTML展示的内容
+     */
+    private List<RawField> rawFields = Collections.emptyList();
+
+    @Data
+    public static class RawField {
+        /**
+         * URL，支持Ant风格
+         */
+        private String url;
+        /**
+         * 字段名
+         */
+        private List<String> fields = Collections.emptyList();
+    }
 }
@@ -1,6 +1,7 @@
 package xiaozhi.common.xss;
 
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.safety.Safelist;
 
 /**
@@ -9,12 +10,55 @@ import org.jsoup.safety.Safelist;
  * Website: https://www.renren.io
  */
 public class XssUtils extends Safelist {
+    /**
+     * 白名单只读，各线程共用，避免每次过滤都重新构建
+     */
+    private static final Safelist WHITELIST = xssWhitelist();
 
     /**
      * XSS过滤
      */
     public static String filter(String html) {
-        return Jsoup.clean(html, xssWhitelist());
+        if (!needsFilter(html)) {
+            return html;
+        }
+        return Jsoup.clean(html, WHITELIST);
+    }
+
+    /**
+     * XSS过滤，保留原有的换行和空白，用于JSON字符串值等文本内容
+     */
+    public static String filterText(String text) {
+        if (!needsFilter(text)) {
+            return text;
+        }
+        return Jsoup.clean(text, "", WHITELIST, new Document.OutputSettings().prettyPrint(false));
+    }
+
+    /**
+     * 是否需要过滤。不含 &lt; 和 &amp; 的内容中没有标签和实体，不需要经过jsoup
+     */
+    public static boolean needsFilter(String text) {
+        return text != null && (text.indexOf('<') >= 0 || text.indexOf('&') >= 0);
+    }
+
+    /**
+     * 是否需要过滤，检查 chars 中 [offset, offset + length) 的部分
+     */
+    public static boolean needsFilter(char[] chars, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (chars[i] == '<' || chars[i] == '&') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 过滤使用的白名单，供同包的基准测试使用
+     */
+    static Safelist whitelist() {
+        return WHITELIST;
     }
 
     /**
@@ -0,0 +1,79 @@
+package xiaozhi.modules.agent.audio;
+
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * 聊天音频存储
+ * <p>
+ * 音频按内容的SHA-256寻址，相同内容只保存一份，数据库中只保存哈希。
+ */
+public interface AudioStorage {
+
+    /**
+     * 保存音频，内容已存在时不重复保存
+     *
+     * @param data 音频数据
+     * @return 音频内容的SHA-256，作为读取和删除的键
+     */
+    String put(byte[] data);
+
+    /**
+     * 以流的方式保存音频，边写入边计算哈希，内存占用与音频大小无关
+     *
+     * @param in 音频数据，由调用方关闭
+     * @return 保存结果，没有数据时返回null
+     */
+    StoredAudio put(InputStream in);
+
+    /**
+     * 读取音频
+     *
+     * @param key 音频内容的SHA-256
+     * @return 音频资源，不存在时返回null
+     */
+    Resource get(String key);
+
+    /**
+     * 删除音频，调用方需确认没有其他记录引用该内容。
+     * 删除后在清理前仍可恢复，保存或读取相同内容时自动恢复
+     *
+     * @param key 音频内容的SHA-256
+     */
+    void delete(String key);
+
+    /**
+     * 遍历最后保存时间早于指定时间的音频，用于清理没有记录引用的音频
+     *
+     * @param savedBefore 毫秒时间戳
+     */
+    void scan(long savedBefore, Consumer<String> consumer);
+
+    /**
+     * 遍历删除时间早于指定时间、尚未清理的音频
+     *
+     * @param removedBefore 毫秒时间戳
+     */
+    void scanRemoved(long removedBefore, Consumer<String> consumer);
+
+    /**
+     * 恢复已删除的音频
+     */
+    void restore(String key);
+
+    /**
+     * 彻底清理已删除的音频，调用方需确认没有记录引用该内容
+     */
+    void purge(String key);
+
+    /**
+     * 已保存的音频
+     *
+     * @param key  音频内容的SHA-256
+     * @param size 音频大小(字节)
+     */
+    record StoredAudio(String key, long size) {
+    }
+}
@@ -0,0 +1,130 @@
+package xiaozhi.modules.agent.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.ClusterJobLock;
+import xiaozhi.modules.agent.config.ChatAudioProperties;
+import xiaozhi.modules.agent.dao.AiAgentChatAudioDao;
+import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
+
+/**
+ * 把数据库中的聊天音频迁移到文件存储
+ * <p>
+ * 启动后在后台线程中按主键顺序分批读取还保存在BLOB字段中的音频，写入文件存储并落盘，
+ * 读回文件确认内容哈希一致后才回填内容哈希并清空BLOB，文件写入失败或不完整时BLOB保持不变。
+ * 每条记录单独更新，迁移中断后下次启动从未迁移的记录继续；多节点部署时只在取得任务锁的一个节点上迁移。
+ * 文件存储目录必须是持久化的（容器部署时挂载为数据卷），因此默认不迁移，需显式开启。
+ * 迁移完成后需要执行 OPTIMIZE TABLE ai_agent_chat_audio 才能回收表空间。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatAudioMigrationJob {
+    private static final String JOB = "chat-audio-migration";
+    /**
+     * 锁的过期时间，每批续期，单位：秒
+     */
+    private static final long LOCK_EXPIRE_SECONDS = 10 * 60;
+
+    private final AiAgentChatAudioDao audioDao;
+    private final AudioStorage audioStorage;
+    private final ChatAudioProperties properties;
+    private final ClusterJobLock clusterJobLock;
+
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isLocalStorage() || !properties.isMigrateOnStartup()) {
+            return;
+        }
+        if (!clusterJobLock.tryAcquire(JOB, LOCK_EXPIRE_SECONDS)) {
+            log.info("聊天音频迁移正在其他节点上进行");
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::migrate, "ChatAudioMigration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    private void migrate() {
+        String lastId = "";
+        long migrated = 0;
+        long migratedBytes = 0;
+        try {
+            while (running && clusterJobLock.renew(JOB, LOCK_EXPIRE_SECONDS)) {
+                List<AgentChatAudioEntity> batch = audioDao.selectList(new LambdaQueryWrapper<AgentChatAudioEntity>()
+                        .isNull(AgentChatAudioEntity::getContentHash)
+                        .isNotNull(AgentChatAudioEntity::getAudio)
+                        .gt(AgentChatAudioEntity::getId, lastId)
+                        .orderByAsc(AgentChatAudioEntity::getId)
+                        .last("LIMIT " + properties.getMigrationBatchSize()));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (AgentChatAudioEntity entity : batch) {
+                    String contentHash = audioStorage.put(entity.getAudio());
+                    verify(contentHash, entity.getAudio().length);
+                    audioDao.update(null, new LambdaUpdateWrapper<AgentChatAudioEntity>()
+                            .set(AgentChatAudioEntity::getContentHash, contentHash)
+                            .set(AgentChatAudioEntity::getAudioSize, entity.getAudio().length)
+                            .set(AgentChatAudioEntity::getAudio, null)
+                            .eq(AgentChatAudioEntity::getId, entity.getId())
+                            .isNull(AgentChatAudioEntity::getContentHash));
+                    migratedBytes += entity.getAudio().length;
+                }
+                migrated += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+                if (migrated % (properties.getMigrationBatchSize() * 100L) == 0) {
+                    log.info("聊天音频迁移中，已迁移 {} 条，{} 字节", migrated, migratedBytes);
+                }
+                Thread.sleep(properties.getMigrationPauseMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("聊天音频迁移失败，已迁移 {} 条，下次启动时继续", migrated, e);
+            return;
+        } finally {
+            clusterJobLock.release(JOB);
+        }
+        if (migrated > 0) {
+            log.info("聊天音频迁移结束，共迁移 {} 条，{} 字节", migrated, migratedBytes);
+        }
+    }
+
+    /**
+     * 读回文件确认内容完整，确认后才能清空BLOB
+     */
+    private void verify(String contentHash, long size) throws IOException {
+        Resource resource = audioStorage.get(contentHash);
+        if (resource == null || resource.contentLength() != size) {
+            throw new IOException("音频文件不存在或大小不一致: " + contentHash);
+        }
+        try (InputStream in = resource.getInputStream()) {
+            if (!contentHash.equals(DigestUtil.sha256Hex(in))) {
+                throw new IOException("音频文件内容不一致: " + contentHash);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package xiaozhi.modules.agent.audio;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.ClusterJobLock;
+import xiaozhi.modules.agent.dao.AiAgentChatAudioDao;
+import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
+
+/**
+ * 定期清理聊天音频文件
+ * <p>
+ * 保存后超过保留时间仍没有记录引用的文件（如上报被拒绝、写库前进程退出）移入回收目录；
+ * 回收目录中超过保留时间的文件再次确认没有记录引用后彻底删除，期间又被引用的文件恢复。
+ * 保留时间远大于上报从保存音频到写库的时间，清理时尚未写库的上报不会受影响。多节点部署时只在一个节点上运行。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatAudioSweeper {
+    private static final String JOB = "chat-audio-sweep";
+    /**
+     * 清理间隔，单位：毫秒
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 6 * 60 * 60 * 1000L;
+    /**
+     * 保存或删除后的保留时间，单位：毫秒
+     */
+    private static final long RETAIN_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * 锁的过期时间，每批续期，单位：秒
+     */
+    private static final long LOCK_EXPIRE_SECONDS = 10 * 60;
+    /**
+     * 每次查询引用的文件数
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    private final AudioStorage audioStorage;
+    private final AiAgentChatAudioDao audioDao;
+    private final ClusterJobLock clusterJobLock;
+
+    @Scheduled(initialDelay = SWEEP_INTERVAL_MILLIS, fixedDelay = SWEEP_INTERVAL_MILLIS)
+    public void sweep() {
+        if (!clusterJobLock.tryAcquire(JOB, LOCK_EXPIRE_SECONDS)) {
+            return;
+        }
+        try {
+            long before = System.currentTimeMillis() - RETAIN_MILLIS;
+            AtomicInteger removed = new AtomicInteger();
+            AtomicInteger purged = new AtomicInteger();
+            forEachBatch(consumer -> audioStorage.scan(before, consumer), (keys, referenced) -> {
+                for (String key : keys) {
+                    if (!referenced.contains(key)) {
+                        audioStorage.delete(key);
+                        removed.incrementAndGet();
+                    }
+                }
+            });
+            forEachBatch(consumer -> audioStorage.scanRemoved(before, consumer), (keys, referenced) -> {
+                for (String key : keys) {
+                    if (referenced.contains(key)) {
+                        audioStorage.restore(key);
+                    } else {
+                        audioStorage.purge(key);
+                        purged.incrementAndGet();
+                    }
+                }
+            });
+            if (removed.get() > 0 || purged.get() > 0) {
+                log.info("清理聊天音频文件，没有引用的 {} 个，彻底删除 {} 个", removed.get(), purged.get());
+            }
+        } catch (Exception e) {
+            log.error("清理聊天音频文件失败", e);
+        } finally {
+            clusterJobLock.release(JOB);
+        }
+    }
+
+    /**
+     * 分批遍历文件，每批查询一次引用
+     *
+     * @param scan    遍历文件
+     * @param handler 处理一批文件，参数为文件和其中被引用的文件
+     */
+    private void forEachBatch(Consumer<Consumer<String>> scan, BiConsumer<List<String>, Set<String>> handler) {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        scan.accept(key -> {
+            batch.add(key);
+            if (batch.size() >= BATCH_SIZE) {
+                handle(batch, handler);
+            }
+        });
+        if (!batch.isEmpty()) {
+            handle(batch, handler);
+        }
+    }
+
+    private void handle(List<String> batch, BiConsumer<List<String>, Set<String>> handler) {
+        if (!clusterJobLock.renew(JOB, LOCK_EXPIRE_SECONDS)) {
+            throw new IllegalStateException("清理任务锁已失效");
+        }
+        Set<String> referenced = new HashSet<>();
+        audioDao.selectList(new LambdaQueryWrapper<AgentChatAudioEntity>()
+                .select(AgentChatAudioEntity::getContentHash)
+                .in(AgentChatAudioEntity::getContentHash, batch))
+                .forEach(entity -> referenced.add(entity.getContentHash()));
+        handler.accept(batch, referenced);
+        batch.clear();
+    }
+}
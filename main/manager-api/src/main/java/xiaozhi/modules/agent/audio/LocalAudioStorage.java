@@ -0,0 +1,302 @@
+package xiaozhi.modules.agent.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.config.ChatAudioProperties;
+
+/**
+ * 聊天音频本地文件存储
+ * <p>
+ * 文件路径为 目录/哈希前2位/哈希第3、4位/哈希，避免单个目录下文件过多。
+ * 先写入临时文件并落盘，再原子重命名并同步目录：读取方不会读到写了一半的文件，保存返回后文件在断电后仍然存在。
+ * 以流的方式保存时边写入边计算哈希，只写一次。
+ * <p>
+ * 删除只把文件移到回收目录 目录/.removed/哈希，保存或读取相同内容时从回收目录恢复；
+ * 回收目录中的文件由定期清理确认没有记录引用后才真正删除。删除与复用同一文件的保存同时进行时，文件不会丢失。
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(ChatAudioProperties.class)
+public class LocalAudioStorage implements AudioStorage {
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String REMOVED_DIR = ".removed";
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private final Path root;
+    private final Path removedRoot;
+
+    public LocalAudioStorage(ChatAudioProperties properties) {
+        this.root = Paths.get(properties.getLocalDir());
+        this.removedRoot = root.resolve(REMOVED_DIR);
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String key = DigestUtil.sha256Hex(data);
+        Path path = resolve(key);
+        if (reuse(key, path)) {
+            return key;
+        }
+        Path tempPath = path.resolveSibling(TEMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            moveIntoPlace(tempPath, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存音频文件失败: " + key, e);
+        } finally {
+            deleteTemp(tempPath);
+        }
+        return key;
+    }
+
+    @Override
+    public StoredAudio put(InputStream in) {
+        MessageDigest sha256 = newSha256();
+        Path tempPath = root.resolve(TEMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(root);
+            long size;
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                OutputStream out = new DigestOutputStream(Channels.newOutputStream(channel), sha256);
+                size = in.transferTo(out);
+                out.flush();
+                channel.force(true);
+            }
+            if (size == 0) {
+                return null;
+            }
+            String key = HexFormat.of().formatHex(sha256.digest());
+            Path path = resolve(key);
+            if (!reuse(key, path)) {
+                Files.createDirectories(path.getParent());
+                moveIntoPlace(tempPath, path);
+            }
+            return new StoredAudio(key, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存音频文件失败", e);
+        } finally {
+            deleteTemp(tempPath);
+        }
+    }
+
+    @Override
+    public Resource get(String key) {
+        if (!isValidKey(key)) {
+            return null;
+        }
+        Path path = resolve(key);
+        if (Files.isRegularFile(path) || restore(key, path)) {
+            return new FileSystemResource(path);
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(String key) {
+        if (!isValidKey(key)) {
+            return;
+        }
+        Path removed = removedRoot.resolve(key);
+        try {
+            Files.createDirectories(removedRoot);
+            Files.move(resolve(key), removed, StandardCopyOption.ATOMIC_MOVE);
+            // 以移入回收目录的时间作为删除时间
+            touch(removed);
+        } catch (NoSuchFileException e) {
+            // 文件不存在或已被删除
+        } catch (IOException e) {
+            log.warn("删除音频文件失败: {} {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void scan(long savedBefore, Consumer<String> consumer) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        // 只遍历 目录/xx/xx/哈希，回收目录中的文件层级不同
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(file -> root.relativize(file).getNameCount() == 3)
+                    .filter(file -> isValidKey(file.getFileName().toString()))
+                    .filter(file -> lastModified(file) < savedBefore)
+                    .forEach(file -> consumer.accept(file.getFileName().toString()));
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("遍历音频文件失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void scanRemoved(long removedBefore, Consumer<String> consumer) {
+        if (!Files.isDirectory(removedRoot)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(removedRoot)) {
+            files.filter(file -> isValidKey(file.getFileName().toString()))
+                    .filter(file -> lastModified(file) < removedBefore)
+                    .forEach(file -> consumer.accept(file.getFileName().toString()));
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("遍历已删除的音频文件失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void restore(String key) {
+        if (isValidKey(key)) {
+            restore(key, resolve(key));
+        }
+    }
+
+    @Override
+    public void purge(String key) {
+        if (!isValidKey(key)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(removedRoot.resolve(key));
+        } catch (IOException e) {
+            log.warn("清理音频文件失败: {} {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 复用已有的文件，文件已被删除但尚未清理时从回收目录恢复
+     *
+     * @return 是否已有文件
+     */
+    private boolean reuse(String key, Path path) {
+        if (Files.exists(path)) {
+            // 更新保存时间，刚被复用的文件不会被当作没有引用的文件清理
+            touch(path);
+            return true;
+        }
+        return restore(key, path);
+    }
+
+    /**
+     * 从回收目录恢复文件
+     *
+     * @return 恢复后文件是否存在
+     */
+    private boolean restore(String key, Path path) {
+        Path removed = removedRoot.resolve(key);
+        if (!Files.exists(removed)) {
+            return false;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Files.move(removed, path, StandardCopyOption.ATOMIC_MOVE);
+            touch(path);
+            log.info("恢复已删除的音频文件: {}", key);
+        } catch (IOException e) {
+            // 期间被其他线程恢复或清理，以文件是否存在为准
+            log.debug("恢复音频文件失败: {} {}", key, e.getMessage());
+        }
+        return Files.exists(path);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 重命名到目标位置，并同步所在目录
+     */
+    private static void moveIntoPlace(Path tempPath, Path path) throws IOException {
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(tempPath, path);
+            } catch (FileAlreadyExistsException ex) {
+                // 相同内容已由其他线程写入
+            }
+        }
+        syncDirectory(path.getParent());
+    }
+
+    /**
+     * 同步目录，使重命名后的文件在断电后仍然存在。不支持打开目录的平台上跳过
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("同步音频目录失败: {} {}", dir, e.getMessage());
+        }
+    }
+
+    private static void deleteTemp(Path tempPath) {
+        try {
+            Files.deleteIfExists(tempPath);
+        } catch (IOException e) {
+            log.warn("删除临时音频文件失败: {}", tempPath);
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("更新音频文件时间失败: {}", path);
+        }
+    }
+
+    private Path resolve(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static boolean isValidKey(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches();
+    }
+}
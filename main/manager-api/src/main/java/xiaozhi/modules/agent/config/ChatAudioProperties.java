@@ -0,0 +1,38 @@
+package xiaozhi.modules.agent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * 聊天音频存储配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "renren.chat-audio")
+public class ChatAudioProperties {
+    /**
+     * 新音频的保存位置：local为文件存储，database为数据库BLOB。
+     * 默认保存在数据库中，确认文件存储目录已持久化后再改为local
+     */
+    private String storage = "database";
+    /**
+     * 文件存储目录，相对于工作目录。容器部署时需要挂载为数据卷，多节点部署时需要挂载为共享目录
+     */
+    private String localDir = "data/chat-audio";
+    /**
+     * 启动后是否把数据库中的音频迁移到文件存储，迁移后BLOB被清空，需确认文件存储目录已持久化
+     */
+    private boolean migrateOnStartup = false;
+    /**
+     * 迁移时每批处理的音频条数
+     */
+    private int migrationBatchSize = 100;
+    /**
+     * 迁移时两批之间的间隔，减轻数据库压力，单位：毫秒
+     */
+    private int migrationPauseMillis = 200;
+
+    public boolean isLocalStorage() {
+        return "local".equalsIgnoreCase(storage);
+    }
+}
@@ -0,0 +1,41 @@
+package xiaozhi.modules.agent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * 聊天记录异步写入配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "renren.chat-ingest")
+public class ChatIngestProperties {
+    /**
+     * 是否异步写入，关闭时上报请求同步写库
+     */
+    private boolean enabled = true;
+    /**
+     * 日志文件目录，相对于工作目录。容器部署时需挂载为数据卷，否则重建容器会丢失未写库的上报
+     */
+    private String journalDir = "data/chat-journal";
+    /**
+     * 单个日志文件大小上限，超过后新建文件，单位：字节
+     */
+    private long segmentBytes = 64L * 1024 * 1024;
+    /**
+     * 待写库的上报条数上限，超过后拒绝上报
+     */
+    private int maxPending = 20000;
+    /**
+     * 待写库的上报数据量上限，超过后拒绝上报，单位：字节。待写库的上报同时保存在内存中，不宜过大
+     */
+    private long maxPendingBytes = 32L * 1024 * 1024;
+    /**
+     * 单个事务写入的上报条数上限
+     */
+    private int batchSize = 200;
+    /**
+     * 写库失败后的重试间隔，单位：毫秒
+     */
+    private int retryBackoffMillis = 1000;
+}
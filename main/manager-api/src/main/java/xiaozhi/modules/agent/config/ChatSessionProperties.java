@@ -0,0 +1,25 @@
+package xiaozhi.modules.agent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * 聊天会话汇总配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "renren.chat-session")
+public class ChatSessionProperties {
+    /**
+     * 启动后是否为还没有会话汇总的历史聊天记录重建汇总
+     */
+    private boolean rebuildOnStartup = true;
+    /**
+     * 重建时每批检查的智能体数
+     */
+    private int rebuildBatchSize = 100;
+    /**
+     * 重建时两批之间的间隔，减轻数据库压力，单位：毫秒
+     */
+    private int rebuildPauseMillis = 200;
+}
@@ -1,6 +1,9 @@
 package xiaozhi.modules.agent.controller;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -12,15 +15,21 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -32,11 +41,15 @@ import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.user.UserDetail;
 import xiaozhi.common.utils.DateUtils;
+import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.common.utils.MessageUtils;
 import xiaozhi.common.utils.Result;
+import xiaozhi.common.validator.ValidatorUtils;
+import xiaozhi.common.xss.XssUtils;
 import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
 import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
 import xiaozhi.modules.agent.dto.AgentChatSessionDTO;
+import xiaozhi.modules.agent.ingest.ChatHistoryIngestPipeline;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.biz.AgentChatHistoryBizService;
@@ -47,23 +60,136 @@ import xiaozhi.modules.security.user.SecurityUser;
 @RestController
 @RequestMapping("/agent/chat-history")
 public class AgentChatHistoryController {
+    /**
+     * 二进制上报中元数据的最大字节数
+     */
+    private static final int MAX_METADATA_BYTES = 64 * 1024;
+
     private final AgentChatHistoryBizService agentChatHistoryBizService;
     private final AgentChatHistoryService agentChatHistoryService;
     private final AgentService agentService;
     private final RedisUtils redisUtils;
+    private final ChatHistoryIngestPipeline chatHistoryIngestPipeline;
 
     /**
      * 小智服务聊天上报请求
      * <p>
      * 小智服务聊天上报请求，包含Base64编码的音频数据和相关信息。
+     * 开启异步写入时上报写入日志后立即返回，待写库的上报过多时返回503，由小智服务稍后重试。
      *
      * @param request 包含上传文件及相关信息的请求对象
      */
     @Operation(summary = "小智服务聊天上报请求")
     @PostMapping("/report")
-    public Result<Boolean> uploadFile(@Valid @RequestBody AgentChatHistoryReportDTO request) {
-        Boolean result = agentChatHistoryBizService.report(request);
-        return new Result<Boolean>().ok(result);
+    public Result<Boolean> uploadFile(@Valid @RequestBody AgentChatHistoryReportDTO request,
+            HttpServletResponse response) {
+        // 音频哈希只由二进制上报在服务端填写
+        request.setAudioHash(null);
+        request.setAudioSize(null);
+        return acceptReport(request, response);
+    }
+
+    /**
+     * 小智服务聊天上报请求，multipart格式
+     * <p>
+     * metadata部分为JSON格式的上报信息（不含音频），audio部分为原始音频数据，音频直接写入文件存储，不做base64编解码。
+     */
+    @Operation(summary = "小智服务聊天上报请求（multipart）")
+    @PostMapping(value = "/report/binary", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Result<Boolean> uploadMultipart(@RequestPart("metadata") String metadata,
+            @RequestPart(value = "audio", required = false) MultipartFile audio,
+            HttpServletResponse response) throws IOException {
+        AgentChatHistoryReportDTO request = parseReportMetadata(metadata.getBytes(StandardCharsets.UTF_8));
+        if (chatHistoryIngestPipeline.isEnabled() && chatHistoryIngestPipeline.isBusy()) {
+            return busy(response);
+        }
+        if (audio != null && !audio.isEmpty()) {
+            try (InputStream in = audio.getInputStream()) {
+                agentChatHistoryBizService.storeReportAudio(request, in);
+            }
+        }
+        return acceptReport(request, response);
+    }
+
+    /**
+     * 小智服务聊天上报请求，二进制帧格式
+     * <p>
+     * 请求体为：4字节大端序元数据长度 + UTF-8编码的JSON元数据 + 原始音频数据（可以为空），音频边读边写入文件存储。
+     */
+    @Operation(summary = "小智服务聊天上报请求（二进制帧）")
+    @PostMapping(value = "/report/binary", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Result<Boolean> uploadFrame(HttpServletRequest httpRequest, HttpServletResponse response)
+            throws IOException {
+        DataInputStream in = new DataInputStream(httpRequest.getInputStream());
+        byte[] metadata;
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_METADATA_BYTES) {
+                throw new RenException(ErrorCode.CHAT_REPORT_FORMAT_ERROR);
+            }
+            metadata = new byte[length];
+            in.readFully(metadata);
+        } catch (EOFException e) {
+            throw new RenException(ErrorCode.CHAT_REPORT_FORMAT_ERROR);
+        }
+        AgentChatHistoryReportDTO request = parseReportMetadata(metadata);
+        if (chatHistoryIngestPipeline.isEnabled() && chatHistoryIngestPipeline.isBusy()) {
+            return busy(response);
+        }
+        agentChatHistoryBizService.storeReportAudio(request, in);
+        return acceptReport(request, response);
+    }
+
+    /**
+     * 解析二进制上报的元数据。请求不经过XSS过滤包装，只对聊天内容单独过滤
+     */
+    private AgentChatHistoryReportDTO parseReportMetadata(byte[] metadata) {
+        AgentChatHistoryReportDTO request;
+        try {
+            request = JsonUtils.parseObject(metadata, AgentChatHistoryReportDTO.class);
+        } catch (RuntimeException e) {
+            throw new RenException(ErrorCode.CHAT_REPORT_FORMAT_ERROR);
+        }
+        if (request == null) {
+            throw new RenException(ErrorCode.CHAT_REPORT_FORMAT_ERROR);
+        }
+        if (request.getContent() != null) {
+            request.setContent(XssUtils.filterText(request.getContent()));
+        }
+        request.setAudioHash(null);
+        request.setAudioSize(null);
+        ValidatorUtils.validateEntity(request);
+        return request;
+    }
+
+    /**
+     * 未开启异步写入时同步写库；否则写入日志，待写库的上报过多时返回503。
+     * 上报未被接收时丢弃二进制上报已保存的音频，小智服务重试时会重新上传
+     */
+    private Result<Boolean> acceptReport(AgentChatHistoryReportDTO request, HttpServletResponse response) {
+        boolean accepted = false;
+        try {
+            if (!chatHistoryIngestPipeline.isEnabled()) {
+                Boolean result = agentChatHistoryBizService.report(request);
+                accepted = true;
+                return new Result<Boolean>().ok(result);
+            }
+            if (!chatHistoryIngestPipeline.offer(request)) {
+                return busy(response);
+            }
+            accepted = true;
+            return new Result<Boolean>().ok(Boolean.TRUE);
+        } finally {
+            if (!accepted) {
+                agentChatHistoryBizService.discardReportAudio(request);
+            }
+        }
+    }
+
+    private Result<Boolean> busy(HttpServletResponse response) {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return new Result<Boolean>().error(ErrorCode.CHAT_REPORT_BUSY);
     }
 
     /**
@@ -6,6 +6,7 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -54,7 +55,7 @@ import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.AgentTemplateService;
 import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
 import xiaozhi.modules.agent.vo.AgentInfoVO;
-import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.resolve.DeviceResolution;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.security.user.SecurityUser;
 
@@ -63,6 +64,11 @@ import xiaozhi.modules.security.user.SecurityUser;
 @RestController
 @RequestMapping("/agent")
 public class AgentController {
+    /**
+     * 音频播放链接首次访问后的有效期，供播放器分段读取和拖动进度，单位：秒
+     */
+    private static final long PLAY_SEEK_WINDOW_SECONDS = 5 * 60;
+
     private final AgentService agentService;
     private final AgentTemplateService agentTemplateService;
     private final DeviceService deviceService;
@@ -119,7 +125,7 @@ public class AgentController {
     @PutMapping("/saveMemory/{macAddress}")
     @Operation(summary = "根据设备id更新智能体")
     public Result<Void> updateByDeviceId(@PathVariable String macAddress, @RequestBody @Valid AgentMemoryDTO dto) {
-        DeviceEntity device = deviceService.getDeviceByMacAddress(macAddress);
+        DeviceResolution device = deviceService.resolveByMacAddress(macAddress);
         if (device == null) {
             return new Result<>();
         }
@@ -190,6 +196,7 @@ public class AgentController {
     @Parameters({
             @Parameter(name = Constant.PAGE, description = "当前页码，从1开始", required = true),
             @Parameter(name = Constant.LIMIT, description = "每页显示记录数", required = true),
+            @Parameter(name = "cursor", description = "上一页最后一条会话的cursor，传入时忽略页码"),
     })
     public Result<PageData<AgentChatSessionDTO>> getAgentSessions(
             @PathVariable("id") String id,
@@ -250,8 +257,7 @@ public class AgentController {
     @Operation(summary = "获取音频下载ID")
     @RequiresPermissions("sys:role:normal")
     public Result<String> getAudioId(@PathVariable("audioId") String audioId) {
-        byte[] audioData = agentChatAudioService.getAudio(audioId);
-        if (audioData == null) {
+        if (!agentChatAudioService.existsAudio(audioId)) {
             return new Result<String>().error("音频不存在");
         }
         String uuid = UUID.randomUUID().toString();
@@ -261,22 +267,28 @@ public class AgentController {
 
     @GetMapping("/play/{uuid}")
     @Operation(summary = "播放音频")
-    public ResponseEntity<byte[]> playAudio(@PathVariable("uuid") String uuid) {
+    public ResponseEntity<Resource> playAudio(@PathVariable("uuid") String uuid) {
 
         String audioId = (String) redisUtils.get(RedisKeys.getAgentAudioIdKey(uuid));
         if (StringUtils.isBlank(audioId)) {
             return ResponseEntity.notFound().build();
         }
 
-        byte[] audioData = agentChatAudioService.getAudio(audioId);
-        if (audioData == null) {
+        Resource audio = agentChatAudioService.getAudioResource(audioId);
+        if (audio == null) {
             return ResponseEntity.notFound().build();
         }
-        redisUtils.delete(RedisKeys.getAgentAudioIdKey(uuid));
+        // 播放器按Range分段读取并拖动进度，首次访问后下载标识只在短时间内有效，之后的访问不再续期
+        String audioIdKey = RedisKeys.getAgentAudioIdKey(uuid);
+        Long ttl = redisUtils.getExpire(audioIdKey);
+        if (ttl == null || ttl < 0 || ttl > PLAY_SEEK_WINDOW_SECONDS) {
+            redisUtils.expire(audioIdKey, PLAY_SEEK_WINDOW_SECONDS);
+        }
+        // 文件以流的方式输出，Range请求由Spring按分段输出
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"play.wav\"")
-                .body(audioData);
+                .body(audio);
     }
 
     @PostMapping("/tag")
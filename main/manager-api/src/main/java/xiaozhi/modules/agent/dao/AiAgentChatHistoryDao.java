@@ -47,4 +47,11 @@ public interface AiAgentChatHistoryDao extends BaseMapper<AgentChatHistoryEntity
      * @param audioIds 音频ID列表
      */
     void deleteAudioByIds(@Param("audioIds") List<String> audioIds);
+
+    /**
+     * 批量插入聊天记录
+     *
+     * @param list 聊天记录列表
+     */
+    int batchInsert(@Param("list") List<AgentChatHistoryEntity> list);
 }
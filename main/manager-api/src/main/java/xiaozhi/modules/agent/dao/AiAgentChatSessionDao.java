@@ -0,0 +1,58 @@
+package xiaozhi.modules.agent.dao;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentChatSessionEntity;
+
+/**
+ * {@link AgentChatSessionEntity} 智能体聊天会话汇总Dao对象
+ */
+@Mapper
+public interface AiAgentChatSessionDao extends BaseMapper<AgentChatSessionEntity> {
+
+    /**
+     * 累加新写入的聊天记录：会话不存在时插入，存在时扩展时间范围并累加消息条数
+     *
+     * @param list 按会话汇总的新聊天记录
+     */
+    int upsertIncrement(@Param("list") List<AgentChatSessionEntity> list);
+
+    /**
+     * 写入从聊天记录重新统计的会话，覆盖已有汇总的时间范围和条数。
+     * 需与 {@link #selectAggregatesFromHistory} 在同一事务中执行
+     *
+     * @param list 重新统计的会话
+     */
+    int upsertRebuild(@Param("list") List<AgentChatSessionEntity> list);
+
+    /**
+     * 从聊天记录统计智能体的所有会话，不含标题。
+     * 加共享锁读取，事务提交前该智能体新的聊天记录不能写入，提交前已写入的聊天记录都计入统计
+     *
+     * @param agentId 智能体ID
+     * @return 会话列表
+     */
+    List<AgentChatSessionEntity> selectAggregatesFromHistory(@Param("agentId") String agentId);
+
+    /**
+     * 查询智能体每个会话的第一条用户消息
+     *
+     * @param agentId 智能体ID
+     * @return 聊天记录列表，只包含会话ID和聊天内容
+     */
+    List<AgentChatHistoryEntity> selectFirstUserMessages(@Param("agentId") String agentId);
+
+    /**
+     * 查询智能体最早的一条聊天记录
+     *
+     * @param agentId 智能体ID
+     * @return 聊天记录，只包含会话ID和创建时间
+     */
+    AgentChatHistoryEntity selectEarliestMessage(@Param("agentId") String agentId);
+}
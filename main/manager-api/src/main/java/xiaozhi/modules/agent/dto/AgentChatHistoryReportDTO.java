@@ -30,4 +30,8 @@ public class AgentChatHistoryReportDTO {
     private String audioBase64;
     @Schema(description = "上报时间，十位时间戳，空时默认使用当前时间", example = "1745657732")
     private Long reportTime;
+    @Schema(hidden = true, description = "二进制上报时已写入文件存储的音频哈希")
+    private String audioHash;
+    @Schema(hidden = true, description = "二进制上报时已写入文件存储的音频大小")
+    private Long audioSize;
 }
@@ -15,12 +15,27 @@ public class AgentChatSessionDTO {
     private String sessionId;
 
     /**
-     * 会话时间
+     * 会话时间，即最后一条消息的时间
      */
     private LocalDateTime createdAt;
 
+    /**
+     * 第一条消息的时间
+     */
+    private LocalDateTime firstChatAt;
+
     /**
      * 聊天条数
      */
     private Integer chatCount;
-}
\ No newline at end of file
+
+    /**
+     * 会话标题，取第一条用户消息的开头
+     */
+    private String title;
+
+    /**
+     * 翻页游标，查询下一页时作为cursor参数传入
+     */
+    private String cursor;
+}
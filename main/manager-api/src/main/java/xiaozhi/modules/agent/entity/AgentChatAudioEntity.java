@@ -23,7 +23,17 @@ public class AgentChatAudioEntity {
     private String id;
 
     /**
-     * 音频opus数据
+     * 音频opus数据，保存在文件存储中的音频为空
      */
     private byte[] audio;
+
+    /**
+     * 音频内容的SHA-256，文件存储中的键
+     */
+    private String contentHash;
+
+    /**
+     * 音频大小(字节)
+     */
+    private Integer audioSize;
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package xiaozhi.modules.agent.entity;
+
+import java.util.Date;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import lombok.Data;
+
+/**
+ * 智能体聊天会话汇总表，由聊天记录增量维护
+ */
+@Data
+@TableName(value = "ai_agent_chat_session")
+public class AgentChatSessionEntity {
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 智能体id
+     */
+    @TableField(value = "agent_id")
+    private String agentId;
+
+    /**
+     * 会话ID
+     */
+    @TableField(value = "session_id")
+    private String sessionId;
+
+    /**
+     * 第一条消息时间
+     */
+    @TableField(value = "first_chat_at")
+    private Date firstChatAt;
+
+    /**
+     * 最后一条消息时间
+     */
+    @TableField(value = "last_chat_at")
+    private Date lastChatAt;
+
+    /**
+     * 消息条数
+     */
+    @TableField(value = "chat_count")
+    private Integer chatCount;
+
+    /**
+     * 会话标题，取第一条用户消息的开头
+     */
+    @TableField(value = "title")
+    private String title;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_at")
+    private Date updatedAt;
+}
@@ -0,0 +1,249 @@
+package xiaozhi.modules.agent.ingest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.modules.agent.config.ChatIngestProperties;
+import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
+import xiaozhi.modules.agent.service.biz.AgentChatHistoryBizService;
+
+/**
+ * 聊天记录异步写入
+ * <p>
+ * 上报先追加到本地日志文件并落盘，随即返回；后台线程按追加顺序取出上报，每批在一个事务中批量写库，
+ * 写库后记录日志检查点。进程异常退出后，启动时从检查点重放未写库的上报。
+ * 待写库的上报超过条数或数据量上限时拒绝新上报，由调用方稍后重试。
+ * <p>
+ * 只用一个写库线程，保证写库顺序与日志顺序一致，检查点即为最近一批的最后位置。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(ChatIngestProperties.class)
+public class ChatHistoryIngestPipeline {
+    private final ChatIngestProperties properties;
+    private final AgentChatHistoryBizService agentChatHistoryBizService;
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    /**
+     * 保证入队顺序与日志追加顺序一致
+     */
+    private final Object appendLock = new Object();
+    private ChatReportJournal journal;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        journal = new ChatReportJournal(Paths.get(properties.getJournalDir()), properties.getSegmentBytes());
+        List<ChatReportJournal.Record> records = journal.open();
+        for (ChatReportJournal.Record record : records) {
+            AgentChatHistoryReportDTO report = JsonUtils.parseObject(record.payload(),
+                    AgentChatHistoryReportDTO.class);
+            pendingCount.incrementAndGet();
+            pendingBytes.addAndGet(record.payload().length);
+            queue.add(new Entry(report, record.position(), record.payload().length, new AtomicBoolean()));
+        }
+        if (!records.isEmpty()) {
+            log.info("从日志恢复未写库的聊天上报 {} 条", records.size());
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "ChatHistoryIngest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (journal == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            if (writer.isAlive()) {
+                // 剩余的上报在日志中，下次启动时重放
+                writer.interrupt();
+            }
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("关闭聊天上报日志失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 是否异步写入，未开启时由调用方同步写库
+     */
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * 待写库的上报是否已达到上限，二进制上报在保存音频前先检查，避免保存注定被拒绝的上报的音频
+     */
+    public boolean isBusy() {
+        return pendingCount.get() >= properties.getMaxPending()
+                || pendingBytes.get() >= properties.getMaxPendingBytes();
+    }
+
+    /**
+     * 接收一条上报，写入日志并落盘后返回
+     *
+     * @return 是否已接收，待写库的上报超过上限时返回false，调用方应稍后重试
+     */
+    public boolean offer(AgentChatHistoryReportDTO report) {
+        byte[] payload = JsonUtils.toJsonString(report).getBytes(StandardCharsets.UTF_8);
+        int count = pendingCount.incrementAndGet();
+        long bytes = pendingBytes.addAndGet(payload.length);
+        if (count > properties.getMaxPending() || bytes > properties.getMaxPendingBytes()) {
+            release(payload.length);
+            return false;
+        }
+
+        Entry entry;
+        try {
+            synchronized (appendLock) {
+                entry = new Entry(report, journal.append(payload), payload.length, new AtomicBoolean());
+                queue.add(entry);
+            }
+        } catch (IOException e) {
+            release(payload.length);
+            log.error("聊天上报写入日志失败", e);
+            throw new RenException("聊天上报写入日志失败");
+        }
+        try {
+            journal.sync(entry.position());
+        } catch (IOException e) {
+            log.error("聊天上报日志落盘失败", e);
+            // 撤回还未被写库线程取走的上报，由调用方重试；已被取走的会正常写库，按接收成功处理
+            if (entry.claim()) {
+                release(payload.length);
+                throw new RenException("聊天上报日志落盘失败");
+            }
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                ChatReportJournal.Position last = batch.get(batch.size() - 1).position();
+                // 落盘失败被撤回的上报不写库，占用的额度已在撤回时释放
+                batch.removeIf(entry -> !entry.claim());
+                if (!batch.isEmpty()) {
+                    persist(batch);
+                }
+                checkpoint(last);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("聊天上报写库线程异常", e);
+            } finally {
+                for (Entry entry : batch) {
+                    release(entry.bytes());
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量写库。数据库不可用时等待后重试；其他错误按条写入，定位并丢弃无法写入的上报
+     */
+    private void persist(List<Entry> entries) throws InterruptedException {
+        while (true) {
+            try {
+                agentChatHistoryBizService.saveReports(entries.stream().map(Entry::report).toList());
+                return;
+            } catch (Exception e) {
+                if (isRetryable(e)) {
+                    if (!running) {
+                        // 正在关闭，剩余的上报留在日志中等下次启动重放
+                        throw new InterruptedException();
+                    }
+                    log.warn("聊天上报写库失败，{}毫秒后重试，待写库 {} 条: {}", properties.getRetryBackoffMillis(),
+                            pendingCount.get(), e.getMessage());
+                    Thread.sleep(properties.getRetryBackoffMillis());
+                } else if (entries.size() == 1) {
+                    log.error("聊天上报无法写库，已丢弃: macAddress={}, sessionId={}",
+                            entries.get(0).report().getMacAddress(), entries.get(0).report().getSessionId(), e);
+                    return;
+                } else {
+                    for (Entry entry : entries) {
+                        persist(List.of(entry));
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private void checkpoint(ChatReportJournal.Position position) {
+        try {
+            journal.checkpoint(position);
+        } catch (IOException e) {
+            log.warn("记录聊天上报日志检查点失败: {}", e.getMessage());
+        }
+    }
+
+    private void release(int bytes) {
+        pendingCount.decrementAndGet();
+        pendingBytes.addAndGet(-bytes);
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+
+    /**
+     * @param claimed 写库线程取走或上报被撤回后为true，两者只有一方成功
+     */
+    private record Entry(AgentChatHistoryReportDTO report, ChatReportJournal.Position position, int bytes,
+            AtomicBoolean claimed) {
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
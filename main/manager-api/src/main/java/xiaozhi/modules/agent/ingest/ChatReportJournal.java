@@ -0,0 +1,275 @@
+package xiaozhi.modules.agent.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 聊天上报日志文件
+ * <p>
+ * 上报内容顺序追加到日志文件中，每条记录为 长度(4字节) + CRC32(4字节) + 内容，文件超过大小上限后新建文件。
+ * 多个上报并发追加时合并落盘，一次fsync覆盖此前追加的所有记录。写库完成后记录检查点，
+ * 启动时从检查点开始重放，检查点之前的文件被删除；末尾写了一半的记录在重放时丢弃。
+ * <p>
+ * 检查点在写库事务提交后记录，两者之间进程退出时重放会重复写入最后一批记录。
+ * 检查点先写临时文件并落盘，再原子重命名并同步目录；检查点文件缺失或损坏时从最早的日志文件开始重放，宁可重复写入也不丢失。
+ */
+@Slf4j
+public class ChatReportJournal implements Closeable {
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final long segmentBytes;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long segmentId;
+    private long appendOffset;
+    private long appendedSeq;
+    private volatile long syncedSeq;
+    private long checkpointSegmentId;
+
+    public ChatReportJournal(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * 打开日志，读取检查点之后还未写库的记录，之后的记录追加到新文件中
+     *
+     * @return 按追加顺序排列的未写库记录
+     */
+    public List<Record> open() throws IOException {
+        Files.createDirectories(dir);
+        Position checkpoint = readCheckpoint();
+        checkpointSegmentId = checkpoint.segmentId();
+
+        List<Record> records = new ArrayList<>();
+        long lastSegmentId = checkpoint.segmentId();
+        for (long id : listSegments()) {
+            if (id < checkpoint.segmentId()) {
+                Files.deleteIfExists(segmentPath(id));
+                continue;
+            }
+            readSegment(id, id == checkpoint.segmentId() ? checkpoint.offset() : 0, records);
+            lastSegmentId = Math.max(lastSegmentId, id);
+        }
+
+        synchronized (appendLock) {
+            appendedSeq = records.size();
+            syncedSeq = appendedSeq;
+            openSegment(lastSegmentId + 1);
+        }
+        return records;
+    }
+
+    /**
+     * 追加一条记录，返回时记录还未落盘，需要调用 {@link #sync(Position)}
+     *
+     * @return 记录结束的位置
+     */
+    public Position append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        synchronized (appendLock) {
+            if (appendOffset > 0 && appendOffset + buffer.remaining() > segmentBytes) {
+                channel.force(false);
+                channel.close();
+                openSegment(segmentId + 1);
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                // 去掉写了一半的记录，避免之后追加的记录在重放时读不到
+                channel.truncate(appendOffset);
+                channel.position(appendOffset);
+                throw e;
+            }
+            appendOffset += HEADER_BYTES + payload.length;
+            return new Position(segmentId, appendOffset, ++appendedSeq);
+        }
+    }
+
+    /**
+     * 等待记录落盘，并发调用时由一个线程执行fsync，覆盖此前所有已追加的记录
+     */
+    public void sync(Position position) throws IOException {
+        if (position.seq() <= syncedSeq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (position.seq() <= syncedSeq) {
+                return;
+            }
+            FileChannel current;
+            long seq;
+            synchronized (appendLock) {
+                current = channel;
+                seq = appendedSeq;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // 期间切换了文件或关闭了日志，关闭前已经落盘
+            }
+            syncedSeq = seq;
+        }
+    }
+
+    /**
+     * 记录检查点，该位置之前的记录已写库，不再重放
+     */
+    public void checkpoint(Position position) throws IOException {
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        byte[] content = (position.segmentId() + " " + position.offset()).getBytes(StandardCharsets.UTF_8);
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                file.write(buffer);
+            }
+            file.force(true);
+        }
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        if (position.segmentId() > checkpointSegmentId) {
+            for (long id = checkpointSegmentId; id < position.segmentId(); id++) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+            checkpointSegmentId = position.segmentId();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segmentId = id;
+        appendOffset = 0;
+        syncDirectory();
+    }
+
+    /**
+     * 同步目录，使新建和重命名的文件在断电后仍然存在。不支持打开目录的平台上跳过
+     */
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("同步聊天上报日志目录失败: {}", e.getMessage());
+        }
+    }
+
+    private void readSegment(long id, long start, List<Record> records) throws IOException {
+        Path path = segmentPath(id);
+        long size = Files.size(path);
+        try (InputStream file = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            in.skipNBytes(start);
+            long offset = start;
+            while (offset + HEADER_BYTES <= size) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || offset + HEADER_BYTES + length > size) {
+                    log.warn("聊天上报日志 {} 在位置 {} 处记录不完整，忽略之后的内容", path, offset);
+                    return;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("聊天上报日志 {} 在位置 {} 处校验失败，忽略之后的内容", path, offset);
+                    return;
+                }
+                offset += HEADER_BYTES + length;
+                records.add(new Record(new Position(id, offset, records.size() + 1), payload));
+            }
+        } catch (EOFException e) {
+            log.warn("聊天上报日志 {} 末尾记录不完整", path);
+        }
+    }
+
+    /**
+     * 读取检查点，文件缺失或损坏时从最早的日志文件开始重放
+     */
+    private Position readCheckpoint() {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new Position(0, 0, 0);
+        }
+        try {
+            String[] parts = Files.readString(path, StandardCharsets.UTF_8).trim().split(" ");
+            long id = Long.parseLong(parts[0]);
+            long offset = Long.parseLong(parts[1]);
+            if (id >= 0 && offset >= 0) {
+                return new Position(id, offset, 0);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取聊天上报日志检查点失败: {}", e.getMessage());
+        }
+        log.warn("聊天上报日志检查点 {} 无效，从最早的日志文件开始重放，可能重复写入已写库的上报", path);
+        return new Position(0, 0, 0);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(String.format("%016d%s", id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 记录结束的位置
+     *
+     * @param seq 追加序号，用于判断是否已落盘
+     */
+    public record Position(long segmentId, long offset, long seq) {
+    }
+
+    public record Record(Position position, byte[] payload) {
+    }
+}
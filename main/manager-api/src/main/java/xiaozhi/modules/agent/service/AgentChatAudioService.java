@@ -1,7 +1,12 @@
 package xiaozhi.modules.agent.service;
 
+import java.util.List;
+
+import org.springframework.core.io.Resource;
+
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import xiaozhi.modules.agent.audio.AudioStorage;
 import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
 
 /**
@@ -20,6 +25,29 @@ public interface AgentChatAudioService extends IService<AgentChatAudioEntity> {
      */
     String saveAudio(byte[] audioData);
 
+    /**
+     * 批量保存音频数据
+     *
+     * @param audioDataList 音频数据列表
+     * @return 音频ID列表，与音频数据顺序一致
+     */
+    List<String> saveAudios(List<byte[]> audioDataList);
+
+    /**
+     * 批量保存已写入文件存储的音频
+     *
+     * @param storedAudios 文件存储中的音频
+     * @return 音频ID列表，与参数顺序一致
+     */
+    List<String> saveStoredAudios(List<AudioStorage.StoredAudio> storedAudios);
+
+    /**
+     * 删除已写入文件存储、但没有记录引用的音频，如保存音频后上报被拒绝
+     *
+     * @param contentHash 音频内容哈希
+     */
+    void releaseStoredAudio(String contentHash);
+
     /**
      * 获取音频数据
      *
@@ -27,4 +55,26 @@ public interface AgentChatAudioService extends IService<AgentChatAudioEntity> {
      * @return 音频数据
      */
     byte[] getAudio(String audioId);
+
+    /**
+     * 获取音频资源，文件存储中的音频不读入内存
+     *
+     * @param audioId 音频ID
+     * @return 音频资源，不存在时返回null
+     */
+    Resource getAudioResource(String audioId);
+
+    /**
+     * 音频是否存在
+     *
+     * @param audioId 音频ID
+     */
+    boolean existsAudio(String audioId);
+
+    /**
+     * 批量删除音频，事务提交后删除不再被引用的音频文件
+     *
+     * @param audioIds 音频ID列表
+     */
+    void deleteAudios(List<String> audioIds);
 }
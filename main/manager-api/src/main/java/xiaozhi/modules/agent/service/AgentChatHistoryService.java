@@ -23,7 +23,7 @@ public interface AgentChatHistoryService extends IService<AgentChatHistoryEntity
     /**
      * 根据智能体ID获取会话列表
      *
-     * @param params 查询参数，包含agentId、page、limit
+     * @param params 查询参数，包含agentId、page、limit，可选cursor（上一页最后一条会话的游标）
      * @return 分页的会话列表
      */
     PageData<AgentChatSessionDTO> getSessionListByAgentId(Map<String, Object> params);
@@ -71,4 +71,11 @@ public interface AgentChatHistoryService extends IService<AgentChatHistoryEntity
      * @return T：属于 F：不属于
      */
     boolean isAudioOwnedByAgent(String audioId,String agentId);
+
+    /**
+     * 批量保存聊天记录，多条记录合并为一条INSERT语句，并更新会话汇总
+     *
+     * @param entities 聊天记录列表
+     */
+    void batchInsert(List<AgentChatHistoryEntity> entities);
 }
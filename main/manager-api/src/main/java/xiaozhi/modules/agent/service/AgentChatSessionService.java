@@ -0,0 +1,57 @@
+package xiaozhi.modules.agent.service;
+
+import java.util.List;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import xiaozhi.common.page.PageData;
+import xiaozhi.modules.agent.dto.AgentChatSessionDTO;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentChatSessionEntity;
+
+/**
+ * 智能体聊天会话汇总service
+ */
+public interface AgentChatSessionService extends IService<AgentChatSessionEntity> {
+
+    /**
+     * 按新写入的聊天记录更新会话汇总，需与聊天记录在同一事务中调用
+     *
+     * @param entities 新写入的聊天记录
+     */
+    void recordMessages(List<AgentChatHistoryEntity> entities);
+
+    /**
+     * 按最后聊天时间倒序分页查询会话
+     *
+     * @param agentId 智能体ID
+     * @param page    页码，从1开始，传入cursor时忽略
+     * @param limit   每页条数
+     * @param cursor  上一页最后一条会话的游标，为空时按页码查询
+     * @return 分页的会话列表
+     */
+    PageData<AgentChatSessionDTO> getSessionPage(String agentId, int page, int limit, String cursor);
+
+    /**
+     * 删除智能体的所有会话汇总
+     *
+     * @param agentId 智能体ID
+     */
+    void deleteByAgentId(String agentId);
+
+    /**
+     * 智能体的会话汇总是否需要从聊天记录重建，即最早的聊天记录所在的会话还没有汇总
+     *
+     * @param agentId 智能体ID
+     * @return 是否需要重建
+     */
+    boolean needsRebuild(String agentId);
+
+    /**
+     * 从聊天记录重新统计智能体的会话汇总，在一个事务中完成，失败时不留下部分结果
+     *
+     * @param agentId 智能体ID
+     * @return 统计的会话数
+     */
+    int rebuild(String agentId);
+}
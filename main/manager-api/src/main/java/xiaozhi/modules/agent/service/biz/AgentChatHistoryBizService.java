@@ -1,5 +1,9 @@
 package xiaozhi.modules.agent.service.biz;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
 import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
 
 /**
@@ -19,4 +23,26 @@ public interface AgentChatHistoryBizService {
      * @return 上传结果，true表示成功，false表示失败
      */
     Boolean report(AgentChatHistoryReportDTO agentChatHistoryReportDTO);
+
+    /**
+     * 在一个事务中批量写入聊天上报，设备不存在或未开启聊天记录的上报被忽略
+     *
+     * @param reports 聊天上报列表
+     */
+    void saveReports(List<AgentChatHistoryReportDTO> reports);
+
+    /**
+     * 保存二进制上报的音频。智能体记录音频时把音频写入文件存储，并在上报中记下音频哈希；否则忽略音频
+     *
+     * @param report 聊天上报
+     * @param audio  音频数据流
+     */
+    void storeReportAudio(AgentChatHistoryReportDTO report, InputStream audio) throws IOException;
+
+    /**
+     * 丢弃二进制上报已保存的音频，上报被拒绝或写库失败时调用。其他记录引用相同内容时保留
+     *
+     * @param report 聊天上报
+     */
+    void discardReportAudio(AgentChatHistoryReportDTO report);
 }
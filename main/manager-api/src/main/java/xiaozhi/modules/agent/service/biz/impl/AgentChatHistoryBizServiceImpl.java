@@ -1,7 +1,11 @@
 package xiaozhi.modules.agent.service.biz.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 
 import org.springframework.stereotype.Service;
@@ -10,17 +14,15 @@ import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import xiaozhi.common.constant.Constant;
-import xiaozhi.common.redis.RedisKeys;
-import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.agent.audio.AudioStorage;
+import xiaozhi.modules.agent.config.ChatAudioProperties;
 import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
 import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
-import xiaozhi.modules.agent.entity.AgentEntity;
 import xiaozhi.modules.agent.service.AgentChatAudioService;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentChatSummaryService;
-import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.biz.AgentChatHistoryBizService;
-import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.resolve.DeviceResolution;
 import xiaozhi.modules.device.service.DeviceService;
 
 /**
@@ -34,12 +36,12 @@ import xiaozhi.modules.device.service.DeviceService;
 @Slf4j
 @RequiredArgsConstructor
 public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizService {
-    private final AgentService agentService;
     private final AgentChatHistoryService agentChatHistoryService;
     private final AgentChatAudioService agentChatAudioService;
     private final AgentChatSummaryService agentChatSummaryService;
-    private final RedisUtils redisUtils;
     private final DeviceService deviceService;
+    private final AudioStorage audioStorage;
+    private final ChatAudioProperties chatAudioProperties;
 
     /**
      * 处理聊天记录上报，包括文件上传和相关信息记录
@@ -56,14 +58,14 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
                 : System.currentTimeMillis();
         log.info("小智设备聊天上报请求: macAddress={}, type={} reportTime={}", macAddress, chatType, reportTimeMillis);
 
-        // 根据设备MAC地址查询对应的默认智能体，判断是否需要上报
-        AgentEntity agentEntity = agentService.getDefaultAgentByMacAddress(macAddress);
-        if (agentEntity == null) {
+        // 根据设备MAC地址解析设备及其智能体，判断是否需要上报
+        DeviceResolution device = deviceService.resolveByMacAddress(macAddress);
+        if (device == null || !device.isAgentExists()) {
             return Boolean.FALSE;
         }
 
-        Integer chatHistoryConf = agentEntity.getChatHistoryConf();
-        String agentId = agentEntity.getId();
+        Integer chatHistoryConf = device.getChatHistoryConf();
+        String agentId = device.getAgentId();
 
         if (Objects.equals(chatHistoryConf, Constant.ChatHistoryConfEnum.RECORD_TEXT.getCode())) {
             saveChatText(report, agentId, macAddress, null, reportTimeMillis);
@@ -72,27 +74,136 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
             saveChatText(report, agentId, macAddress, audioId, reportTimeMillis);
         }
 
-        // 更新设备最后对话时间
-        redisUtils.set(RedisKeys.getAgentDeviceLastConnectedAtById(agentId), new Date());
+        // 更新设备及智能体最后连接时间
+        deviceService.updateDeviceConnectionInfo(agentId, device.getDeviceId(), null);
 
-        // 更新设备最后连接时间
-        DeviceEntity device = deviceService.getDeviceByMacAddress(macAddress);
-        if (device != null) {
-            deviceService.updateDeviceConnectionInfo(agentId, device.getId(), null);
-        } else {
-            log.warn("聊天记录上报时，未找到mac地址为 {} 的设备", macAddress);
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 批量写入聊天上报：音频和聊天记录分别批量写入，在一个事务中提交
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void saveReports(List<AgentChatHistoryReportDTO> reports) {
+        List<AgentChatHistoryEntity> entities = new ArrayList<>(reports.size());
+        List<AgentChatHistoryEntity> audioEntities = new ArrayList<>();
+        List<byte[]> audios = new ArrayList<>();
+        List<AgentChatHistoryEntity> storedAudioEntities = new ArrayList<>();
+        List<AudioStorage.StoredAudio> storedAudios = new ArrayList<>();
+        for (AgentChatHistoryReportDTO report : reports) {
+            DeviceResolution device = deviceService.resolveByMacAddress(report.getMacAddress());
+            if (device == null || !device.isAgentExists()) {
+                continue;
+            }
+            Integer chatHistoryConf = device.getChatHistoryConf();
+            boolean recordAudio = Objects.equals(chatHistoryConf,
+                    Constant.ChatHistoryConfEnum.RECORD_TEXT_AUDIO.getCode());
+            if (recordAudio || Objects.equals(chatHistoryConf, Constant.ChatHistoryConfEnum.RECORD_TEXT.getCode())) {
+                Long reportTimeMillis = null != report.getReportTime() ? report.getReportTime() * 1000
+                        : System.currentTimeMillis();
+                AgentChatHistoryEntity entity = buildChatText(report, device.getAgentId(), report.getMacAddress(),
+                        null, reportTimeMillis);
+                entities.add(entity);
+                AudioStorage.StoredAudio storedAudio = recordAudio ? toStoredAudio(report) : null;
+                byte[] audioData = recordAudio && storedAudio == null ? decodeAudio(report) : null;
+                if (storedAudio != null) {
+                    storedAudioEntities.add(entity);
+                    storedAudios.add(storedAudio);
+                } else if (audioData != null) {
+                    audioEntities.add(entity);
+                    audios.add(audioData);
+                }
+            }
+            deviceService.updateDeviceConnectionInfo(device.getAgentId(), device.getDeviceId(), null);
         }
 
-        return Boolean.TRUE;
+        if (!audios.isEmpty()) {
+            List<String> audioIds = agentChatAudioService.saveAudios(audios);
+            for (int i = 0; i < audioEntities.size(); i++) {
+                audioEntities.get(i).setAudioId(audioIds.get(i));
+            }
+        }
+        if (!storedAudios.isEmpty()) {
+            List<String> audioIds = agentChatAudioService.saveStoredAudios(storedAudios);
+            for (int i = 0; i < storedAudioEntities.size(); i++) {
+                storedAudioEntities.get(i).setAudioId(audioIds.get(i));
+            }
+        }
+        if (!entities.isEmpty()) {
+            agentChatHistoryService.batchInsert(entities);
+        }
+        log.debug("批量写入聊天上报 {} 条，保存聊天记录 {} 条、音频 {} 条", reports.size(), entities.size(),
+                audios.size() + storedAudios.size());
+    }
+
+    @Override
+    public void storeReportAudio(AgentChatHistoryReportDTO report, InputStream audio) throws IOException {
+        DeviceResolution device = deviceService.resolveByMacAddress(report.getMacAddress());
+        if (device == null || !device.isAgentExists() || !Objects.equals(device.getChatHistoryConf(),
+                Constant.ChatHistoryConfEnum.RECORD_TEXT_AUDIO.getCode())) {
+            return;
+        }
+        if (!chatAudioProperties.isLocalStorage()) {
+            // 音频保存在数据库中，只能随上报一起写库
+            byte[] audioData = audio.readAllBytes();
+            if (audioData.length > 0) {
+                report.setAudioBase64(Base64.getEncoder().encodeToString(audioData));
+            }
+            return;
+        }
+        AudioStorage.StoredAudio storedAudio = audioStorage.put(audio);
+        if (storedAudio != null) {
+            report.setAudioHash(storedAudio.key());
+            report.setAudioSize(storedAudio.size());
+        }
     }
 
     /**
-     * base64解码report.getOpusDataBase64(),存入ai_agent_chat_audio表
+     * 相同内容可能被还未写库的其他上报引用，删除后的文件在读取时恢复，清理前也会再次确认引用
+     */
+    @Override
+    public void discardReportAudio(AgentChatHistoryReportDTO report) {
+        if (report.getAudioHash() == null) {
+            return;
+        }
+        try {
+            agentChatAudioService.releaseStoredAudio(report.getAudioHash());
+        } catch (Exception e) {
+            // 留给定期清理处理
+            log.warn("丢弃上报音频失败: {} {}", report.getAudioHash(), e.getMessage());
+        }
+    }
+
+    private AudioStorage.StoredAudio toStoredAudio(AgentChatHistoryReportDTO report) {
+        if (report.getAudioHash() == null || report.getAudioSize() == null) {
+            return null;
+        }
+        return new AudioStorage.StoredAudio(report.getAudioHash(), report.getAudioSize());
+    }
+
+    private byte[] decodeAudio(AgentChatHistoryReportDTO report) {
+        if (report.getAudioBase64() == null || report.getAudioBase64().isEmpty()) {
+            return null;
+        }
+        try {
+            return Base64.getDecoder().decode(report.getAudioBase64());
+        } catch (IllegalArgumentException e) {
+            log.warn("音频数据解码失败，只保存文本: macAddress={}", report.getMacAddress());
+            return null;
+        }
+    }
+
+    /**
+     * base64解码report.getOpusDataBase64(),存入ai_agent_chat_audio表；二进制上报的音频已在文件存储中，只保存记录
      */
     private String saveChatAudio(AgentChatHistoryReportDTO report) {
         String audioId = null;
 
-        if (report.getAudioBase64() != null && !report.getAudioBase64().isEmpty()) {
+        AudioStorage.StoredAudio storedAudio = toStoredAudio(report);
+        if (storedAudio != null) {
+            audioId = agentChatAudioService.saveStoredAudios(List.of(storedAudio)).get(0);
+        } else if (report.getAudioBase64() != null && !report.getAudioBase64().isEmpty()) {
             try {
                 byte[] audioData = Base64.getDecoder().decode(report.getAudioBase64());
                 audioId = agentChatAudioService.saveAudio(audioData);
@@ -110,8 +221,18 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
      */
     private void saveChatText(AgentChatHistoryReportDTO report, String agentId, String macAddress, String audioId,
             Long reportTime) {
-        // 构建聊天记录实体
-        AgentChatHistoryEntity entity = AgentChatHistoryEntity.builder()
+        // 保存数据
+        agentChatHistoryService.batchInsert(List.of(buildChatText(report, agentId, macAddress, audioId, reportTime)));
+
+        log.info("设备 {} 对应智能体 {} 上报成功", macAddress, agentId);
+    }
+
+    /**
+     * 构建聊天记录实体
+     */
+    private AgentChatHistoryEntity buildChatText(AgentChatHistoryReportDTO report, String agentId, String macAddress,
+            String audioId, Long reportTime) {
+        return AgentChatHistoryEntity.builder()
                 .macAddress(macAddress)
                 .agentId(agentId)
                 .sessionId(report.getSessionId())
@@ -121,10 +242,5 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
                 .createdAt(new Date(reportTime))
                 // NOTE(haotian): 2025/5/26 updateAt可以不设置，重点是createAt，而且这样可以看到上报延迟
                 .build();
-
-        // 保存数据
-        agentChatHistoryService.save(entity);
-
-        log.info("设备 {} 对应智能体 {} 上报成功", macAddress, agentId);
     }
 }
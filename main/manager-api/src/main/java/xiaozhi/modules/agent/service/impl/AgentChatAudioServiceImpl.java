@@ -1,34 +1,164 @@
 package xiaozhi.modules.agent.service.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
+import cn.hutool.core.collection.ListUtil;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.agent.audio.AudioStorage;
+import xiaozhi.modules.agent.config.ChatAudioProperties;
 import xiaozhi.modules.agent.dao.AiAgentChatAudioDao;
 import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
 import xiaozhi.modules.agent.service.AgentChatAudioService;
 
 /**
  * 智能体聊天音频数据表处理service {@link AgentChatAudioService} impl
+ * <p>
+ * 音频内容保存在 {@link AudioStorage} 中，表中只保存内容哈希；未迁移的旧数据仍从BLOB字段读取。
  *
  * @author Goody
  * @version 1.0, 2025/5/8
  * @since 1.0.0
  */
 @Service
+@RequiredArgsConstructor
 public class AgentChatAudioServiceImpl extends ServiceImpl<AiAgentChatAudioDao, AgentChatAudioEntity>
         implements AgentChatAudioService {
+    /**
+     * 单条DELETE语句包含的音频数
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final AudioStorage audioStorage;
+    private final ChatAudioProperties properties;
+
     @Override
     public String saveAudio(byte[] audioData) {
-        AgentChatAudioEntity entity = new AgentChatAudioEntity();
-        entity.setAudio(audioData);
+        AgentChatAudioEntity entity = toEntity(audioData);
         save(entity);
         return entity.getId();
     }
 
+    @Override
+    public List<String> saveAudios(List<byte[]> audioDataList) {
+        List<AgentChatAudioEntity> entities = new ArrayList<>(audioDataList.size());
+        for (byte[] audioData : audioDataList) {
+            entities.add(toEntity(audioData));
+        }
+        saveBatch(entities);
+        return entities.stream().map(AgentChatAudioEntity::getId).toList();
+    }
+
+    @Override
+    public List<String> saveStoredAudios(List<AudioStorage.StoredAudio> storedAudios) {
+        List<AgentChatAudioEntity> entities = new ArrayList<>(storedAudios.size());
+        for (AudioStorage.StoredAudio storedAudio : storedAudios) {
+            AgentChatAudioEntity entity = new AgentChatAudioEntity();
+            entity.setContentHash(storedAudio.key());
+            entity.setAudioSize((int) storedAudio.size());
+            entities.add(entity);
+        }
+        saveBatch(entities);
+        return entities.stream().map(AgentChatAudioEntity::getId).toList();
+    }
+
+    @Override
+    public void releaseStoredAudio(String contentHash) {
+        deleteUnreferencedFiles(Set.of(contentHash));
+    }
+
+    /**
+     * 先写入文件再保存记录，记录指向的文件一定存在
+     */
+    private AgentChatAudioEntity toEntity(byte[] audioData) {
+        AgentChatAudioEntity entity = new AgentChatAudioEntity();
+        if (properties.isLocalStorage()) {
+            entity.setContentHash(audioStorage.put(audioData));
+            entity.setAudioSize(audioData.length);
+        } else {
+            entity.setAudio(audioData);
+        }
+        return entity;
+    }
+
     @Override
     public byte[] getAudio(String audioId) {
+        Resource resource = getAudioResource(audioId);
+        if (resource == null) {
+            return null;
+        }
+        try {
+            return resource.getContentAsByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Resource getAudioResource(String audioId) {
+        AgentChatAudioEntity reference = getOne(new LambdaQueryWrapper<AgentChatAudioEntity>()
+                .select(AgentChatAudioEntity::getId, AgentChatAudioEntity::getContentHash)
+                .eq(AgentChatAudioEntity::getId, audioId));
+        if (reference == null) {
+            return null;
+        }
+        if (reference.getContentHash() != null) {
+            return audioStorage.get(reference.getContentHash());
+        }
         AgentChatAudioEntity entity = getById(audioId);
-        return entity != null ? entity.getAudio() : null;
+        return entity != null && entity.getAudio() != null ? new ByteArrayResource(entity.getAudio()) : null;
+    }
+
+    @Override
+    public boolean existsAudio(String audioId) {
+        return count(new LambdaQueryWrapper<AgentChatAudioEntity>().eq(AgentChatAudioEntity::getId, audioId)) > 0;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void deleteAudios(List<String> audioIds) {
+        Set<String> contentHashes = new HashSet<>();
+        for (List<String> batch : ListUtil.partition(audioIds, DELETE_BATCH_SIZE)) {
+            list(new LambdaQueryWrapper<AgentChatAudioEntity>()
+                    .select(AgentChatAudioEntity::getContentHash)
+                    .in(AgentChatAudioEntity::getId, batch)
+                    .isNotNull(AgentChatAudioEntity::getContentHash))
+                    .forEach(entity -> contentHashes.add(entity.getContentHash()));
+            removeByIds(batch);
+        }
+        if (!contentHashes.isEmpty()) {
+            TransactionUtils.afterCommit(() -> deleteUnreferencedFiles(contentHashes));
+        }
+    }
+
+    /**
+     * 相同内容的音频共用一个文件，只删除没有其他记录引用的文件
+     */
+    private void deleteUnreferencedFiles(Set<String> contentHashes) {
+        for (List<String> batch : ListUtil.partition(new ArrayList<>(contentHashes), DELETE_BATCH_SIZE)) {
+            Set<String> referenced = new HashSet<>();
+            list(new LambdaQueryWrapper<AgentChatAudioEntity>()
+                    .select(AgentChatAudioEntity::getContentHash)
+                    .in(AgentChatAudioEntity::getContentHash, batch))
+                    .forEach(entity -> referenced.add(entity.getContentHash()));
+            batch.stream()
+                    .filter(Objects::nonNull)
+                    .filter(contentHash -> !referenced.contains(contentHash))
+                    .forEach(audioStorage::delete);
+        }
     }
 }
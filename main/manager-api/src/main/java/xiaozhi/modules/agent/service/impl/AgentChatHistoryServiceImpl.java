@@ -1,9 +1,7 @@
 package xiaozhi.modules.agent.service.impl;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import cn.hutool.core.collection.ListUtil;
 import org.springframework.stereotype.Service;
@@ -15,6 +13,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
+import lombok.RequiredArgsConstructor;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.utils.ConvertUtils;
@@ -25,7 +24,9 @@ import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
 import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
 import xiaozhi.modules.agent.dto.AgentChatSessionDTO;
 import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.service.AgentChatAudioService;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
+import xiaozhi.modules.agent.service.AgentChatSessionService;
 import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
 
 /**
@@ -36,35 +37,26 @@ import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
  * @since 1.0.0
  */
 @Service
+@RequiredArgsConstructor
 public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryDao, AgentChatHistoryEntity>
         implements AgentChatHistoryService {
+    /**
+     * 单条INSERT语句包含的记录数
+     */
+    private static final int BATCH_INSERT_SIZE = 500;
+
+    private final AgentChatAudioService agentChatAudioService;
+    private final AgentChatSessionService agentChatSessionService;
 
     @Override
     public PageData<AgentChatSessionDTO> getSessionListByAgentId(Map<String, Object> params) {
         String agentId = (String) params.get("agentId");
         int page = Integer.parseInt(params.get(Constant.PAGE).toString());
         int limit = Integer.parseInt(params.get(Constant.LIMIT).toString());
+        Object cursor = params.get("cursor");
 
-        // 构建查询条件
-        QueryWrapper<AgentChatHistoryEntity> wrapper = new QueryWrapper<>();
-        wrapper.select("session_id", "MAX(created_at) as created_at", "COUNT(*) as chat_count")
-                .eq("agent_id", agentId)
-                .groupBy("session_id")
-                .orderByDesc("created_at");
-
-        // 执行分页查询
-        Page<Map<String, Object>> pageParam = new Page<>(page, limit);
-        IPage<Map<String, Object>> result = this.baseMapper.selectMapsPage(pageParam, wrapper);
-
-        List<AgentChatSessionDTO> records = result.getRecords().stream().map(map -> {
-            AgentChatSessionDTO dto = new AgentChatSessionDTO();
-            dto.setSessionId((String) map.get("session_id"));
-            dto.setCreatedAt((LocalDateTime) map.get("created_at"));
-            dto.setChatCount(((Number) map.get("chat_count")).intValue());
-            return dto;
-        }).collect(Collectors.toList());
-
-        return new PageData<>(records, result.getTotal());
+        // 会话列表从会话汇总表读取，不再对聊天记录分组统计
+        return agentChatSessionService.getSessionPage(agentId, page, limit, cursor == null ? null : cursor.toString());
     }
 
     @Override
@@ -89,11 +81,7 @@ public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryD
             // 分批删除音频,避免超时
             List<String> audioIds = baseMapper.getAudioIdsByAgentId(agentId);
             if (ToolUtil.isNotEmpty(audioIds)) {
-                // 每批删除1000条
-                List<List<String>> batch = ListUtil.split(audioIds, 1000);
-                batch.forEach(dataList->{
-                    baseMapper.deleteAudioByIds(dataList);
-                });
+                agentChatAudioService.deleteAudios(audioIds);
             }
         }
         if (deleteAudio && !deleteText) {
@@ -101,6 +89,7 @@ public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryD
         }
         if (deleteText) {
             baseMapper.deleteHistoryByAgentId(agentId);
+            agentChatSessionService.deleteByAgentId(agentId);
         }
 
     }
@@ -178,4 +167,12 @@ public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryD
                 .eq(AgentChatHistoryEntity::getAgentId, agentId));
         return row == 1;
     }
+
+    @Override
+    public void batchInsert(List<AgentChatHistoryEntity> entities) {
+        for (List<AgentChatHistoryEntity> batch : ListUtil.partition(entities, BATCH_INSERT_SIZE)) {
+            baseMapper.batchInsert(batch);
+        }
+        agentChatSessionService.recordMessages(entities);
+    }
 }
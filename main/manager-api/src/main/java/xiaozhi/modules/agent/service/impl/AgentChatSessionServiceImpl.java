@@ -0,0 +1,226 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+
+import cn.hutool.core.collection.ListUtil;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.page.PageData;
+import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.modules.agent.Enums.AgentChatHistoryType;
+import xiaozhi.modules.agent.dao.AiAgentChatSessionDao;
+import xiaozhi.modules.agent.dto.AgentChatSessionDTO;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentChatSessionEntity;
+import xiaozhi.modules.agent.service.AgentChatSessionService;
+
+/**
+ * {@link AgentChatSessionService} impl
+ * <p>
+ * 写入聊天记录时在同一事务中按会话累加时间范围和条数，会话列表只查询汇总表，
+ * 按 (agent_id, last_chat_at, id) 索引倒序读取，传入游标时从上一页最后一条之后继续读取，不需要跳过前面的记录。
+ */
+@Service
+public class AgentChatSessionServiceImpl extends ServiceImpl<AiAgentChatSessionDao, AgentChatSessionEntity>
+        implements AgentChatSessionService {
+    /**
+     * 单条INSERT语句包含的会话数
+     */
+    private static final int BATCH_UPSERT_SIZE = 500;
+    /**
+     * 会话标题的最大长度
+     */
+    private static final int TITLE_LENGTH = 50;
+
+    @Override
+    public void recordMessages(List<AgentChatHistoryEntity> entities) {
+        // 按智能体和会话排序后写入，并发写入同一批会话时加锁顺序一致
+        Map<String, AgentChatSessionEntity> sessions = new TreeMap<>();
+        Map<String, Date> titleTimes = new HashMap<>();
+        for (AgentChatHistoryEntity entity : entities) {
+            if (entity.getSessionId() == null) {
+                continue;
+            }
+            String key = entity.getAgentId() + ":" + entity.getSessionId();
+            AgentChatSessionEntity session = sessions.computeIfAbsent(key, k -> {
+                AgentChatSessionEntity created = new AgentChatSessionEntity();
+                created.setAgentId(entity.getAgentId());
+                created.setSessionId(entity.getSessionId());
+                created.setFirstChatAt(entity.getCreatedAt());
+                created.setLastChatAt(entity.getCreatedAt());
+                created.setChatCount(0);
+                return created;
+            });
+            if (entity.getCreatedAt().before(session.getFirstChatAt())) {
+                session.setFirstChatAt(entity.getCreatedAt());
+            }
+            if (entity.getCreatedAt().after(session.getLastChatAt())) {
+                session.setLastChatAt(entity.getCreatedAt());
+            }
+            session.setChatCount(session.getChatCount() + 1);
+
+            Date titleTime = titleTimes.get(key);
+            if (isUserMessage(entity) && (titleTime == null || entity.getCreatedAt().before(titleTime))) {
+                session.setTitle(buildTitle(entity.getContent()));
+                titleTimes.put(key, entity.getCreatedAt());
+            }
+        }
+        if (sessions.isEmpty()) {
+            return;
+        }
+        for (List<AgentChatSessionEntity> batch : ListUtil.partition(new ArrayList<>(sessions.values()),
+                BATCH_UPSERT_SIZE)) {
+            baseMapper.upsertIncrement(batch);
+        }
+    }
+
+    @Override
+    public PageData<AgentChatSessionDTO> getSessionPage(String agentId, int page, int limit, String cursor) {
+        LambdaQueryWrapper<AgentChatSessionEntity> wrapper = new LambdaQueryWrapper<AgentChatSessionEntity>()
+                .eq(AgentChatSessionEntity::getAgentId, agentId)
+                .orderByDesc(AgentChatSessionEntity::getLastChatAt)
+                .orderByDesc(AgentChatSessionEntity::getId);
+
+        List<AgentChatSessionEntity> records;
+        long total;
+        if (StringUtils.isBlank(cursor)) {
+            IPage<AgentChatSessionEntity> result = baseMapper.selectPage(new Page<>(page, limit), wrapper);
+            records = result.getRecords();
+            total = result.getTotal();
+        } else {
+            AgentChatSessionEntity after = parseCursor(cursor);
+            wrapper.and(w -> w.lt(AgentChatSessionEntity::getLastChatAt, after.getLastChatAt())
+                    .or(o -> o.eq(AgentChatSessionEntity::getLastChatAt, after.getLastChatAt())
+                            .lt(AgentChatSessionEntity::getId, after.getId())))
+                    .last("LIMIT " + limit);
+            records = list(wrapper);
+            total = count(new LambdaQueryWrapper<AgentChatSessionEntity>()
+                    .eq(AgentChatSessionEntity::getAgentId, agentId));
+        }
+        return new PageData<>(records.stream().map(this::toDTO).toList(), total);
+    }
+
+    @Override
+    public void deleteByAgentId(String agentId) {
+        remove(new LambdaQueryWrapper<AgentChatSessionEntity>().eq(AgentChatSessionEntity::getAgentId, agentId));
+    }
+
+    @Override
+    public boolean needsRebuild(String agentId) {
+        AgentChatHistoryEntity earliest = baseMapper.selectEarliestMessage(agentId);
+        if (earliest == null) {
+            return false;
+        }
+        AgentChatSessionEntity session = getOne(new LambdaQueryWrapper<AgentChatSessionEntity>()
+                .select(AgentChatSessionEntity::getFirstChatAt)
+                .eq(AgentChatSessionEntity::getAgentId, agentId)
+                .eq(AgentChatSessionEntity::getSessionId, earliest.getSessionId()));
+        return session == null || session.getFirstChatAt().after(earliest.getCreatedAt());
+    }
+
+    /**
+     * 在一个事务中统计并覆盖写入，失败时整体回滚，下次启动时重新判断并重建。
+     * 统计时加共享锁，与写入聊天记录时的增量维护互斥：先提交的聊天记录计入统计，之后的由增量维护在统计结果上累加，
+     * 条数不会因为两者交错而丢失或重复。依赖默认的可重复读隔离级别阻止统计期间插入新的聊天记录
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int rebuild(String agentId) {
+        List<AgentChatSessionEntity> sessions = baseMapper.selectAggregatesFromHistory(agentId);
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> titles = new HashMap<>();
+        for (AgentChatHistoryEntity message : baseMapper.selectFirstUserMessages(agentId)) {
+            titles.put(message.getSessionId(), buildTitle(message.getContent()));
+        }
+        sessions.sort(Comparator.comparing(AgentChatSessionEntity::getSessionId));
+        for (AgentChatSessionEntity session : sessions) {
+            session.setTitle(titles.get(session.getSessionId()));
+        }
+        for (List<AgentChatSessionEntity> batch : ListUtil.partition(sessions, BATCH_UPSERT_SIZE)) {
+            baseMapper.upsertRebuild(batch);
+        }
+        return sessions.size();
+    }
+
+    private AgentChatSessionDTO toDTO(AgentChatSessionEntity entity) {
+        AgentChatSessionDTO dto = new AgentChatSessionDTO();
+        dto.setSessionId(entity.getSessionId());
+        dto.setCreatedAt(toLocalDateTime(entity.getLastChatAt()));
+        dto.setFirstChatAt(toLocalDateTime(entity.getFirstChatAt()));
+        dto.setChatCount(entity.getChatCount());
+        dto.setTitle(entity.getTitle());
+        dto.setCursor(entity.getLastChatAt().getTime() + "_" + entity.getId());
+        return dto;
+    }
+
+    /**
+     * 游标格式为 最后聊天时间毫秒数_主键ID
+     */
+    static AgentChatSessionEntity parseCursor(String cursor) {
+        String[] parts = cursor.split("_");
+        try {
+            if (parts.length == 2) {
+                AgentChatSessionEntity after = new AgentChatSessionEntity();
+                after.setLastChatAt(new Date(Long.parseLong(parts[0])));
+                after.setId(Long.parseLong(parts[1]));
+                return after;
+            }
+        } catch (NumberFormatException e) {
+            // 按格式错误处理
+        }
+        throw new RenException(ErrorCode.PARAMS_GET_ERROR);
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    private static boolean isUserMessage(AgentChatHistoryEntity entity) {
+        return Objects.equals(entity.getChatType(), AgentChatHistoryType.USER.getValue());
+    }
+
+    /**
+     * 取聊天内容的开头作为标题，带说话人的JSON格式内容只取其中的content字段
+     */
+    static String buildTitle(String content) {
+        if (StringUtils.isBlank(content)) {
+            return null;
+        }
+        String text = content.trim();
+        if (text.startsWith("{")) {
+            try {
+                Map<?, ?> json = JsonUtils.parseObject(text, Map.class);
+                if (json != null && json.get("content") != null) {
+                    text = json.get("content").toString().trim();
+                }
+            } catch (RuntimeException e) {
+                // 不是JSON格式，使用原内容
+            }
+        }
+        if (text.length() <= TITLE_LENGTH) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(TITLE_LENGTH - 1)) ? TITLE_LENGTH - 1 : TITLE_LENGTH;
+        return text.substring(0, end);
+    }
+}
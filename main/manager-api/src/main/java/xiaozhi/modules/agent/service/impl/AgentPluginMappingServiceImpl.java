@@ -17,6 +17,8 @@ import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.modules.agent.dao.AgentPluginMappingMapper;
 import xiaozhi.modules.agent.entity.AgentPluginMapping;
 import xiaozhi.modules.agent.service.AgentPluginMappingService;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.knowledge.entity.KnowledgeBaseEntity;
 import xiaozhi.modules.knowledge.service.KnowledgeBaseService;
 import xiaozhi.modules.model.entity.ModelConfigEntity;
@@ -34,6 +36,7 @@ public class AgentPluginMappingServiceImpl extends ServiceImpl<AgentPluginMappin
     private final AgentPluginMappingMapper agentPluginMappingMapper;
     private final KnowledgeBaseService knowledgeBaseService;
     private final ModelConfigService modelConfigService;
+    private final ConfigVersionRedis configVersionRedis;
 
     @Override
     public List<AgentPluginMapping> agentPluginParamsByAgentId(String agentId) {
@@ -102,6 +105,7 @@ public class AgentPluginMappingServiceImpl extends ServiceImpl<AgentPluginMappin
         UpdateWrapper<AgentPluginMapping> updateWrapper = new UpdateWrapper<>();
         updateWrapper.eq("agent_id", agentId);
         agentPluginMappingMapper.delete(updateWrapper);
+        configVersionRedis.bumpAgent(agentId, ConfigChangeType.PLUGIN_MAPPING);
     }
 
 }
@@ -48,6 +48,8 @@ import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.AgentTagService;
 import xiaozhi.modules.agent.service.AgentTemplateService;
 import xiaozhi.modules.agent.vo.AgentInfoVO;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.model.dto.ModelProviderDTO;
@@ -74,6 +76,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
     private final ModelProviderService modelProviderService;
     private final AgentContextProviderService agentContextProviderService;
     private final AgentTagService agentTagService;
+    private final ConfigVersionRedis configVersionRedis;
 
     @Override
     public PageData<AgentEntity> adminAgentList(Map<String, Object> params) {
@@ -428,6 +431,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
             throw new RenException(ErrorCode.LLM_INTENT_PARAMS_MISMATCH);
         }
         this.updateById(existingEntity);
+        configVersionRedis.bumpAgent(agentId, ConfigChangeType.AGENT);
     }
 
     /**
@@ -6,9 +6,12 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
+import lombok.AllArgsConstructor;
 import xiaozhi.modules.agent.dao.AgentTemplateDao;
 import xiaozhi.modules.agent.entity.AgentTemplateEntity;
 import xiaozhi.modules.agent.service.AgentTemplateService;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 
 import java.util.List;
 import java.util.Objects;
@@ -21,8 +24,10 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
  * @createDate 2025-03-22 11:48:18
  */
 @Service
+@AllArgsConstructor
 public class AgentTemplateServiceImpl extends ServiceImpl<AgentTemplateDao, AgentTemplateEntity>
         implements AgentTemplateService {
+    private final ConfigVersionRedis configVersionRedis;
 
     /**
      * 获取默认模板
@@ -77,6 +82,8 @@ public class AgentTemplateServiceImpl extends ServiceImpl<AgentTemplateDao, Agen
         }
         wrapper.ge("sort", 0);
         update(wrapper);
+        // 默认模板的模型决定了服务器配置中的VAD、ASR
+        configVersionRedis.bumpGlobal(ConfigChangeType.AGENT_TEMPLATE);
     }
 
     @Override
@@ -39,6 +39,8 @@ import xiaozhi.modules.agent.service.AgentChatAudioService;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentVoicePrintService;
 import xiaozhi.modules.agent.vo.AgentVoicePrintVO;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.sys.service.SysParamsService;
 
 /**
@@ -57,16 +59,19 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
     // 识别度
     private final Double RECOGNITION = 0.5;
     private final Executor taskExecutor;
+    private final ConfigVersionRedis configVersionRedis;
 
     public AgentVoicePrintServiceImpl(AgentChatAudioService agentChatAudioService, RestTemplate restTemplate,
                                       SysParamsService sysParamsService, AgentChatHistoryService agentChatHistoryService,
-                                      TransactionTemplate transactionTemplate, @Qualifier("taskExecutor") Executor taskExecutor) {
+                                      TransactionTemplate transactionTemplate, @Qualifier("taskExecutor") Executor taskExecutor,
+                                      ConfigVersionRedis configVersionRedis) {
         this.agentChatAudioService = agentChatAudioService;
         this.restTemplate = restTemplate;
         this.sysParamsService = sysParamsService;
         this.agentChatHistoryService = agentChatHistoryService;
         this.transactionTemplate = transactionTemplate;
         this.taskExecutor = taskExecutor;
+        this.configVersionRedis = configVersionRedis;
     }
 
     @Override
@@ -94,6 +99,7 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
                 }
                 // 发送注册声纹请求
                 registerVoicePrint(entity.getId(), resource);
+                configVersionRedis.bumpAgent(entity.getAgentId(), ConfigChangeType.VOICE_PRINT);
                 return true;
             } catch (RenException e) {
                 status.setRollbackOnly(); // 标记事务回滚
@@ -108,6 +114,7 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
 
     @Override
     public boolean delete(Long userId, String voicePrintId) {
+        AgentVoicePrintEntity voicePrint = baseMapper.selectById(voicePrintId);
         // 开启事务
         boolean b = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
             try {
@@ -129,6 +136,9 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
         }));
         // 数据库声纹数据删除成功才继续执行删除声纹服务的数据
         if(b){
+            if (voicePrint != null) {
+                configVersionRedis.bumpAgent(voicePrint.getAgentId(), ConfigChangeType.VOICE_PRINT);
+            }
             taskExecutor.execute(()-> {
                 try {
                     cancelVoicePrint(voicePrintId);
@@ -202,6 +212,7 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
                     // 发送注册声纹请求
                     registerVoicePrint(id, resource);
                 }
+                configVersionRedis.bumpAgent(agentId, ConfigChangeType.VOICE_PRINT);
                 return true;
             } catch (RenException e) {
                 status.setRollbackOnly(); // 标记事务回滚
@@ -0,0 +1,95 @@
+package xiaozhi.modules.agent.session;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.config.ChatSessionProperties;
+import xiaozhi.modules.agent.dao.AgentDao;
+import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.service.AgentChatSessionService;
+
+/**
+ * 从聊天记录重建会话汇总
+ * <p>
+ * 会话汇总表上线前的聊天记录没有汇总。启动后在后台线程中按主键顺序逐个检查智能体，
+ * 最早的聊天记录所在会话还没有汇总时，从聊天记录重新统计该智能体的全部会话。
+ * 每个智能体在一个事务中重建，统计时加锁与写入聊天记录时的增量维护互斥，重建结果覆盖已有汇总；
+ * 重建失败时整体回滚，下次启动时重新重建，已重建的智能体下次启动时跳过。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(ChatSessionProperties.class)
+public class ChatSessionRebuildJob {
+    private final AgentDao agentDao;
+    private final AgentChatSessionService agentChatSessionService;
+    private final ChatSessionProperties properties;
+
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isRebuildOnStartup()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::rebuild, "ChatSessionRebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    private void rebuild() {
+        String lastId = "";
+        int rebuiltAgents = 0;
+        long rebuiltSessions = 0;
+        try {
+            while (running) {
+                List<AgentEntity> batch = agentDao.selectList(new LambdaQueryWrapper<AgentEntity>()
+                        .select(AgentEntity::getId)
+                        .gt(AgentEntity::getId, lastId)
+                        .orderByAsc(AgentEntity::getId)
+                        .last("LIMIT " + properties.getRebuildBatchSize()));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (AgentEntity agent : batch) {
+                    if (!running || !agentChatSessionService.needsRebuild(agent.getId())) {
+                        continue;
+                    }
+                    try {
+                        rebuiltSessions += agentChatSessionService.rebuild(agent.getId());
+                        rebuiltAgents++;
+                    } catch (TransientDataAccessException e) {
+                        // 与写入聊天记录的事务锁冲突时已整体回滚，下次启动时重建
+                        log.warn("智能体 {} 的聊天会话汇总重建失败，下次启动时重建: {}", agent.getId(), e.getMessage());
+                    }
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                Thread.sleep(properties.getRebuildPauseMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("聊天会话汇总重建失败，已重建 {} 个智能体，下次启动时继续", rebuiltAgents, e);
+            return;
+        }
+        if (rebuiltAgents > 0) {
+            log.info("聊天会话汇总重建结束，共重建 {} 个智能体的 {} 个会话", rebuiltAgents, rebuiltSessions);
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package xiaozhi.modules.config.controller;
 
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,11 +21,18 @@ import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import xiaozhi.common.utils.Result;
 import xiaozhi.common.validator.ValidatorUtils;
+import xiaozhi.modules.config.dto.AgentModelsBatchDTO;
 import xiaozhi.modules.config.dto.AgentModelsDTO;
+import xiaozhi.modules.config.dto.ServerLoadReportDTO;
+import xiaozhi.modules.config.feed.ConfigChangeFeed;
 import xiaozhi.modules.config.service.ConfigService;
+import xiaozhi.modules.config.service.ConfigService.VersionedAgentModels;
+import xiaozhi.modules.device.endpoint.WebSocketEndpointAssigner;
 
 /**
  * xiaozhi-server 配置获取
+ * <p>
+ * 响应头ETag携带配置版本号，客户端在请求头If-None-Match中带回，配置未变化时返回304且不构建配置
  *
  * @since 1.0.0
  */
@@ -25,20 +42,79 @@ import xiaozhi.modules.config.service.ConfigService;
 @AllArgsConstructor
 public class ConfigController {
     private final ConfigService configService;
+    private final ConfigChangeFeed configChangeFeed;
+    private final WebSocketEndpointAssigner webSocketEndpointAssigner;
 
     @PostMapping("server-base")
     @Operation(summary = "服务端获取配置接口")
-    public Result<Object> getConfig() {
+    public ResponseEntity<Result<Object>> getConfig(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String eTag = toETag(configService.getConfigVersion());
+        if (isNotModified(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
         Object config = configService.getConfig(true);
-        return new Result<Object>().ok(config);
+        return ResponseEntity.ok().eTag(eTag).body(new Result<Object>().ok(config));
     }
 
     @PostMapping("agent-models")
     @Operation(summary = "获取智能体模型")
-    public Result<Object> getAgentModels(@Valid @RequestBody AgentModelsDTO dto) {
+    public ResponseEntity<Result<Object>> getAgentModels(@Valid @RequestBody AgentModelsDTO dto,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // 效验数据
+        ValidatorUtils.validateEntity(dto);
+        VersionedAgentModels result = configService.getAgentModels(dto.getMacAddress(), dto.getSelectedModule(),
+                version -> isNotModified(ifNoneMatch, toETag(version)));
+        String eTag = toETag(result.version());
+        if (result.models() == null) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        return builder.body(new Result<Object>().ok(result.models()));
+    }
+
+    @PostMapping("agent-models/batch")
+    @Operation(summary = "批量获取智能体模型")
+    public Result<Map<String, Result<Object>>> getAgentModelsBatch(@Valid @RequestBody AgentModelsBatchDTO dto) {
         // 效验数据
         ValidatorUtils.validateEntity(dto);
-        Object models = configService.getAgentModels(dto.getMacAddress(), dto.getSelectedModule());
-        return new Result<Object>().ok(models);
+        return new Result<Map<String, Result<Object>>>().ok(configService.getAgentModelsBatch(dto.getDevices()));
+    }
+
+    @PostMapping("server-load")
+    @Operation(summary = "服务端上报WebSocket负载")
+    public Result<Void> reportServerLoad(@Valid @RequestBody ServerLoadReportDTO dto) {
+        // 效验数据
+        ValidatorUtils.validateEntity(dto);
+        webSocketEndpointAssigner.report(dto);
+        return new Result<>();
+    }
+
+    @GetMapping(value = "change-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅配置变更事件（SSE）")
+    public SseEmitter changeStream() {
+        return configChangeFeed.connect();
+    }
+
+    private static String toETag(String version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * 请求头If-None-Match中是否包含当前版本
+     */
+    private static boolean isNotModified(String ifNoneMatch, String eTag) {
+        if (eTag == null || StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            if (eTag.equals(StringUtils.removeStart(candidate.trim(), "W/"))) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,26 @@
+package xiaozhi.modules.config.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "配置变更事件")
+public class ConfigChangeEventDTO {
+
+    @Schema(description = "变更类型")
+    private ConfigChangeType type;
+
+    @Schema(description = "受影响的智能体ID，全局变更时为空")
+    private String agentId;
+
+    @Schema(description = "变更后的版本号，全局变更为全局版本号，否则为智能体版本号")
+    private Long version;
+
+    @Schema(description = "变更时间戳（毫秒）")
+    private Long timestamp;
+}
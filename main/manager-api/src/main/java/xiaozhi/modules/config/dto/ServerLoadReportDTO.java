@@ -0,0 +1,24 @@
+package xiaozhi.modules.config.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+@Schema(description = "服务端负载上报DTO")
+public class ServerLoadReportDTO {
+
+    @NotBlank(message = "WebSocket地址不能为空")
+    @Schema(description = "本节点的WebSocket地址，需与参数server.websocket中的某一项一致")
+    private String websocketUrl;
+
+    @NotNull(message = "连接数不能为空")
+    @Min(value = 0, message = "连接数不能小于0")
+    @Schema(description = "当前WebSocket连接数")
+    private Integer connections;
+
+    @Schema(description = "是否可以接收新连接，为空时视为可以")
+    private Boolean healthy;
+}
@@ -0,0 +1,49 @@
+package xiaozhi.modules.config.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * 配置变更类型
+ */
+public enum ConfigChangeType {
+    SYS_PARAMS("sys_params", true),
+    MODEL_CONFIG("model_config", true),
+    AGENT_TEMPLATE("agent_template", true),
+    TIMBRE("timbre", true),
+    VOICE_CLONE("voice_clone", true),
+    KNOWLEDGE_BASE("knowledge_base", true),
+    AGENT("agent", false),
+    PLUGIN_MAPPING("plugin_mapping", false),
+    VOICE_PRINT("voice_print", false);
+
+    private final String value;
+    /**
+     * 是否影响所有智能体
+     */
+    private final boolean global;
+
+    ConfigChangeType(String value, boolean global) {
+        this.value = value;
+        this.global = global;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isGlobal() {
+        return global;
+    }
+
+    @JsonCreator
+    public static ConfigChangeType fromValue(String value) {
+        for (ConfigChangeType type : ConfigChangeType.values()) {
+            if (type.value.equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package xiaozhi.modules.config.feed;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.config.dto.ConfigChangeEventDTO;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
+
+/**
+ * 配置变更推送
+ * <p>
+ * xiaozhi-server通过SSE长连接订阅，任一manager-api节点上的配置变更经Redis频道广播到所有节点，
+ * 再由各节点推送给连接到本节点的订阅方。连接建立时先推送一次当前全局版本号，
+ * 订阅方重连后可据此判断断线期间是否错过了变更。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConfigChangeFeed implements MessageListener {
+    /**
+     * 单个连接的最长时长，超时后由订阅方重连
+     */
+    private static final long EMITTER_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final ConfigVersionRedis configVersionRedis;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(ConfigVersionRedis.CHANGE_CHANNEL));
+    }
+
+    /**
+     * 建立订阅连接
+     */
+    public SseEmitter connect() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> {
+            emitters.remove(emitter);
+            emitter.complete();
+        });
+        emitter.onError(e -> emitters.remove(emitter));
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("hello")
+                    .data(Map.of("version", configVersionRedis.getGlobal()), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * 当前节点的订阅连接数
+     */
+    public int getSubscriberCount() {
+        return emitters.size();
+    }
+
+    /**
+     * 收到配置变更事件，推送给本节点的全部订阅方
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof ConfigChangeEventDTO event) || event.getType() == null) {
+            return;
+        }
+        broadcast(SseEmitter.event()
+                .name(event.getType().getValue())
+                .data(event, MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * 定时发送心跳，及时清理已断开的连接
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void heartbeat() {
+        if (!emitters.isEmpty()) {
+            broadcast(SseEmitter.event().comment("ping"));
+        }
+    }
+
+    private void broadcast(SseEmitter.SseEventBuilder builder) {
+        // 事件只构建一次，所有连接共用
+        Set<ResponseBodyEmitter.DataWithMediaType> event = builder.build();
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(event);
+            } catch (Exception e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+                log.debug("配置变更订阅连接已断开：{}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package xiaozhi.modules.config.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.NearCache;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.config.dto.ConfigChangeEventDTO;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+
+/**
+ * 配置版本号
+ * <p>
+ * 全局版本号在系统参数、模型配置、音色等被多个智能体共享的数据变更时递增；
+ * 智能体版本号在智能体本身、插件映射、声纹等只影响单个智能体的数据变更时递增。
+ * 版本号保存在Redis中，集群内所有节点共享。
+ * 版本号递增后在配置变更频道上发布事件，由各节点推送给订阅的xiaozhi-server。
+ * <p>
+ * 其他节点的变更事件是异步到达的，本节点读到比之前更新的全局版本号时，先同步清除本地缓存再返回版本号，
+ * 调用方随后构建的配置不会读到变更前的本地缓存，也就不会把旧内容标记为新版本号。
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class ConfigVersionRedis {
+    /**
+     * 配置变更事件频道
+     */
+    public static final String CHANGE_CHANNEL = "config:change";
+
+    private final RedisUtils redisUtils;
+    private final NearCache nearCache;
+
+    /**
+     * 全局版本号前进时同步执行的本地缓存清除
+     */
+    private final List<Runnable> globalChangeListeners = new CopyOnWriteArrayList<>();
+    /**
+     * 本节点已清除过本地缓存的全局版本号
+     */
+    private volatile long observedGlobal;
+
+    /**
+     * 注册本地缓存清除操作，读到更新的全局版本号时在返回版本号之前执行
+     *
+     * @param listener 清除本地缓存，不应访问Redis和数据库
+     */
+    public void onGlobalChange(Runnable listener) {
+        globalChangeListeners.add(listener);
+    }
+
+    /**
+     * 全局配置变更，若处于事务中则在提交后递增，避免其他请求用旧数据构建出新版本的快照
+     *
+     * @param type 变更类型
+     */
+    public void bumpGlobal(ConfigChangeType type) {
+        TransactionUtils.afterCommit(() -> {
+            initGlobal();
+            Long version = redisUtils.increment(RedisKeys.getConfigVersionKey());
+            publish(new ConfigChangeEventDTO(type, null, version, System.currentTimeMillis()));
+        });
+    }
+
+    /**
+     * 智能体配置变更
+     *
+     * @param agentId 智能体ID
+     * @param type    变更类型
+     */
+    public void bumpAgent(String agentId, ConfigChangeType type) {
+        if (StringUtils.isBlank(agentId)) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> {
+            Long version = redisUtils.increment(RedisKeys.getAgentConfigVersionKey(agentId));
+            publish(new ConfigChangeEventDTO(type, agentId, version, System.currentTimeMillis()));
+        });
+    }
+
+    /**
+     * 获取全局配置版本号
+     */
+    public long getGlobal() {
+        Object value = redisUtils.get(RedisKeys.getConfigVersionKey());
+        return observe(value == null ? initGlobal() : toLong(value));
+    }
+
+    /**
+     * 一次往返同时获取全局版本号和智能体版本号
+     *
+     * @param agentId 智能体ID
+     * @return [全局版本号, 智能体版本号]
+     */
+    public long[] getVersions(String agentId) {
+        List<Object> values = redisUtils.mGet(List.of(RedisKeys.getConfigVersionKey(),
+                RedisKeys.getAgentConfigVersionKey(agentId)));
+        if (values == null || values.size() < 2) {
+            return new long[] { 0L, 0L };
+        }
+        long global = observe(values.get(0) == null ? initGlobal() : toLong(values.get(0)));
+        return new long[] { global, toLong(values.get(1)) };
+    }
+
+    /**
+     * 一次往返获取全局版本号和多个智能体的版本号
+     *
+     * @param agentIds 智能体ID列表
+     * @return 智能体ID -> [全局版本号, 智能体版本号]
+     */
+    public Map<String, long[]> getVersions(Collection<String> agentIds) {
+        List<String> agentIdList = new ArrayList<>(agentIds);
+        List<String> keys = new ArrayList<>(agentIdList.size() + 1);
+        keys.add(RedisKeys.getConfigVersionKey());
+        for (String agentId : agentIdList) {
+            keys.add(RedisKeys.getAgentConfigVersionKey(agentId));
+        }
+        List<Object> values = redisUtils.mGet(keys);
+        Map<String, long[]> result = new HashMap<>(agentIdList.size() * 2);
+        if (values == null || values.size() < keys.size()) {
+            agentIdList.forEach(agentId -> result.put(agentId, new long[] { 0L, 0L }));
+            return result;
+        }
+        long global = observe(values.get(0) == null ? initGlobal() : toLong(values.get(0)));
+        for (int i = 0; i < agentIdList.size(); i++) {
+            result.put(agentIdList.get(i), new long[] { global, toLong(values.get(i + 1)) });
+        }
+        return result;
+    }
+
+    /**
+     * 全局版本号不存在（首次启动或Redis被清空）时以当前时间为起点，
+     * 避免清空后从0重新计数与客户端持有的旧版本号重合
+     */
+    private long initGlobal() {
+        long seed = System.currentTimeMillis();
+        if (Boolean.TRUE.equals(redisUtils.setIfAbsent(RedisKeys.getConfigVersionKey(), seed))) {
+            return seed;
+        }
+        return toLong(redisUtils.get(RedisKeys.getConfigVersionKey()));
+    }
+
+    /**
+     * 全局版本号比本节点已处理的更新时，先清除本地缓存再返回。
+     * 并发读到新版本号的请求等待清除完成，不会在清除之前开始构建
+     */
+    private long observe(long global) {
+        if (global > observedGlobal) {
+            synchronized (this) {
+                if (global > observedGlobal) {
+                    nearCache.clearLocal();
+                    globalChangeListeners.forEach(Runnable::run);
+                    observedGlobal = global;
+                }
+            }
+        }
+        return global;
+    }
+
+    private void publish(ConfigChangeEventDTO event) {
+        try {
+            redisUtils.publish(CHANGE_CHANNEL, event);
+        } catch (Exception e) {
+            // 版本号已递增，订阅方错过事件时仍可通过版本号比对发现变更
+            log.warn("配置变更事件发布失败，类型：{}，原因：{}", event.getType(), e.getMessage());
+        }
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String str && StringUtils.isNumeric(str)) {
+            return Long.parseLong(str);
+        }
+        return 0L;
+    }
+}
@@ -1,6 +1,11 @@
 package xiaozhi.modules.config.service;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+
+import xiaozhi.common.utils.Result;
+import xiaozhi.modules.config.dto.AgentModelsDTO;
 
 public interface ConfigService {
     /**
@@ -11,6 +16,13 @@ public interface ConfigService {
      */
     Object getConfig(Boolean isCache);
 
+    /**
+     * 获取服务器配置的版本号，配置未变化时版本号不变
+     *
+     * @return 版本号
+     */
+    String getConfigVersion();
+
     /**
      * 获取智能体模型配置
      * 
@@ -19,4 +31,33 @@ public interface ConfigService {
      * @return 模型配置信息
      */
     Map<String, Object> getAgentModels(String macAddress, Map<String, String> selectedModule);
+
+    /**
+     * 批量获取智能体模型配置
+     *
+     * @param devices 设备MAC地址及客户端已实例化的模型
+     * @return MAC地址 -> 该设备的模型配置或错误信息
+     */
+    Map<String, Result<Object>> getAgentModelsBatch(List<AgentModelsDTO> devices);
+
+    /**
+     * 按版本号条件获取智能体模型配置，设备解析和版本号读取只进行一次
+     *
+     * @param macAddress     MAC地址
+     * @param selectedModule 客户端已实例化的模型
+     * @param notModified    根据版本号判断客户端持有的配置是否仍然有效
+     * @return 版本号和模型配置，客户端配置仍然有效时模型配置为null
+     */
+    VersionedAgentModels getAgentModels(String macAddress, Map<String, String> selectedModule,
+            Predicate<String> notModified);
+
+    /**
+     * 带版本号的智能体模型配置
+     *
+     * @param version 版本号，配置和客户端已实例化的模型均未变化时不变；
+     *                无法确定版本（管理控制台请求）时为null
+     * @param models  模型配置
+     */
+    record VersionedAgentModels(String version, Map<String, Object> models) {
+    }
 }
\ No newline at end of file
@@ -2,9 +2,12 @@ package xiaozhi.modules.config.service.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
@@ -18,7 +21,7 @@ import xiaozhi.common.exception.RenException;
 import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.utils.ConvertUtils;
-import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.common.utils.Result;
 import xiaozhi.modules.agent.dao.AgentVoicePrintDao;
 import xiaozhi.modules.agent.entity.AgentContextProviderEntity;
 import xiaozhi.modules.agent.entity.AgentEntity;
@@ -31,12 +34,17 @@ import xiaozhi.modules.agent.service.AgentPluginMappingService;
 import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.AgentTemplateService;
 import xiaozhi.modules.agent.vo.AgentVoicePrintVO;
+import xiaozhi.modules.config.dto.AgentModelsDTO;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.config.service.ConfigService;
-import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.config.snapshot.AgentConfigSnapshot;
+import xiaozhi.modules.config.snapshot.AgentConfigSnapshotStore;
+import xiaozhi.modules.device.resolve.DeviceResolution;
 import xiaozhi.modules.device.service.DeviceService;
-import xiaozhi.modules.model.entity.ModelConfigEntity;
-import xiaozhi.modules.model.service.ModelConfigService;
-import xiaozhi.modules.sys.dto.SysParamsDTO;
+import xiaozhi.modules.model.registry.ModelConfigOverlay;
+import xiaozhi.modules.model.registry.ModelConfigRegistry;
+import xiaozhi.modules.model.registry.ModelConfigView;
+import xiaozhi.modules.sys.params.SysParamsRegistry;
 import xiaozhi.modules.sys.service.SysParamsService;
 import xiaozhi.modules.timbre.service.TimbreService;
 import xiaozhi.modules.timbre.vo.TimbreDetailsVO;
@@ -48,7 +56,6 @@ import xiaozhi.modules.voiceclone.service.VoiceCloneService;
 public class ConfigServiceImpl implements ConfigService {
     private final SysParamsService sysParamsService;
     private final DeviceService deviceService;
-    private final ModelConfigService modelConfigService;
     private final AgentService agentService;
     private final AgentTemplateService agentTemplateService;
     private final RedisUtils redisUtils;
@@ -58,13 +65,20 @@ public class ConfigServiceImpl implements ConfigService {
     private final AgentContextProviderService agentContextProviderService;
     private final VoiceCloneService cloneVoiceService;
     private final AgentVoicePrintDao agentVoicePrintDao;
+    private final AgentConfigSnapshotStore agentConfigSnapshotStore;
+    private final ConfigVersionRedis configVersionRedis;
+    private final SysParamsRegistry sysParamsRegistry;
+    private final ModelConfigRegistry modelConfigRegistry;
 
     @Override
     public Object getConfig(Boolean isCache) {
+        // 先读取版本号再构建，构建期间发生的变更会因版本不一致在下次读取时重建
+        long version = configVersionRedis.getGlobal();
         if (isCache) {
-            // 先从Redis获取配置
+            // 先从Redis获取配置，缓存的构建版本落后时重新构建
             Object cachedConfig = redisUtils.get(RedisKeys.getServerConfigKey());
-            if (cachedConfig != null) {
+            Object cachedVersion = redisUtils.get(RedisKeys.getServerConfigVersionKey());
+            if (cachedConfig != null && cachedVersion != null && String.valueOf(version).equals(cachedVersion.toString())) {
                 return cachedConfig;
             }
         }
@@ -104,23 +118,35 @@ public class ConfigServiceImpl implements ConfigService {
 
         // 将配置存入Redis
         redisUtils.set(RedisKeys.getServerConfigKey(), result);
+        redisUtils.set(RedisKeys.getServerConfigVersionKey(), String.valueOf(version));
 
         return result;
     }
 
+    @Override
+    public String getConfigVersion() {
+        return String.valueOf(configVersionRedis.getGlobal());
+    }
+
     @Override
     public Map<String, Object> getAgentModels(String macAddress, Map<String, String> selectedModule) {
+        return getAgentModels(macAddress, selectedModule, version -> false).models();
+    }
+
+    @Override
+    public VersionedAgentModels getAgentModels(String macAddress, Map<String, String> selectedModule,
+            Predicate<String> notModified) {
         // 检查是否为管理控制台请求
         String redisKey = RedisKeys.getTmpRegisterMacKey(macAddress);
         Object isAdminRequest = redisUtils.get(redisKey);
-        
-        if (isAdminRequest != null && "true".equals(isAdminRequest)) {
-            // 管理控制台请求，返回getConfig的结果
+
+        if ("true".equals(isAdminRequest)) {
+            // 管理控制台请求，返回getConfig的结果，不参与版本比对
             redisUtils.delete(redisKey); // 使用后清理
-            return (Map<String, Object>) getConfig(true);
+            return new VersionedAgentModels(null, (Map<String, Object>) getConfig(true));
         }
         // 根据MAC地址查找设备
-        DeviceEntity device = deviceService.getDeviceByMacAddress(macAddress);
+        DeviceResolution device = deviceService.resolveByMacAddress(macAddress);
         if (device == null) {
             // 如果设备，去redis里看看有没有需要连接的设备
             String cachedCode = deviceService.geCodeByDeviceId(macAddress);
@@ -129,9 +155,90 @@ public class ConfigServiceImpl implements ConfigService {
             }
             throw new RenException(ErrorCode.OTA_DEVICE_NOT_FOUND);
         }
+        String agentId = device.getAgentId();
+        if (StringUtils.isBlank(agentId)) {
+            throw new RenException(ErrorCode.AGENT_NOT_FOUND);
+        }
 
+        // 同一组版本号既用于比对也用于读取快照
+        long[] versions = configVersionRedis.getVersions(agentId);
+        // 返回内容还取决于客户端已实例化的VAD、ASR模型
+        String selectedVad = selectedModule == null ? "" : StringUtils.defaultString(selectedModule.get("VAD"));
+        String selectedAsr = selectedModule == null ? "" : StringUtils.defaultString(selectedModule.get("ASR"));
+        String version = agentId + "-" + versions[0] + "-" + versions[1] + "-" + selectedVad + "-" + selectedAsr;
+        if (notModified.test(version)) {
+            return new VersionedAgentModels(version, null);
+        }
+
+        // 智能体配置只在依赖的数据变化时重新构建，每次请求仅按已实例化的模型裁剪
+        AgentConfigSnapshot snapshot = agentConfigSnapshotStore.get(agentId, versions,
+                () -> buildAgentConfig(agentId));
+        return new VersionedAgentModels(version, snapshot.toResult(selectedModule));
+    }
+
+    @Override
+    public Map<String, Result<Object>> getAgentModelsBatch(List<AgentModelsDTO> devices) {
+        Map<String, Result<Object>> results = new LinkedHashMap<>();
+        Map<String, Map<String, String>> selectedByMac = new LinkedHashMap<>();
+        for (AgentModelsDTO dto : devices) {
+            selectedByMac.put(dto.getMacAddress(), dto.getSelectedModule());
+        }
+
+        // 经设备解析缓存批量解析，未命中的设备合并查询，再按智能体分组，同一智能体只读取一次快照
+        Map<String, String> agentIdByMac = new HashMap<>();
+        deviceService.resolveByMacAddresses(selectedByMac.keySet()).forEach((macAddress, device) -> {
+            if (StringUtils.isNotBlank(device.getAgentId())) {
+                agentIdByMac.put(macAddress, device.getAgentId());
+            }
+        });
+        Map<String, long[]> versions = agentIdByMac.isEmpty() ? new HashMap<>()
+                : configVersionRedis.getVersions(new HashSet<>(agentIdByMac.values()));
+        Map<String, AgentConfigSnapshot> snapshots = new HashMap<>();
+        // 构建失败的智能体，其下的设备共用错误结果，不重复构建
+        Map<String, RenException> failures = new HashMap<>();
+
+        for (Map.Entry<String, Map<String, String>> entry : selectedByMac.entrySet()) {
+            String macAddress = entry.getKey();
+            String agentId = agentIdByMac.get(macAddress);
+            try {
+                Map<String, Object> models;
+                if (agentId == null) {
+                    // 未绑定设备、管理控制台请求等少数情况走单个设备的处理逻辑
+                    models = getAgentModels(macAddress, entry.getValue());
+                } else {
+                    if (failures.containsKey(agentId)) {
+                        throw failures.get(agentId);
+                    }
+                    AgentConfigSnapshot snapshot = snapshots.get(agentId);
+                    if (snapshot == null) {
+                        try {
+                            snapshot = agentConfigSnapshotStore.get(agentId, versions.get(agentId),
+                                    () -> buildAgentConfig(agentId));
+                        } catch (RenException e) {
+                            failures.put(agentId, e);
+                            throw e;
+                        }
+                        snapshots.put(agentId, snapshot);
+                    }
+                    models = snapshot.toResult(entry.getValue());
+                }
+                results.put(macAddress, new Result<Object>().ok(models));
+            } catch (RenException e) {
+                results.put(macAddress, new Result<Object>().error(e.getCode(), e.getMsg()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 构建智能体的完整配置信息（不考虑客户端已实例化的模型）
+     *
+     * @param agentId 智能体ID
+     * @return 配置信息
+     */
+    private Map<String, Object> buildAgentConfig(String agentId) {
         // 获取智能体信息
-        AgentEntity agent = agentService.getAgentById(device.getAgentId());
+        AgentEntity agent = agentService.getAgentById(agentId);
         if (agent == null) {
             throw new RenException(ErrorCode.AGENT_NOT_FOUND);
         }
@@ -175,19 +282,9 @@ public class ConfigServiceImpl implements ConfigService {
             chatHistoryConf = Constant.ChatHistoryConfEnum.RECORD_TEXT_AUDIO.getCode();
         }
         result.put("chat_history_conf", chatHistoryConf);
-        // 如果客户端已实例化模型，则不返回
-        String alreadySelectedVadModelId = selectedModule.get("VAD");
-        if (alreadySelectedVadModelId != null && alreadySelectedVadModelId.equals(agent.getVadModelId())) {
-            agent.setVadModelId(null);
-        }
-        String alreadySelectedAsrModelId = selectedModule.get("ASR");
-        if (alreadySelectedAsrModelId != null && alreadySelectedAsrModelId.equals(agent.getAsrModelId())) {
-            agent.setAsrModelId(null);
-        }
 
         // 添加函数调用参数信息
         if (!Objects.equals(agent.getIntentModelId(), "Intent_nointent")) {
-            String agentId = agent.getId();
             List<AgentPluginMapping> pluginMappings = agentPluginMappingService.agentPluginParamsByAgentId(agentId);
             if (pluginMappings != null && !pluginMappings.isEmpty()) {
                 Map<String, Object> pluginParams = new HashMap<>();
@@ -246,67 +343,8 @@ public class ConfigServiceImpl implements ConfigService {
      * @return 配置信息
      */
     private Object buildConfig(Map<String, Object> config) {
-
-        // 查询所有系统参数
-        List<SysParamsDTO> paramsList = sysParamsService.list(new HashMap<>());
-
-        for (SysParamsDTO param : paramsList) {
-            String[] keys = param.getParamCode().split("\\.");
-            Map<String, Object> current = config;
-
-            // 遍历除最后一个key之外的所有key
-            for (int i = 0; i < keys.length - 1; i++) {
-                String key = keys[i];
-                if (!current.containsKey(key)) {
-                    current.put(key, new HashMap<String, Object>());
-                }
-                current = (Map<String, Object>) current.get(key);
-            }
-
-            // 处理最后一个key
-            String lastKey = keys[keys.length - 1];
-            String value = param.getParamValue();
-
-            // 根据valueType转换值
-            switch (param.getValueType().toLowerCase()) {
-                case "number":
-                    try {
-                        double doubleValue = Double.parseDouble(value);
-                        // 如果数值是整数形式，则转换为Integer
-                        if (doubleValue == (int) doubleValue) {
-                            current.put(lastKey, (int) doubleValue);
-                        } else {
-                            current.put(lastKey, doubleValue);
-                        }
-                    } catch (NumberFormatException e) {
-                        current.put(lastKey, value);
-                    }
-                    break;
-                case "boolean":
-                    current.put(lastKey, Boolean.parseBoolean(value));
-                    break;
-                case "array":
-                    // 将分号分隔的字符串转换为数字数组
-                    List<String> list = new ArrayList<>();
-                    for (String num : value.split(";")) {
-                        if (StringUtils.isNotBlank(num)) {
-                            list.add(num.trim());
-                        }
-                    }
-                    current.put(lastKey, list);
-                    break;
-                case "json":
-                    try {
-                        current.put(lastKey, JsonUtils.parseObject(value, Object.class));
-                    } catch (Exception e) {
-                        current.put(lastKey, value);
-                    }
-                    break;
-                default:
-                    current.put(lastKey, value);
-            }
-        }
-
+        // 系统参数组成的嵌套配置树已在参数快照中预先生成
+        config.putAll(sysParamsRegistry.get().copyConfigTree());
         return config;
     }
 
@@ -346,18 +384,8 @@ public class ConfigServiceImpl implements ConfigService {
             voiceprintConfig.put("speakers", speakers);
 
             // 获取声纹识别相似度阈值，默认0.4
-            String thresholdStr = sysParamsService.getValue("server.voiceprint_similarity_threshold", true);
-            if (StringUtils.isNotBlank(thresholdStr) && !"null".equals(thresholdStr)) {
-                try {
-                    double threshold = Double.parseDouble(thresholdStr);
-                    voiceprintConfig.put("similarity_threshold", threshold);
-                } catch (NumberFormatException e) {
-                    // 如果解析失败，使用默认值0.4
-                    voiceprintConfig.put("similarity_threshold", 0.4);
-                }
-            } else {
-                voiceprintConfig.put("similarity_threshold", 0.4);
-            }
+            voiceprintConfig.put("similarity_threshold",
+                    sysParamsRegistry.get().getDouble("server.voiceprint_similarity_threshold", 0.4));
 
             result.put("voiceprint", voiceprintConfig);
         } catch (Exception e) {
@@ -428,83 +456,77 @@ public class ConfigServiceImpl implements ConfigService {
             if (modelIds[i] == null) {
                 continue;
             }
-            // 关键：第三个参数传false，确保获取原始密钥
-            ModelConfigEntity model = modelConfigService.getModelByIdFromCache(modelIds[i]);
+            // 共享的只读视图，按智能体覆盖的字段写入覆盖层，不修改共享配置
+            ModelConfigView model = modelConfigRegistry.get(modelIds[i]);
             if (model == null) {
                 continue;
             }
             Map<String, Object> typeConfig = new HashMap<>();
-            if (model.getConfigJson() != null) {
-                typeConfig.put(model.getId(), model.getConfigJson());
+            if (model.getConfig() != null) {
+                ModelConfigOverlay overlay = model.overlay();
                 // 如果是TTS类型，添加private_voice属性
                 if ("TTS".equals(modelTypes[i])) {
                     if (voice != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("private_voice", voice);
+                        overlay.put("private_voice", voice);
                     if (referenceAudio != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("ref_audio", referenceAudio);
+                        overlay.put("ref_audio", referenceAudio);
                     if (referenceText != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("ref_text", referenceText);
+                        overlay.put("ref_text", referenceText);
                     if (language != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("language", language);
+                        overlay.put("language", language);
                     if (ttsVolume != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("ttsVolume", ttsVolume);
+                        overlay.put("ttsVolume", ttsVolume);
                     if (ttsRate != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("ttsRate", ttsRate);
+                        overlay.put("ttsRate", ttsRate);
                     if (ttsPitch != null)
-                        ((Map<String, Object>) model.getConfigJson()).put("ttsPitch", ttsPitch);
+                        overlay.put("ttsPitch", ttsPitch);
 
                     // 火山引擎声音克隆需要替换resource_id
-                    Map<String, Object> map = (Map<String, Object>) model.getConfigJson();
-                    if (Constant.VOICE_CLONE_HUOSHAN_DOUBLE_STREAM.equals(map.get("type"))) {
+                    if (Constant.VOICE_CLONE_HUOSHAN_DOUBLE_STREAM.equals(model.get("type"))) {
                         // 如果voice是”S_“开头的，使用seed-icl-1.0
                         if (voice != null && voice.startsWith("S_")) {
-                            map.put("resource_id", "seed-icl-1.0");
+                            overlay.put("resource_id", "seed-icl-1.0");
                         }
                     }
                 }
                 // 如果是Intent类型，且type=intent_llm，则给他添加附加模型
                 if ("Intent".equals(modelTypes[i])) {
-                    Map<String, Object> map = (Map<String, Object>) model.getConfigJson();
-                    if ("intent_llm".equals(map.get("type"))) {
-                        intentLLMModelId = (String) map.get("llm");
+                    if ("intent_llm".equals(model.get("type"))) {
+                        intentLLMModelId = (String) model.get("llm");
                         if (StringUtils.isNotBlank(intentLLMModelId) && intentLLMModelId.equals(llmModelId)) {
                             intentLLMModelId = null;
                         }
                     }
-                    if (map.get("functions") != null) {
-                        String functionStr = (String) map.get("functions");
-                        if (StringUtils.isNotBlank(functionStr)) {
-                            String[] functions = functionStr.split("\\;");
-                            map.put("functions", functions);
-                        }
+                    if (model.get("functions") instanceof String functionStr && StringUtils.isNotBlank(functionStr)) {
+                        overlay.put("functions", functionStr.split("\\;"));
                     }
-                    System.out.println("map: " + map);
                 }
                 if ("Memory".equals(modelTypes[i])) {
-                    Map<String, Object> map = (Map<String, Object>) model.getConfigJson();
-                    if ("mem_local_short".equals(map.get("type"))) {
-                        memLocalShortLLMModelId = (String) map.get("llm");
+                    if ("mem_local_short".equals(model.get("type"))) {
+                        memLocalShortLLMModelId = (String) model.get("llm");
                         if (StringUtils.isNotBlank(memLocalShortLLMModelId)
                                 && memLocalShortLLMModelId.equals(llmModelId)) {
                             memLocalShortLLMModelId = null;
                         }
                     }
                 }
+                typeConfig.put(model.getId(), overlay.toMap());
                 // 如果是LLM类型，且intentLLMModelId不为空，则添加附加模型
                 if ("LLM".equals(modelTypes[i])) {
                     if (StringUtils.isNotBlank(intentLLMModelId)) {
                         if (!typeConfig.containsKey(intentLLMModelId)) {
-                            // 修改这里：添加isMaskSensitive=false参数
-                            ModelConfigEntity intentLLM = modelConfigService.getModelByIdFromCache(intentLLMModelId);
-                            typeConfig.put(intentLLM.getId(), intentLLM.getConfigJson());
+                            ModelConfigView intentLLM = modelConfigRegistry.get(intentLLMModelId);
+                            if (intentLLM != null) {
+                                typeConfig.put(intentLLM.getId(), intentLLM.getConfig());
+                            }
                         }
                     }
                     if (StringUtils.isNotBlank(memLocalShortLLMModelId)) {
                         if (!typeConfig.containsKey(memLocalShortLLMModelId)) {
-                            // 修改这里：添加isMaskSensitive=false参数
-                            ModelConfigEntity memLocalShortLLM = modelConfigService
-                                    .getModelByIdFromCache(memLocalShortLLMModelId);
-                            typeConfig.put(memLocalShortLLM.getId(), memLocalShortLLM.getConfigJson());
+                            ModelConfigView memLocalShortLLM = modelConfigRegistry.get(memLocalShortLLMModelId);
+                            if (memLocalShortLLM != null) {
+                                typeConfig.put(memLocalShortLLM.getId(), memLocalShortLLM.getConfig());
+                            }
                         }
                     }
                 }
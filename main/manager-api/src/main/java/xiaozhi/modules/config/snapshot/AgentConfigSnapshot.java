@@ -0,0 +1,67 @@
+package xiaozhi.modules.config.snapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * 智能体配置快照
+ * <p>
+ * 保存已完全解析的智能体配置（模型、音色、插件、声纹等），构建后不再修改，
+ * 多个请求共享同一实例，每次请求只需根据客户端已实例化的模型做裁剪。
+ */
+@Getter
+public final class AgentConfigSnapshot {
+    /**
+     * 客户端已实例化时可以不再下发的模块
+     */
+    private static final String[] PRUNABLE_MODULES = { "VAD", "ASR" };
+
+    private final String agentId;
+    private final long globalVersion;
+    private final long agentVersion;
+    private final Map<String, Object> config;
+    private final Map<String, String> selectedModule;
+
+    @SuppressWarnings("unchecked")
+    public AgentConfigSnapshot(String agentId, long globalVersion, long agentVersion, Map<String, Object> config) {
+        this.agentId = agentId;
+        this.globalVersion = globalVersion;
+        this.agentVersion = agentVersion;
+        Map<String, String> selected = (Map<String, String>) config.get("selected_module");
+        this.selectedModule = selected == null ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(selected));
+        this.config = Collections.unmodifiableMap(new HashMap<>(config));
+    }
+
+    /**
+     * 快照是否与当前版本一致
+     */
+    public boolean isCurrent(long globalVersion, long agentVersion) {
+        return this.globalVersion == globalVersion && this.agentVersion == agentVersion;
+    }
+
+    /**
+     * 根据客户端已实例化的模型生成本次请求的返回数据
+     *
+     * @param alreadySelected 客户端已实例化的模型
+     * @return 模型配置信息
+     */
+    public Map<String, Object> toResult(Map<String, String> alreadySelected) {
+        Map<String, Object> result = new HashMap<>(config);
+        Map<String, String> selected = new HashMap<>(selectedModule);
+        if (alreadySelected != null) {
+            for (String type : PRUNABLE_MODULES) {
+                String modelId = alreadySelected.get(type);
+                if (modelId != null && modelId.equals(selectedModule.get(type))) {
+                    result.remove(type);
+                    selected.remove(type);
+                }
+            }
+        }
+        result.put("selected_module", selected);
+        return result;
+    }
+}
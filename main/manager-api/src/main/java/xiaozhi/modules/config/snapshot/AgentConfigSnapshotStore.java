@@ -0,0 +1,70 @@
+package xiaozhi.modules.config.snapshot;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.RequiredArgsConstructor;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
+
+/**
+ * 智能体配置快照存储
+ * <p>
+ * 快照按智能体ID保存在本地内存中，每次读取时通过一次Redis往返比对全局版本号和智能体版本号，
+ * 只有依赖的数据发生变化时才重新构建。
+ */
+@Component
+@RequiredArgsConstructor
+public class AgentConfigSnapshotStore {
+    private final ConfigVersionRedis configVersionRedis;
+
+    /**
+     * 本地快照缓存，长时间未访问的智能体自动淘汰
+     */
+    private final Cache<String, AgentConfigSnapshot> snapshots = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 获取智能体配置快照，版本不一致时重新构建
+     *
+     * @param agentId 智能体ID
+     * @param builder 构建完整配置的方法
+     * @return 当前版本的快照
+     */
+    public AgentConfigSnapshot get(String agentId, Supplier<Map<String, Object>> builder) {
+        // 先读取版本号再构建，构建期间发生的变更会在下次读取时因版本不一致而重建
+        return get(agentId, configVersionRedis.getVersions(agentId), builder);
+    }
+
+    /**
+     * 使用已读取的版本号获取智能体配置快照，批量获取时用于合并版本号的读取
+     *
+     * @param agentId  智能体ID
+     * @param versions [全局版本号, 智能体版本号]
+     * @param builder  构建完整配置的方法
+     * @return 当前版本的快照
+     */
+    public AgentConfigSnapshot get(String agentId, long[] versions, Supplier<Map<String, Object>> builder) {
+        AgentConfigSnapshot snapshot = snapshots.getIfPresent(agentId);
+        if (snapshot != null && snapshot.isCurrent(versions[0], versions[1])) {
+            return snapshot;
+        }
+        snapshot = new AgentConfigSnapshot(agentId, versions[0], versions[1], builder.get());
+        snapshots.put(agentId, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * 移除本地快照
+     */
+    public void invalidate(String agentId) {
+        snapshots.invalidate(agentId);
+    }
+}
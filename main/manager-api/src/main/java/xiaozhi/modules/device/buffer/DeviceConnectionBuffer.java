@@ -0,0 +1,181 @@
+package xiaozhi.modules.device.buffer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.entity.DeviceEntity;
+
+/**
+ * 设备连接信息写缓冲
+ * <p>
+ * OTA检查和聊天上报都会更新设备最后连接时间和固件版本，逐条写库开销大且没有必要实时落库。
+ * 这里按设备合并为最新一次的连接信息，由后台线程定期批量写入数据库，同时合并智能体的最后连接时间写入Redis。
+ * 待写入的设备数达到上限时提前写入，超过硬上限时丢弃新设备的更新（下次连接会再次上报）；应用关闭时写入剩余数据。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeviceConnectionBuffer {
+    /**
+     * 定期写入间隔
+     */
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+    /**
+     * 待写入设备数达到该值时提前写入
+     */
+    private static final int FLUSH_THRESHOLD = 5000;
+    /**
+     * 待写入设备数的硬上限
+     */
+    private static final int MAX_PENDING = 20000;
+    /**
+     * 单条UPDATE语句包含的设备数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final DeviceDao deviceDao;
+    private final RedisUtils redisUtils;
+
+    /**
+     * 设备ID -> 待写入的连接信息
+     */
+    private final Map<String, DeviceEntity> pendingDevices = new ConcurrentHashMap<>();
+    /**
+     * 智能体ID -> 最后连接时间
+     */
+    private final Map<String, Date> pendingAgents = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DeviceConnectionFlush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * 记录一次设备连接
+     *
+     * @param agentId    智能体ID
+     * @param deviceId   设备ID
+     * @param appVersion 固件版本号，为空时不更新
+     */
+    public void record(String agentId, String deviceId, String appVersion) {
+        Date now = new Date();
+        if (StringUtils.isNotBlank(deviceId)) {
+            if (pendingDevices.size() >= MAX_PENDING && !pendingDevices.containsKey(deviceId)) {
+                log.debug("设备连接信息待写入数量已达上限，忽略设备 {} 的本次更新", deviceId);
+            } else {
+                pendingDevices.compute(deviceId, (id, pending) -> {
+                    DeviceEntity device = pending != null ? pending : new DeviceEntity();
+                    device.setId(id);
+                    device.setLastConnectedAt(now);
+                    if (StringUtils.isNotBlank(appVersion)) {
+                        device.setAppVersion(appVersion);
+                    }
+                    return device;
+                });
+            }
+        }
+        if (StringUtils.isNotBlank(agentId)) {
+            pendingAgents.put(agentId, now);
+        }
+        if (pendingDevices.size() >= FLUSH_THRESHOLD && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("批量写入设备连接信息失败", e);
+        }
+    }
+
+    private void flush() {
+        List<DeviceEntity> devices = new ArrayList<>(Math.min(pendingDevices.size(), MAX_PENDING));
+        for (String deviceId : pendingDevices.keySet()) {
+            DeviceEntity device = pendingDevices.remove(deviceId);
+            if (device != null) {
+                devices.add(device);
+            }
+        }
+        int written = 0;
+        for (int i = 0; i < devices.size(); i += BATCH_SIZE) {
+            List<DeviceEntity> batch = devices.subList(i, Math.min(i + BATCH_SIZE, devices.size()));
+            try {
+                deviceDao.batchUpdateConnectionInfo(batch);
+                written += batch.size();
+            } catch (Exception e) {
+                // 放回失败的一批，下次写入时重试，其他批次不受影响
+                log.error("批量写入设备连接信息失败，{} 条将在下次重试", batch.size(), e);
+                batch.forEach(this::restore);
+            }
+        }
+
+        for (String agentId : pendingAgents.keySet()) {
+            Date lastConnectedAt = pendingAgents.remove(agentId);
+            if (lastConnectedAt == null) {
+                continue;
+            }
+            try {
+                redisUtils.set(RedisKeys.getAgentDeviceLastConnectedAtById(agentId), lastConnectedAt);
+            } catch (Exception e) {
+                // Redis不可用时其余智能体留在缓冲中，下次重试
+                pendingAgents.putIfAbsent(agentId, lastConnectedAt);
+                log.error("写入智能体最后连接时间失败，将在下次重试", e);
+                break;
+            }
+        }
+        if (written > 0) {
+            log.debug("批量写入设备连接信息 {} 条", written);
+        }
+    }
+
+    /**
+     * 放回写入失败的连接信息。期间又有新的连接时保留新值，新值未带固件版本号时沿用旧值
+     */
+    private void restore(DeviceEntity failed) {
+        pendingDevices.merge(failed.getId(), failed, (newer, older) -> {
+            if (StringUtils.isBlank(newer.getAppVersion())) {
+                newer.setAppVersion(older.getAppVersion());
+            }
+            return newer;
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package xiaozhi.modules.device.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * 固件下载令牌配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "renren.ota.download")
+public class FirmwareDownloadProperties {
+    /**
+     * 默认下载次数上限，每次请求（包括断点续传）计入一次，0为不限
+     */
+    private int limit = 3;
+    /**
+     * 令牌有效期，单位：秒
+     */
+    private int expireSeconds = 60 * 60 * 24;
+    /**
+     * 按板型设置的下载次数上限，优先于默认值
+     */
+    private Map<String, Integer> boardLimits = new HashMap<>();
+    /**
+     * 按固件ID设置的下载次数上限，优先于板型
+     */
+    private Map<String, Integer> firmwareLimits = new HashMap<>();
+}
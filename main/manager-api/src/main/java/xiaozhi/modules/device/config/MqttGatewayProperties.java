@@ -0,0 +1,49 @@
+package xiaozhi.modules.device.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * MQTT网关HTTP客户端配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "renren.mqtt-gateway")
+public class MqttGatewayProperties {
+    /**
+     * 建立连接超时，单位：毫秒
+     */
+    private int connectTimeoutMillis = 3000;
+    /**
+     * 等待响应超时，单位：毫秒
+     */
+    private int readTimeoutMillis = 10000;
+    /**
+     * 同时进行中的请求数上限
+     */
+    private int maxConcurrency = 32;
+    /**
+     * 达到并发上限时等待的最长时间，单位：毫秒
+     */
+    private int acquireTimeoutMillis = 5000;
+    /**
+     * 失败重试次数，工具调用等非幂等请求只在连接失败时重试
+     */
+    private int maxRetries = 1;
+    /**
+     * 重试间隔，单位：毫秒
+     */
+    private int retryBackoffMillis = 200;
+    /**
+     * 批量调用设备工具时单个任务同时调用的设备数上限
+     */
+    private int fanoutConcurrency = 16;
+    /**
+     * 所有批量调用任务同时调用的设备数上限，不超过maxConcurrency的一半，为状态查询等其他请求留出余量
+     */
+    private int fanoutTotalConcurrency = 16;
+    /**
+     * 批量调用设备工具时单个设备的响应超时，单位：毫秒
+     */
+    private int fanoutTimeoutMillis = 15000;
+}
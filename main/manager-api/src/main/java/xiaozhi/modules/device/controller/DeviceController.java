@@ -23,12 +23,17 @@ import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.user.UserDetail;
 import xiaozhi.common.utils.Result;
 import xiaozhi.modules.device.dto.DeviceManualAddDTO;
+import xiaozhi.modules.device.dto.DeviceOnlineEventsDTO;
 import xiaozhi.modules.device.dto.DeviceRegisterDTO;
+import xiaozhi.modules.device.dto.DeviceToolsBatchCallReqDTO;
 import xiaozhi.modules.device.dto.DeviceToolsCallReqDTO;
 import xiaozhi.modules.device.dto.DeviceUnBindDTO;
 import xiaozhi.modules.device.dto.DeviceUpdateDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.online.DeviceOnlineStatusCache;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.service.DeviceToolsBatchService;
+import xiaozhi.modules.device.vo.DeviceToolsBatchCallVO;
 import xiaozhi.modules.security.user.SecurityUser;
 import xiaozhi.modules.sys.service.SysParamsService;
 
@@ -39,11 +44,16 @@ public class DeviceController {
     private final DeviceService deviceService;
     private final RedisUtils redisUtils;
     private final SysParamsService sysParamsService;
+    private final DeviceOnlineStatusCache deviceOnlineStatusCache;
+    private final DeviceToolsBatchService deviceToolsBatchService;
 
-    public DeviceController(DeviceService deviceService, RedisUtils redisUtils, SysParamsService sysParamsService) {
+    public DeviceController(DeviceService deviceService, RedisUtils redisUtils, SysParamsService sysParamsService,
+            DeviceOnlineStatusCache deviceOnlineStatusCache, DeviceToolsBatchService deviceToolsBatchService) {
         this.deviceService = deviceService;
         this.redisUtils = redisUtils;
         this.sysParamsService = sysParamsService;
+        this.deviceOnlineStatusCache = deviceOnlineStatusCache;
+        this.deviceToolsBatchService = deviceToolsBatchService;
     }
 
     @PostMapping("/bind/{agentId}/{deviceCode}")
@@ -95,6 +105,13 @@ public class DeviceController {
         }
     }
 
+    @PostMapping("/online/events")
+    @Operation(summary = "MQTT网关推送设备上下线事件")
+    public Result<Void> receiveOnlineEvents(@Valid @RequestBody DeviceOnlineEventsDTO dto) {
+        deviceOnlineStatusCache.onEvents(dto.getEvents());
+        return new Result<>();
+    }
+
     @PostMapping("/unbind")
     @Operation(summary = "解绑设备")
     @RequiresPermissions("sys:role:normal")
@@ -159,4 +176,24 @@ public class DeviceController {
         response.setMsg("Tools called successfully");
         return response.ok(result);
     }
+
+    @PostMapping("/tools/call/batch")
+    @Operation(summary = "批量调用设备工具")
+    @RequiresPermissions("sys:role:normal")
+    public Result<DeviceToolsBatchCallVO> callDeviceToolBatch(@Valid @RequestBody DeviceToolsBatchCallReqDTO request) {
+        UserDetail user = SecurityUser.getUser();
+        return new Result<DeviceToolsBatchCallVO>().ok(deviceToolsBatchService.submit(user.getId(), request));
+    }
+
+    @GetMapping("/tools/call/batch/{taskId}")
+    @Operation(summary = "查询批量调用设备工具进度")
+    @RequiresPermissions("sys:role:normal")
+    public Result<DeviceToolsBatchCallVO> getDeviceToolBatchProgress(@PathVariable String taskId) {
+        UserDetail user = SecurityUser.getUser();
+        DeviceToolsBatchCallVO progress = deviceToolsBatchService.getProgress(user.getId(), taskId);
+        if (progress == null) {
+            return new Result<DeviceToolsBatchCallVO>().error("任务不存在或已过期");
+        }
+        return new Result<DeviceToolsBatchCallVO>().ok(progress);
+    }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package xiaozhi.modules.device.controller;
 
-import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.MediaType;
@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Operation;
@@ -26,7 +27,7 @@ import lombok.extern.slf4j.Slf4j;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.modules.device.dto.DeviceReportReqDTO;
 import xiaozhi.modules.device.dto.DeviceReportRespDTO;
-import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.resolve.DeviceResolution;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.sys.service.SysParamsService;
 
@@ -36,12 +37,23 @@ import xiaozhi.modules.sys.service.SysParamsService;
 @RequiredArgsConstructor
 @RequestMapping("/ota/")
 public class OTAController {
+    /**
+     * 响应序列化器，线程安全，所有请求共用
+     */
+    private static final ObjectWriter RESPONSE_WRITER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .writer();
+    /**
+     * MAC地址通常为12位十六进制数字，可以包含冒号或连字符分隔符
+     */
+    private static final Pattern MAC_ADDRESS_PATTERN = Pattern.compile("^([0-9A-Za-z]{2}[:-]){5}([0-9A-Za-z]{2})$");
+
     private final DeviceService deviceService;
     private final SysParamsService sysParamsService;
 
     @Operation(summary = "OTA版本和设备激活状态检查")
     @PostMapping
-    public ResponseEntity<String> checkOTAVersion(
+    public ResponseEntity<byte[]> checkOTAVersion(
             @RequestBody DeviceReportReqDTO deviceReportReqDTO,
             @Parameter(name = "Device-Id", description = "设备唯一标识", required = true, in = ParameterIn.HEADER) @RequestHeader("Device-Id") String deviceId,
             @Parameter(name = "Client-Id", description = "客户端标识", required = false, in = ParameterIn.HEADER) @RequestHeader(value = "Client-Id", required = false) String clientId) {
@@ -67,7 +79,7 @@ public class OTAController {
         if (StringUtils.isBlank(deviceId)) {
             return ResponseEntity.status(202).build();
         }
-        DeviceEntity device = deviceService.getDeviceByMacAddress(deviceId);
+        DeviceResolution device = deviceService.resolveByMacAddress(deviceId);
         if (device == null) {
             return ResponseEntity.status(202).build();
         }
@@ -93,16 +105,14 @@ public class OTAController {
     }
 
     @SneakyThrows
-    private ResponseEntity<String> createResponse(DeviceReportRespDTO deviceReportRespDTO) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        String json = objectMapper.writeValueAsString(deviceReportRespDTO);
-        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+    private ResponseEntity<byte[]> createResponse(DeviceReportRespDTO deviceReportRespDTO) {
+        // 直接序列化为UTF-8字节，不再经过中间字符串
+        byte[] jsonBytes = RESPONSE_WRITER.writeValueAsBytes(deviceReportRespDTO);
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
                 .contentLength(jsonBytes.length)
-                .body(json);
+                .body(jsonBytes);
     }
 
     /**
@@ -115,8 +125,6 @@ public class OTAController {
         if (StringUtils.isBlank(macAddress)) {
             return false;
         }
-        // MAC地址通常为12位十六进制数字，可以包含冒号或连字符分隔符
-        String macPattern = "^([0-9A-Za-z]{2}[:-]){5}([0-9A-Za-z]{2})$";
-        return macAddress.matches(macPattern);
+        return MAC_ADDRESS_PATTERN.matcher(macAddress).matches();
     }
 }
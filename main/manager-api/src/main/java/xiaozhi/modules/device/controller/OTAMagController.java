@@ -2,20 +2,24 @@ package xiaozhi.modules.device.controller;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.List;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -26,11 +30,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -45,6 +54,8 @@ import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.utils.Result;
 import xiaozhi.common.validator.ValidatorUtils;
 import xiaozhi.modules.device.entity.OtaEntity;
+import xiaozhi.modules.device.ota.FirmwareBlobStore;
+import xiaozhi.modules.device.redis.FirmwareDownloadTokenRedis;
 import xiaozhi.modules.device.service.OtaService;
 import xiaozhi.modules.security.user.SecurityUser;
 import xiaozhi.modules.sys.enums.SuperAdminEnum;
@@ -60,6 +71,14 @@ public class OTAMagController {
     private final OtaService otaService;
     private final RedisUtils redisUtils;
     private final SysParamsService sysParamsService;
+    private final FirmwareDownloadTokenRedis firmwareDownloadTokenRedis;
+    private final FirmwareBlobStore firmwareBlobStore;
+    /**
+     * 固件文件路径 -> ETag等元数据
+     */
+    private final Cache<String, FirmwareFileMeta> fileMetas = CacheBuilder.newBuilder()
+            .maximumSize(256)
+            .build();
 
     @GetMapping
     @Operation(summary = "分页查询 OTA 固件信息")
@@ -137,37 +156,25 @@ public class OTAMagController {
     @Operation(summary = "获取 OTA 固件下载链接")
     @RequiresPermissions("sys:role:superAdmin")
     public Result<String> getDownloadUrl(@PathVariable("id") String id) {
-        String uuid = UUID.randomUUID().toString();
-        redisUtils.set(RedisKeys.getOtaIdKey(uuid), id);
-        return new Result<String>().ok(uuid);
+        return new Result<String>().ok(firmwareDownloadTokenRedis.issue(id, null));
     }
 
     @GetMapping("/download/{uuid}")
     @Operation(summary = "下载固件文件")
-    public ResponseEntity<byte[]> downloadFirmware(@PathVariable("uuid") String uuid) {
-        String id = (String) redisUtils.get(RedisKeys.getOtaIdKey(uuid));
+    public ResponseEntity<Resource> downloadFirmware(@PathVariable("uuid") String uuid,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range, WebRequest webRequest) {
+        // 每次请求都计入下载次数，包括Range请求；条件请求返回304时退还
+        String id = firmwareDownloadTokenRedis.consume(uuid);
         if (StringUtils.isBlank(id)) {
+            logger.warn("Download token invalid, expired or limit exceeded: {}", uuid);
             return ResponseEntity.notFound().build();
         }
 
-        // 检查下载次数
-        String downloadCountKey = RedisKeys.getOtaDownloadCountKey(uuid);
-        Integer downloadCount = (Integer) Optional.ofNullable(redisUtils.get(downloadCountKey)).orElse(0);
-
-        // 如果下载次数超过3次，返回404
-        if (downloadCount >= 3) {
-            redisUtils.delete(List.of(downloadCountKey, RedisKeys.getOtaIdKey(uuid)));
-            logger.warn("Download limit exceeded for UUID: {}", uuid);
-            return ResponseEntity.notFound().build();
-        }
-
-        redisUtils.set(downloadCountKey, downloadCount + 1);
-
         try {
             // 获取固件信息
             OtaEntity otaEntity = null;
-            if (id.indexOf("file:") == 0) {
-                id = id.substring(5);
+            if (id.startsWith(FirmwareDownloadTokenRedis.FILE_TARGET_PREFIX)) {
+                id = id.substring(FirmwareDownloadTokenRedis.FILE_TARGET_PREFIX.length());
                 otaEntity = new OtaEntity();
                 otaEntity.setFirmwarePath(id);
                 otaEntity.setType("assets");
@@ -213,11 +220,15 @@ public class OTAMagController {
                 }
             }
 
-            // 读取文件内容
-            byte[] fileContent = Files.readAllBytes(path);
-
-            // 设置响应头
-
+            // 文件以流的方式输出，不整体读入内存；Range请求由Spring按分段输出
+            FirmwareFileMeta meta = getFileMeta(path, firmwarePath);
+            if (webRequest.checkNotModified(meta.eTag(), meta.lastModified())) {
+                firmwareDownloadTokenRedis.refund(uuid);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(meta.eTag())
+                        .lastModified(meta.lastModified())
+                        .build();
+            }
             if (firmwarePath.contains(".")) {
                 String extension = firmwarePath.substring(firmwarePath.lastIndexOf("."));
                 originalFilename += extension;
@@ -226,13 +237,15 @@ public class OTAMagController {
             // 清理文件名，移除不安全字符
             String safeFilename = originalFilename.replaceAll("[^a-zA-Z0-9._-]", "_");
 
-            logger.info("Providing download for firmware ID: {}, filename: {}, size: {} bytes",
-                    id, safeFilename, fileContent.length);
+            logger.info("Providing download for firmware ID: {}, filename: {}, size: {} bytes, range: {}",
+                    id, safeFilename, meta.size(), range);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + safeFilename + "\"")
-                    .body(fileContent);
+                    .eTag(meta.eTag())
+                    .lastModified(meta.lastModified())
+                    .body(new FileSystemResource(path));
         } catch (IOException e) {
             logger.error("Error reading firmware file for ID: {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -261,34 +274,13 @@ public class OTAMagController {
             return new Result<String>().error("只允许上传.bin和.apk格式的文件");
         }
 
-        try {
-            // 计算文件的MD5值
-            String md5 = calculateMD5(file);
-
-            // 设置存储路径
-            String uploadDir = "uploadfile";
-            Path uploadPath = Paths.get(uploadDir);
-
-            // 如果目录不存在，创建目录
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // 使用MD5作为文件名，固定使用.bin扩展名
-            String uniqueFileName = md5 + extension;
-            Path filePath = uploadPath.resolve(uniqueFileName);
-
-            // 检查文件是否已存在
-            if (Files.exists(filePath)) {
-                return new Result<String>().ok(filePath.toString());
-            }
-
-            // 保存文件
-            Files.copy(file.getInputStream(), filePath);
-
-            // 返回文件路径
-            return new Result<String>().ok(filePath.toString());
-        } catch (IOException | NoSuchAlgorithmException e) {
+        // 边写入边计算摘要，使用MD5作为文件名，相同内容只保存一份
+        try (InputStream in = file.getInputStream()) {
+            FirmwareBlobStore.StoredBlob blob = firmwareBlobStore.store(in, extension);
+            logger.info("Firmware uploaded: {}, size: {}, sha256: {}, new file: {}", blob.path(), blob.size(),
+                    blob.sha256(), blob.created());
+            return new Result<String>().ok(blob.path());
+        } catch (IOException e) {
             return new Result<String>().error("文件上传失败：" + e.getMessage());
         }
     }
@@ -321,21 +313,44 @@ public class OTAMagController {
 
         // 生成资源文件路径
         if (StringUtils.isNotBlank(result.getData())) {
-            String uuid = UUID.randomUUID().toString();
-            redisUtils.set(RedisKeys.getOtaIdKey(uuid), "file:" + result.getData());
+            String uuid = firmwareDownloadTokenRedis.issue(FirmwareDownloadTokenRedis.FILE_TARGET_PREFIX + result.getData(),
+                    null);
             String downloadUrl = otaUrl.replace("/ota/", "/otaMag/download/") + uuid;
             result.setData(downloadUrl);
         }
         return result;
     }
 
-    private String calculateMD5(MultipartFile file) throws IOException, NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("MD5");
-        byte[] digest = md.digest(file.getBytes());
-        StringBuilder sb = new StringBuilder();
-        for (byte b : digest) {
-            sb.append(String.format("%02x", b));
+    /**
+     * 获取固件文件的ETag和修改时间。上传目录中的文件以内容MD5命名，直接使用；
+     * 其他位置的文件计算一次MD5，文件未变化时复用已计算的结果
+     */
+    private FirmwareFileMeta getFileMeta(Path path, String firmwarePath) throws IOException {
+        String key = path.toAbsolutePath().normalize().toString();
+        long size = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String contentMd5 = FirmwareBlobStore.contentMd5(firmwarePath);
+        if (contentMd5 != null) {
+            return new FirmwareFileMeta(size, lastModified, "\"" + contentMd5 + "\"");
         }
-        return sb.toString();
+        FirmwareFileMeta meta = fileMetas.getIfPresent(key);
+        if (meta != null && meta.size() == size && meta.lastModified() == lastModified) {
+            return meta;
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), md)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        meta = new FirmwareFileMeta(size, lastModified, "\"" + HexFormat.of().formatHex(md.digest()) + "\"");
+        fileMetas.put(key, meta);
+        return meta;
+    }
+
+    private record FirmwareFileMeta(long size, long lastModified, String eTag) {
     }
 }
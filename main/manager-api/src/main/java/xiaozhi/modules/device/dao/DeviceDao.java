@@ -1,8 +1,10 @@
 package xiaozhi.modules.device.dao;
 
 import java.util.Date;
+import java.util.List;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
@@ -18,4 +20,12 @@ public interface DeviceDao extends BaseMapper<DeviceEntity> {
      */
     Date getAllLastConnectedAtByAgentId(String agentId);
 
+    /**
+     * 批量更新设备最后连接时间和固件版本号，固件版本号为空时保持不变
+     *
+     * @param list 设备连接信息，只使用id、lastConnectedAt、appVersion
+     * @return 更新行数
+     */
+    int batchUpdateConnectionInfo(@Param("list") List<DeviceEntity> list);
+
 }
\ No newline at end of file
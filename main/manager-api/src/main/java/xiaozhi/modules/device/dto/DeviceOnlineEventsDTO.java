@@ -0,0 +1,37 @@
+package xiaozhi.modules.device.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+@Schema(description = "MQTT网关推送的设备上下线事件")
+public class DeviceOnlineEventsDTO {
+
+    @Valid
+    @NotEmpty(message = "事件列表不能为空")
+    @Schema(description = "事件列表")
+    private List<Event> events;
+
+    @Data
+    public static class Event implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @NotBlank(message = "客户端ID不能为空")
+        @Schema(description = "网关客户端ID，格式为 分组@@@MAC@@@MAC")
+        private String clientId;
+
+        @NotNull(message = "在线状态不能为空")
+        @Schema(description = "是否在线")
+        private Boolean online;
+
+        @Schema(description = "事件发生时间（毫秒时间戳，网关时钟），用于事件之间排序")
+        private Long timestamp;
+    }
+}
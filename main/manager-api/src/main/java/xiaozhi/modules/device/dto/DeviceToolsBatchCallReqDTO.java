@@ -0,0 +1,41 @@
+package xiaozhi.modules.device.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+@Schema(description = "批量调用设备工具DTO")
+public class DeviceToolsBatchCallReqDTO {
+
+    @NotBlank(message = "智能体ID不能为空")
+    @Schema(description = "智能体ID，调用该智能体下当前用户的设备")
+    private String agentId;
+
+    @Schema(description = "设备ID，只调用其中的设备，为空时调用智能体下的全部设备")
+    private List<String> deviceIds;
+
+    @Schema(description = "设备型号，只调用该型号的设备")
+    private String board;
+
+    @NotBlank(message = "工具名称不能为空")
+    @Schema(description = "工具名称")
+    private String name;
+
+    @Schema(description = "工具参数")
+    private Map<String, Object> arguments;
+
+    @Min(value = 1, message = "并发数不能小于1")
+    @Schema(description = "同时调用的设备数，不超过系统配置的上限")
+    private Integer concurrency;
+
+    @Min(value = 1000, message = "超时时间不能小于1000毫秒")
+    @Max(value = 60000, message = "超时时间不能大于60000毫秒")
+    @Schema(description = "单个设备的响应超时（毫秒），为空时使用系统配置")
+    private Integer timeoutMillis;
+}
@@ -0,0 +1,323 @@
+package xiaozhi.modules.device.endpoint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.config.dto.ServerLoadReportDTO;
+
+/**
+ * WebSocket接入地址分配
+ * <p>
+ * 参数server.websocket配置了多个地址时，按设备MAC在健康节点上做最高随机权重（HRW）哈希，
+ * 同一设备重连时总是分到同一节点，某个节点下线时只有该节点上的设备被重新分配。
+ * 节点连接数超过平均值的{@value #LOAD_FACTOR}倍时跳过该节点，避免热点节点继续接收新设备。
+ * <p>
+ * 节点负载和健康状态由xiaozhi-server定期上报到Redis，各管理端节点每{@value #REFRESH_INTERVAL_MILLIS}毫秒刷新一次本地快照；
+ * 没有上报或上报已过期的节点，由本节点定期以HTTP请求探测是否可达。探测在独立线程池中并行进行，
+ * 不占用定时任务线程，不可达节点的超时等待不会推迟刷新和其他定时任务。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketEndpointAssigner {
+    /**
+     * 上报超过该时间未更新视为过期
+     */
+    private static final long REPORT_TIMEOUT_MILLIS = 60_000;
+    /**
+     * 上报数据在Redis中的保存时间
+     */
+    private static final long REPORT_EXPIRE_SECONDS = 60 * 60;
+    private static final long REFRESH_INTERVAL_MILLIS = 5_000;
+    private static final long PROBE_INTERVAL_MILLIS = 15_000;
+    private static final int PROBE_TIMEOUT_MILLIS = 2_000;
+    private static final int PROBE_THREADS = 4;
+    /**
+     * 节点连接数上限相对平均连接数的倍数
+     */
+    private static final double LOAD_FACTOR = 1.25;
+
+    private final RedisUtils redisUtils;
+
+    /**
+     * 已解析的地址列表，参数变化时重新解析
+     */
+    private volatile Endpoints endpoints = new Endpoints(null, new String[0]);
+    /**
+     * 节点地址 -> 负载快照
+     */
+    private volatile Map<String, NodeState> nodes = Map.of();
+    /**
+     * 本节点探测不可达的地址
+     */
+    private final Map<String, Boolean> unreachable = new ConcurrentHashMap<>();
+    /**
+     * 正在探测的地址，上一轮探测未结束时不重复提交
+     */
+    private final Set<String> probing = ConcurrentHashMap.newKeySet();
+    private ExecutorService probeExecutor;
+
+    @PostConstruct
+    public void start() {
+        probeExecutor = Executors.newFixedThreadPool(PROBE_THREADS, r -> {
+            Thread thread = new Thread(r, "WebSocketEndpointProbe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * 为设备分配WebSocket地址
+     *
+     * @param configured 参数server.websocket的值，多个地址以分号分隔
+     * @param macAddress 设备MAC地址
+     * @return 分配的地址，没有配置有效地址时返回null
+     */
+    public String assign(String configured, String macAddress) {
+        String[] urls = parse(configured);
+        if (urls.length <= 1) {
+            return urls.length == 0 ? null : urls[0];
+        }
+        Map<String, NodeState> current = nodes;
+        long now = System.currentTimeMillis();
+
+        int healthyCount = 0;
+        long totalLoad = 0;
+        for (String url : urls) {
+            NodeState state = current.get(url);
+            if (isHealthy(url, state, now)) {
+                healthyCount++;
+                totalLoad += load(state);
+            }
+        }
+        // 全部节点都不健康时退化为在全部节点上分配，设备仍然可以拿到地址并重试
+        boolean filterUnhealthy = healthyCount > 0;
+        if (!filterUnhealthy) {
+            healthyCount = urls.length;
+            for (String url : urls) {
+                totalLoad += load(current.get(url));
+            }
+        }
+        long maxLoad = (long) Math.ceil((totalLoad + 1) * LOAD_FACTOR / healthyCount);
+
+        int macHash = macAddress == null ? 0 : macAddress.hashCode();
+        String preferred = null;
+        long preferredScore = Long.MIN_VALUE;
+        String leastLoaded = null;
+        long leastLoad = Long.MAX_VALUE;
+        for (String url : urls) {
+            NodeState state = current.get(url);
+            if (filterUnhealthy && !isHealthy(url, state, now)) {
+                continue;
+            }
+            long load = load(state);
+            if (load < leastLoad) {
+                leastLoad = load;
+                leastLoaded = url;
+            }
+            if (load < maxLoad) {
+                long score = score(macHash, url);
+                if (preferred == null || score > preferredScore) {
+                    preferredScore = score;
+                    preferred = url;
+                }
+            }
+        }
+        String chosen = preferred != null ? preferred : leastLoaded;
+        NodeState state = current.get(chosen);
+        if (state != null) {
+            state.assigned.incrementAndGet();
+        }
+        return chosen;
+    }
+
+    /**
+     * 记录节点上报的负载
+     */
+    public void report(ServerLoadReportDTO dto) {
+        Map<String, Object> value = new HashMap<>(4);
+        value.put("connections", dto.getConnections());
+        value.put("healthy", dto.getHealthy() == null || dto.getHealthy());
+        value.put("reportedAt", System.currentTimeMillis());
+        redisUtils.hSet(RedisKeys.getServerWebSocketLoadKey(), dto.getWebsocketUrl().trim(), value,
+                REPORT_EXPIRE_SECONDS);
+    }
+
+    /**
+     * 从Redis刷新各节点的负载快照，刷新失败时沿用上一次的快照
+     */
+    @Scheduled(fixedDelay = REFRESH_INTERVAL_MILLIS)
+    public void refresh() {
+        String[] urls = endpoints.urls();
+        if (urls.length <= 1) {
+            return;
+        }
+        Map<String, Object> reports;
+        try {
+            reports = redisUtils.hGetAll(RedisKeys.getServerWebSocketLoadKey());
+        } catch (Exception e) {
+            log.warn("读取WebSocket节点负载失败: {}", e.getMessage());
+            return;
+        }
+        Map<String, NodeState> refreshed = new HashMap<>(urls.length * 2);
+        for (String url : urls) {
+            refreshed.put(url, NodeState.of(reports.get(url)));
+        }
+        nodes = refreshed;
+    }
+
+    /**
+     * 提交没有有效上报的节点的可达性探测，不等待探测结果
+     */
+    @Scheduled(fixedDelay = PROBE_INTERVAL_MILLIS)
+    public void probe() {
+        String[] urls = endpoints.urls();
+        if (urls.length <= 1) {
+            unreachable.clear();
+            return;
+        }
+        Map<String, NodeState> current = nodes;
+        long now = System.currentTimeMillis();
+        List<String> probed = new ArrayList<>(urls.length);
+        for (String url : urls) {
+            NodeState state = current.get(url);
+            if (state != null && state.isFresh(now)) {
+                continue;
+            }
+            probed.add(url);
+            if (!probing.add(url)) {
+                continue;
+            }
+            try {
+                probeExecutor.execute(() -> {
+                    try {
+                        updateReachable(url, isReachable(url));
+                    } finally {
+                        probing.remove(url);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 应用关闭中
+                probing.remove(url);
+            }
+        }
+        unreachable.keySet().retainAll(probed);
+    }
+
+    private void updateReachable(String url, boolean reachable) {
+        if (!reachable && unreachable.put(url, Boolean.TRUE) == null) {
+            log.warn("WebSocket节点不可达，暂停分配: {}", url);
+        } else if (reachable && unreachable.remove(url) != null) {
+            log.info("WebSocket节点恢复可达: {}", url);
+        }
+    }
+
+    private boolean isHealthy(String url, NodeState state, long now) {
+        if (state != null && state.isFresh(now)) {
+            return state.healthy;
+        }
+        return !unreachable.containsKey(url);
+    }
+
+    private static long load(NodeState state) {
+        return state == null ? 0 : state.connections + state.assigned.get();
+    }
+
+    /**
+     * xiaozhi-server对普通HTTP请求返回200，以此判断WebSocket端口是否可用
+     */
+    private static boolean isReachable(String url) {
+        String httpUrl = url.startsWith("wss://") ? "https://" + url.substring(6)
+                : url.startsWith("ws://") ? "http://" + url.substring(5) : url;
+        try (HttpResponse response = HttpRequest.get(httpUrl).timeout(PROBE_TIMEOUT_MILLIS).execute()) {
+            return response.getStatus() < 500;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 设备与节点的哈希权重，取值最大的节点即为设备的首选节点
+     */
+    private static long score(int macHash, String url) {
+        long z = ((long) macHash << 32) ^ (url.hashCode() & 0xFFFFFFFFL);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private String[] parse(String configured) {
+        Endpoints current = endpoints;
+        if (StringUtils.equals(current.configured(), configured)) {
+            return current.urls();
+        }
+        List<String> urls = new ArrayList<>();
+        if (StringUtils.isNotBlank(configured) && !configured.equals("null")) {
+            for (String url : configured.split(";")) {
+                if (StringUtils.isNotBlank(url)) {
+                    urls.add(url.trim());
+                }
+            }
+        }
+        current = new Endpoints(configured, urls.toArray(new String[0]));
+        endpoints = current;
+        return current.urls();
+    }
+
+    private record Endpoints(String configured, String[] urls) {
+    }
+
+    /**
+     * 节点负载快照，assigned为本次快照以来本节点分配出去的设备数，下次刷新时以节点上报的连接数为准
+     */
+    private static final class NodeState {
+        private final int connections;
+        private final boolean healthy;
+        private final long reportedAt;
+        private final AtomicInteger assigned = new AtomicInteger();
+
+        private NodeState(int connections, boolean healthy, long reportedAt) {
+            this.connections = connections;
+            this.healthy = healthy;
+            this.reportedAt = reportedAt;
+        }
+
+        static NodeState of(Object report) {
+            if (report instanceof Map<?, ?> map && map.get("reportedAt") instanceof Number reportedAt) {
+                int connections = map.get("connections") instanceof Number number ? number.intValue() : 0;
+                return new NodeState(connections, !Boolean.FALSE.equals(map.get("healthy")),
+                        reportedAt.longValue());
+            }
+            return new NodeState(0, true, 0);
+        }
+
+        boolean isFresh(long now) {
+            return reportedAt > 0 && now - reportedAt <= REPORT_TIMEOUT_MILLIS;
+        }
+    }
+}
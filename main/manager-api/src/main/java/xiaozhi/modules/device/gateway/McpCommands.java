@@ -0,0 +1,108 @@
+package xiaozhi.modules.device.gateway;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.StringUtils;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import xiaozhi.modules.device.entity.DeviceEntity;
+
+/**
+ * 通过MQTT网关下发给设备的MCP指令
+ */
+public class McpCommands {
+
+    /**
+     * 设备在网关上的客户端ID，格式为 分组@@@MAC@@@MAC
+     */
+    public static String clientId(DeviceEntity device) {
+        String macAddress = Optional.ofNullable(device.getMacAddress()).orElse("unknown").replace(":", "_");
+        String groupId = Optional.ofNullable(device.getBoard()).orElse("GID_default").replace(":", "_");
+        return groupId + "@@@" + macAddress + "@@@" + macAddress;
+    }
+
+    /**
+     * 工具列表查询指令
+     *
+     * @param cursor 分页游标，第一页为空
+     */
+    public static Map<String, Object> toolsList(String cursor) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("withUserTools", true);
+        if (StringUtils.isNotBlank(cursor)) {
+            params.put("cursor", cursor);
+        }
+        return command("tools/list", params);
+    }
+
+    /**
+     * 工具调用指令
+     */
+    public static Map<String, Object> toolsCall(String toolName, Map<String, Object> arguments) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", toolName);
+        params.put("arguments", arguments);
+        return command("tools/call", params);
+    }
+
+    /**
+     * 解析工具调用结果，取第一段文本内容，JSON文本解析为对象，true/false解析为布尔值
+     *
+     * @return 调用结果，调用失败或没有文本内容时返回null
+     */
+    public static Object parseToolCallResult(String resultMessage) {
+        if (StringUtils.isBlank(resultMessage)) {
+            return null;
+        }
+        JSONObject jsonObject = JSONUtil.parseObj(resultMessage);
+        if (!jsonObject.getBool("success", false)) {
+            return null;
+        }
+        JSONObject data = jsonObject.getJSONObject("data");
+        if (data == null) {
+            return null;
+        }
+        JSONArray content = data.getJSONArray("content");
+        if (content == null || content.isEmpty()) {
+            return null;
+        }
+        JSONObject firstContent = content.getJSONObject(0);
+        if (firstContent == null || !"text".equals(firstContent.getStr("type"))) {
+            return null;
+        }
+        String text = firstContent.getStr("text");
+        if (StringUtils.isBlank(text)) {
+            return null;
+        }
+        String trimmedText = text.trim();
+        if (trimmedText.startsWith("{") || trimmedText.startsWith("[")) {
+            try {
+                return JSONUtil.parseObj(trimmedText);
+            } catch (Exception e) {
+                return trimmedText;
+            }
+        } else if ("true".equals(trimmedText)) {
+            return true;
+        } else if ("false".equals(trimmedText)) {
+            return false;
+        }
+        return trimmedText;
+    }
+
+    private static Map<String, Object> command(String method, Map<String, Object> params) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("jsonrpc", "2.0");
+        payload.put("id", 2);
+        payload.put("method", method);
+        payload.put("params", params);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("type", "mcp");
+        requestBody.put("payload", payload);
+        return requestBody;
+    }
+}
@@ -0,0 +1,179 @@
+package xiaozhi.modules.device.gateway;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.http.ContentType;
+import cn.hutool.http.Header;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.common.utils.ToolUtil;
+import xiaozhi.modules.device.config.MqttGatewayProperties;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+/**
+ * MQTT网关HTTP客户端
+ * <p>
+ * 所有请求共用一个HttpClient，连接保持复用，不再每次请求重新建立连接。
+ * 鉴权令牌按天缓存，同时进行中的请求数受限，连接失败和幂等请求的超时、5xx响应按配置重试。
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(MqttGatewayProperties.class)
+public class MqttGatewayClient {
+    private final SysParamsService sysParamsService;
+    private final MqttGatewayProperties properties;
+    private final HttpClient httpClient;
+    private final Semaphore permits;
+
+    private volatile BearerToken bearerToken = new BearerToken(null, null, null);
+
+    public MqttGatewayClient(SysParamsService sysParamsService, MqttGatewayProperties properties) {
+        this.sysParamsService = sysParamsService;
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMillis()))
+                .build();
+        this.permits = new Semaphore(properties.getMaxConcurrency());
+    }
+
+    /**
+     * 是否已配置网关地址（参数server.mqtt_manager_api）
+     */
+    public boolean isAvailable() {
+        return getGatewayAddress() != null;
+    }
+
+    /**
+     * 批量查询设备状态
+     *
+     * @param clientIds 网关客户端ID
+     * @return 网关返回的原始内容，未配置网关时返回null
+     */
+    public String queryStatus(Collection<String> clientIds) {
+        return post("/api/devices/status", Map.of("clientIds", clientIds), true, properties.getReadTimeoutMillis());
+    }
+
+    /**
+     * 向设备发送指令
+     *
+     * @param clientId   网关客户端ID
+     * @param command    指令内容
+     * @param idempotent 指令是否可以安全重发，如工具列表查询
+     * @return 网关返回的原始内容，未配置网关时返回null
+     */
+    public String sendCommand(String clientId, Object command, boolean idempotent) {
+        return sendCommand(clientId, command, idempotent, properties.getReadTimeoutMillis());
+    }
+
+    /**
+     * 向设备发送指令，使用指定的响应超时
+     *
+     * @param timeoutMillis 等待响应超时，单位：毫秒
+     */
+    public String sendCommand(String clientId, Object command, boolean idempotent, int timeoutMillis) {
+        return post("/api/commands/" + clientId, command, idempotent, timeoutMillis);
+    }
+
+    private String post(String path, Object body, boolean idempotent, int timeoutMillis) {
+        String address = getGatewayAddress();
+        if (address == null) {
+            return null;
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://" + address + path))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header(Header.CONTENT_TYPE.getValue(), ContentType.JSON.getValue())
+                .POST(HttpRequest.BodyPublishers.ofString(JsonUtils.toJsonString(body)));
+        String token = getBearerToken();
+        if (token != null) {
+            builder.header(Header.AUTHORIZATION.getValue(), "Bearer " + token);
+        }
+        HttpRequest request = builder.build();
+
+        acquire();
+        try {
+            for (int attempt = 0;; attempt++) {
+                boolean canRetry = attempt < properties.getMaxRetries();
+                try {
+                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() >= 500 && idempotent && canRetry) {
+                        log.debug("MQTT网关返回{}，准备重试: {}", response.statusCode(), path);
+                    } else {
+                        return response.body();
+                    }
+                } catch (IOException e) {
+                    // 连接未建立时请求一定没有送达网关，非幂等请求也可以重试
+                    boolean notSent = e instanceof ConnectException || e instanceof HttpConnectTimeoutException;
+                    if (!canRetry || !(idempotent || notSent)) {
+                        throw new RenException("请求MQTT网关失败: " + e.getMessage(), e);
+                    }
+                    log.debug("请求MQTT网关失败，准备重试: {} {}", path, e.getMessage());
+                }
+                Thread.sleep(properties.getRetryBackoffMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenException("请求MQTT网关被中断");
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(properties.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RenException("MQTT网关请求过多，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenException("请求MQTT网关被中断");
+        }
+    }
+
+    private String getGatewayAddress() {
+        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
+        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+            return null;
+        }
+        return mqttGatewayUrl;
+    }
+
+    /**
+     * 令牌为当天日期加签名密钥的SHA256，日期或密钥变化时重新计算
+     */
+    private String getBearerToken() {
+        String signatureKey = sysParamsService.getValue(Constant.SERVER_MQTT_SECRET, true);
+        if (ToolUtil.isEmpty(signatureKey)) {
+            return null;
+        }
+        String date = LocalDate.now().toString();
+        BearerToken current = bearerToken;
+        if (!date.equals(current.date()) || !signatureKey.equals(current.signatureKey())) {
+            current = new BearerToken(date, signatureKey, DigestUtil.sha256Hex(date + signatureKey));
+            bearerToken = current;
+        }
+        return current.token();
+    }
+
+    private record BearerToken(String date, String signatureKey, String token) {
+    }
+}
@@ -0,0 +1,33 @@
+package xiaozhi.modules.device.online;
+
+/**
+ * 设备在线状态，字段与MQTT网关/api/devices/status接口返回的一致
+ * <p>
+ * 两个时间来自不同的时钟，只在同一来源之间比较：上下线事件之间按网关的事件时间排序，
+ * 事件与查询结果之间按管理端的接收时间和查询时间比较，网关与管理端的时钟偏差不影响结果。
+ *
+ * @param exists    网关上是否存在该客户端
+ * @param isAlive   连接是否存活，网关无法判断时为null
+ * @param updatedAt 管理端时间（毫秒时间戳）：事件的接收时间或查询的发起时间
+ * @param eventAt   网关的事件时间（毫秒时间戳），查询结果或事件未带时间时为null
+ */
+public record DeviceOnlineStatus(boolean exists, Boolean isAlive, long updatedAt, Long eventAt) {
+
+    public DeviceOnlineStatus(boolean exists, Boolean isAlive, long updatedAt) {
+        this(exists, isAlive, updatedAt, null);
+    }
+
+    public static DeviceOnlineStatus of(boolean online, long receivedAt, Long eventAt) {
+        return new DeviceOnlineStatus(online, online, receivedAt, eventAt);
+    }
+
+    /**
+     * 是否不早于另一个状态，用于丢弃乱序到达的旧状态
+     */
+    public boolean isNotOlderThan(DeviceOnlineStatus other) {
+        if (eventAt != null && other.eventAt != null) {
+            return eventAt >= other.eventAt;
+        }
+        return updatedAt >= other.updatedAt;
+    }
+}
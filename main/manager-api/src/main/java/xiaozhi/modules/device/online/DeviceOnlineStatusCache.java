@@ -0,0 +1,250 @@
+package xiaozhi.modules.device.online;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.dto.DeviceOnlineEventsDTO;
+
+/**
+ * 设备在线状态缓存
+ * <p>
+ * 设备列表页只读取内存中的状态，不再同步请求MQTT网关。状态来源有两个：
+ * 网关推送的上下线事件（经Redis频道同步到所有节点），以及后台线程对最近被查看过的设备定期批量对账。
+ * 首次查看的设备在内存中没有状态时立即在后台查询一次，同一设备同时只排队一次查询；
+ * 读取时限时等待查询完成，网关响应慢时不阻塞列表页，超时的设备本次不返回状态。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeviceOnlineStatusCache implements MessageListener {
+    /**
+     * 上下线事件同步频道
+     */
+    public static final String CHANGE_CHANNEL = "device:online:change";
+    /**
+     * 定期对账间隔
+     */
+    private static final long RECONCILE_INTERVAL_SECONDS = 60;
+    /**
+     * 单次请求网关查询的设备数
+     */
+    private static final int BATCH_SIZE = 500;
+    /**
+     * 首次查看时等待后台查询的最长时间
+     */
+    private static final long LOOKUP_WAIT_MILLIS = 1500;
+
+    private final DeviceStatusGateway deviceStatusGateway;
+    private final RedisUtils redisUtils;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 网关客户端ID -> 在线状态
+     */
+    private final Cache<String, DeviceOnlineStatus> statuses = CacheBuilder.newBuilder()
+            .maximumSize(200000)
+            .build();
+    /**
+     * 最近被查看过的设备，定期对账只针对这些设备
+     */
+    private final Cache<String, Boolean> watched = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+    /**
+     * 已提交后台查询、尚未完成的设备 -> 查询完成通知
+     */
+    private final Map<String, CompletableFuture<Void>> lookups = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANGE_CHANNEL));
+        // 两个线程，首次查看的查询不排在定期对账之后
+        executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "DeviceOnlineReconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reconcileQuietly, RECONCILE_INTERVAL_SECONDS,
+                RECONCILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 是否已配置MQTT网关
+     */
+    public boolean isAvailable() {
+        return deviceStatusGateway.isAvailable();
+    }
+
+    /**
+     * 读取设备在线状态
+     *
+     * @param clientIds 网关客户端ID
+     * @return 客户端ID -> 在线状态，等待超时仍未获取到状态的设备不包含在内
+     */
+    public Map<String, DeviceOnlineStatus> getStatuses(Collection<String> clientIds) {
+        Map<String, DeviceOnlineStatus> result = new HashMap<>(clientIds.size() * 2);
+        List<String> missing = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        Set<CompletableFuture<Void>> pending = new HashSet<>();
+        CompletableFuture<Void> lookup = new CompletableFuture<>();
+        for (String clientId : clientIds) {
+            if (watched.getIfPresent(clientId) == null) {
+                watched.put(clientId, Boolean.TRUE);
+            }
+            DeviceOnlineStatus status = statuses.getIfPresent(clientId);
+            if (status != null) {
+                result.put(clientId, status);
+                continue;
+            }
+            missing.add(clientId);
+            CompletableFuture<Void> inFlight = lookups.putIfAbsent(clientId, lookup);
+            if (inFlight == null) {
+                unknown.add(clientId);
+            } else {
+                pending.add(inFlight);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            pending.add(lookup);
+            try {
+                executor.execute(() -> {
+                    try {
+                        reconcileQuietly(unknown);
+                    } finally {
+                        finishLookup(unknown, lookup);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 应用关闭中
+                finishLookup(unknown, lookup);
+            }
+        }
+        if (!pending.isEmpty()) {
+            awaitLookups(pending);
+            for (String clientId : missing) {
+                DeviceOnlineStatus status = statuses.getIfPresent(clientId);
+                if (status != null) {
+                    result.put(clientId, status);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void finishLookup(List<String> clientIds, CompletableFuture<Void> lookup) {
+        clientIds.forEach(clientId -> lookups.remove(clientId, lookup));
+        lookup.complete(null);
+    }
+
+    private void awaitLookups(Set<CompletableFuture<Void>> pending) {
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                    .get(LOOKUP_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("等待MQTT网关查询设备在线状态超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 查询失败已在后台记录
+        }
+    }
+
+    /**
+     * 接收网关推送的上下线事件，并同步给其他节点
+     */
+    public void onEvents(List<DeviceOnlineEventsDTO.Event> events) {
+        long now = System.currentTimeMillis();
+        for (DeviceOnlineEventsDTO.Event event : events) {
+            apply(event, now);
+        }
+        redisUtils.publish(CHANGE_CHANNEL, new ArrayList<>(events));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body instanceof Collection<?> events) {
+            long now = System.currentTimeMillis();
+            for (Object event : events) {
+                if (event instanceof DeviceOnlineEventsDTO.Event onlineEvent) {
+                    apply(onlineEvent, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * 与查询结果比较时使用本节点的接收时间，与查询时间出自同一时钟
+     */
+    private void apply(DeviceOnlineEventsDTO.Event event, long receivedAt) {
+        update(event.getClientId(), DeviceOnlineStatus.of(event.getOnline(), receivedAt, event.getTimestamp()));
+    }
+
+    /**
+     * 只保留时间更新的状态，避免对账结果覆盖之后到达的事件
+     */
+    private void update(String clientId, DeviceOnlineStatus status) {
+        statuses.asMap().merge(clientId, status,
+                (existing, incoming) -> incoming.isNotOlderThan(existing) ? incoming : existing);
+    }
+
+    private void reconcileQuietly() {
+        reconcileQuietly(new ArrayList<>(watched.asMap().keySet()));
+    }
+
+    private void reconcileQuietly(List<String> clientIds) {
+        if (clientIds.isEmpty() || !deviceStatusGateway.isAvailable()) {
+            return;
+        }
+        for (int i = 0; i < clientIds.size(); i += BATCH_SIZE) {
+            List<String> batch = clientIds.subList(i, Math.min(i + BATCH_SIZE, clientIds.size()));
+            long queriedAt = System.currentTimeMillis();
+            try {
+                Map<String, DeviceOnlineStatus> result = deviceStatusGateway.queryStatus(batch, queriedAt);
+                for (String clientId : batch) {
+                    DeviceOnlineStatus status = result.get(clientId);
+                    update(clientId, status != null ? status : new DeviceOnlineStatus(false, false, queriedAt));
+                }
+            } catch (Exception e) {
+                log.warn("查询MQTT网关设备在线状态失败: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package xiaozhi.modules.device.online;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 设备在线状态查询来源
+ */
+public interface DeviceStatusGateway {
+
+    /**
+     * 是否已配置网关
+     */
+    boolean isAvailable();
+
+    /**
+     * 批量查询设备在线状态
+     *
+     * @param clientIds 网关客户端ID
+     * @param queriedAt 查询时间，作为返回状态的时间
+     * @return 客户端ID -> 在线状态，网关没有返回的客户端不包含在内
+     */
+    Map<String, DeviceOnlineStatus> queryStatus(Collection<String> clientIds, long queriedAt);
+}
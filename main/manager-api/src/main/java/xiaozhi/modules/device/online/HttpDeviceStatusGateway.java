@@ -0,0 +1,52 @@
+package xiaozhi.modules.device.online;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.modules.device.gateway.MqttGatewayClient;
+
+/**
+ * 通过MQTT网关的/api/devices/status接口查询设备在线状态
+ */
+@Component
+@RequiredArgsConstructor
+public class HttpDeviceStatusGateway implements DeviceStatusGateway {
+    private final MqttGatewayClient mqttGatewayClient;
+
+    @Override
+    public boolean isAvailable() {
+        return mqttGatewayClient.isAvailable();
+    }
+
+    @Override
+    public Map<String, DeviceOnlineStatus> queryStatus(Collection<String> clientIds, long queriedAt) {
+        if (clientIds.isEmpty()) {
+            return Map.of();
+        }
+        String resultMessage = mqttGatewayClient.queryStatus(clientIds);
+        if (resultMessage == null) {
+            return Map.of();
+        }
+        if (!JSONUtil.isTypeJSONObject(resultMessage)) {
+            throw new RenException("MQTT网关返回格式错误: " + StringUtils.abbreviate(resultMessage, 200));
+        }
+        JSONObject result = JSONUtil.parseObj(resultMessage);
+        Map<String, DeviceOnlineStatus> statuses = new HashMap<>(result.size() * 2);
+        for (String clientId : result.keySet()) {
+            JSONObject status = result.getJSONObject(clientId);
+            if (status != null) {
+                statuses.put(clientId, new DeviceOnlineStatus(Boolean.TRUE.equals(status.getBool("exists")),
+                        status.getBool("isAlive"), queriedAt));
+            }
+        }
+        return statuses;
+    }
+}
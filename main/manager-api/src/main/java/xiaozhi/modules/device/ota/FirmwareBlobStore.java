@@ -0,0 +1,287 @@
+package xiaozhi.modules.device.ota;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.device.config.FirmwareDownloadProperties;
+import xiaozhi.modules.device.dao.OtaDao;
+import xiaozhi.modules.device.entity.OtaEntity;
+
+/**
+ * 固件文件存储
+ * <p>
+ * 文件按内容寻址保存为 uploadfile/MD5.扩展名，相同内容只保存一份。上传内容由容器先缓存（MultipartFile），
+ * 保存时从缓存读取一遍，边写临时文件边计算MD5和SHA-256，写完后原子重命名到目标位置，
+ * 内存占用与文件大小无关，计算摘要不需要再读一遍文件。
+ * <p>
+ * 文件的引用数为固件记录中指向它的条数。固件记录删除或更换文件后，引用数为0的文件被删除；
+ * 刚上传还未保存到固件记录的文件、资源文件下载链接有效期内的文件不会被删除。
+ * 上传先保护文件再检查文件是否存在；删除先把文件改名移走再确认没有被保护，期间被重新保护的文件会被恢复，
+ * 两者同时进行时不会删除刚上传的文件。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FirmwareBlobStore {
+    /**
+     * 文件保存目录，相对于工作目录
+     */
+    public static final String UPLOAD_DIR = "uploadfile";
+    private static final String TEMP_PREFIX = ".upload-";
+    /**
+     * 未完成上传的临时文件超过该时间后清理，单位：毫秒
+     */
+    private static final long TEMP_EXPIRE_MILLIS = 60 * 60 * 1000L;
+    /**
+     * 全量清理间隔，单位：毫秒
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 6 * 60 * 60 * 1000L;
+
+    private final OtaDao otaDao;
+    private final RedisUtils redisUtils;
+    private final FirmwareDownloadProperties downloadProperties;
+
+    /**
+     * 保存上传的文件，内容已存在时直接返回已有文件
+     *
+     * @param in        文件内容，由调用方关闭
+     * @param extension 扩展名，包含点号，如 .bin
+     */
+    public StoredBlob store(InputStream in, String extension) throws IOException {
+        Path uploadPath = Paths.get(UPLOAD_DIR);
+        Files.createDirectories(uploadPath);
+
+        MessageDigest md5 = newDigest("MD5");
+        MessageDigest sha256 = newDigest("SHA-256");
+        Path tempPath = uploadPath.resolve(TEMP_PREFIX + UUID.randomUUID());
+        long size;
+        try {
+            try (OutputStream out = new DigestOutputStream(new DigestOutputStream(Files.newOutputStream(tempPath),
+                    md5), sha256)) {
+                size = in.transferTo(out);
+            }
+
+            String md5Hex = HexFormat.of().formatHex(md5.digest());
+            String sha256Hex = HexFormat.of().formatHex(sha256.digest());
+            Path filePath = uploadPath.resolve(md5Hex + extension);
+            // 上传后到保存固件记录之前，文件还没有引用，先保护起来不被清理。必须在检查文件是否存在之前保护
+            pin(filePath.getFileName().toString());
+            boolean created = moveIntoPlace(tempPath, filePath);
+            return new StoredBlob(filePath.toString(), md5Hex, sha256Hex, size, created);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 固件记录删除或更换文件后，在事务提交后删除不再被引用的文件
+     *
+     * @param firmwarePaths 原固件记录中的文件路径
+     */
+    public void releaseAfterCommit(Collection<String> firmwarePaths) {
+        Set<String> fileNames = new HashSet<>();
+        for (String firmwarePath : firmwarePaths) {
+            String fileName = toBlobName(firmwarePath);
+            if (fileName != null) {
+                fileNames.add(fileName);
+            }
+        }
+        if (!fileNames.isEmpty()) {
+            TransactionUtils.afterCommit(() -> fileNames.forEach(this::deleteIfUnreferenced));
+        }
+    }
+
+    /**
+     * 定期清理没有引用的文件和中断上传留下的临时文件，兜底删除时被保护、删除失败的文件
+     */
+    @Scheduled(initialDelay = SWEEP_INTERVAL_MILLIS, fixedDelay = SWEEP_INTERVAL_MILLIS)
+    public void sweep() {
+        Path uploadPath = Paths.get(UPLOAD_DIR);
+        if (!Files.isDirectory(uploadPath)) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>();
+        List<Object> firmwarePaths = otaDao.selectObjs(new QueryWrapper<OtaEntity>()
+                .select("DISTINCT firmware_path")
+                .isNotNull("firmware_path"));
+        for (Object firmwarePath : firmwarePaths) {
+            String fileName = firmwarePath == null ? null : toBlobName(firmwarePath.toString());
+            if (fileName != null) {
+                referenced.add(fileName);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long pinMillis = downloadProperties.getExpireSeconds() * 1000L;
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadPath)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                long age = now - Files.getLastModifiedTime(file).toMillis();
+                if (fileName.startsWith(TEMP_PREFIX)) {
+                    if (age > TEMP_EXPIRE_MILLIS && Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                } else if (age > pinMillis && !referenced.contains(fileName) && !isPinned(fileName)
+                        && deleteUnlessPinned(fileName)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理固件文件失败: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            log.info("清理没有引用的固件文件 {} 个", deleted);
+        }
+    }
+
+    private void deleteIfUnreferenced(String fileName) {
+        try {
+            if (isPinned(fileName) || countReferences(fileName) > 0) {
+                return;
+            }
+            if (deleteUnlessPinned(fileName)) {
+                log.info("删除没有引用的固件文件: {}", fileName);
+            }
+        } catch (Exception e) {
+            log.warn("删除固件文件失败: {} {}", fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * 先把文件改名移走，再确认没有被保护后删除。改名前后有上传保护了该文件时恢复，
+     * 上传在改名之后检查文件是否存在时会重新写入，此时只删除移走的文件
+     *
+     * @return 是否已删除
+     */
+    private boolean deleteUnlessPinned(String fileName) throws IOException {
+        Path filePath = Paths.get(UPLOAD_DIR, fileName);
+        Path removedPath = filePath.resolveSibling(TEMP_PREFIX + "removed-" + UUID.randomUUID());
+        try {
+            Files.move(filePath, removedPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (isPinned(fileName)) {
+            if (!moveIntoPlace(removedPath, filePath)) {
+                Files.deleteIfExists(removedPath);
+            }
+            return false;
+        }
+        Files.delete(removedPath);
+        return true;
+    }
+
+    private long countReferences(String fileName) {
+        return otaDao.selectCount(new QueryWrapper<OtaEntity>().likeLeft("firmware_path", fileName));
+    }
+
+    /**
+     * 保护时间与下载链接有效期一致，资源文件在下载链接过期前不会被删除
+     */
+    private void pin(String fileName) {
+        redisUtils.set(RedisKeys.getOtaBlobPinKey(fileName), "1", downloadProperties.getExpireSeconds());
+    }
+
+    private boolean isPinned(String fileName) {
+        return redisUtils.get(RedisKeys.getOtaBlobPinKey(fileName)) != null;
+    }
+
+    /**
+     * 获取上传目录中文件的内容MD5，即文件名去掉扩展名的部分
+     *
+     * @param firmwarePath 固件记录中的文件路径
+     * @return 小写十六进制MD5，不是本存储管理的文件时返回null
+     */
+    public static String contentMd5(String firmwarePath) {
+        String fileName = toBlobName(firmwarePath);
+        if (fileName == null) {
+            return null;
+        }
+        int dot = fileName.indexOf('.');
+        String md5 = dot < 0 ? fileName : fileName.substring(0, dot);
+        return md5.length() == 32 && md5.chars().allMatch(c -> Character.digit(c, 16) >= 0) ? md5 : null;
+    }
+
+    /**
+     * 只处理上传目录中的文件，其他位置的固件文件不由这里管理
+     */
+    private static String toBlobName(String firmwarePath) {
+        if (StringUtils.isBlank(firmwarePath)) {
+            return null;
+        }
+        Path path = Paths.get(firmwarePath).normalize();
+        Path parent = path.getParent();
+        if (parent == null || !UPLOAD_DIR.equals(parent.toString()) || path.getFileName() == null) {
+            return null;
+        }
+        return path.getFileName().toString();
+    }
+
+    /**
+     * 临时文件重命名为目标文件
+     *
+     * @return 是否为新文件，目标文件已存在时返回false
+     */
+    private static boolean moveIntoPlace(Path tempPath, Path filePath) throws IOException {
+        if (Files.exists(filePath)) {
+            return false;
+        }
+        try {
+            Files.move(tempPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(tempPath, filePath);
+            } catch (FileAlreadyExistsException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 已保存的文件
+     *
+     * @param path    文件路径，保存到固件记录中
+     * @param created 是否为新保存的文件，相同内容已存在时为false
+     */
+    public record StoredBlob(String path, String md5, String sha256, long size, boolean created) {
+    }
+}
@@ -0,0 +1,83 @@
+package xiaozhi.modules.device.ota;
+
+import lombok.Getter;
+import xiaozhi.modules.device.entity.OtaEntity;
+
+/**
+ * 某一板型的最新固件
+ * <p>
+ * 版本号在构建时拆分为数字数组，设备检查更新时直接与上报的版本号字符串逐段比较。
+ */
+@Getter
+public final class FirmwareDescriptor {
+    private final String id;
+    private final String type;
+    private final String version;
+    private final int[] versionParts;
+
+    public FirmwareDescriptor(OtaEntity entity) {
+        this.id = entity.getId();
+        this.type = entity.getType();
+        this.version = entity.getVersion();
+        this.versionParts = parseVersion(entity.getVersion());
+    }
+
+    /**
+     * 是否比指定版本新
+     *
+     * @param otherVersion 设备当前版本号，如1.6.2
+     */
+    public boolean isNewerThan(String otherVersion) {
+        return compareTo(otherVersion) > 0;
+    }
+
+    /**
+     * 与指定版本比较，逐段按数字比较，缺少的段视为0
+     *
+     * @return 本固件版本更新返回1，更旧返回-1，相等返回0
+     */
+    int compareTo(String otherVersion) {
+        if (versionParts == null || otherVersion == null) {
+            return 0;
+        }
+        int index = 0;
+        int pos = 0;
+        int length = otherVersion.length();
+        while (index < versionParts.length || pos < length) {
+            int other = 0;
+            if (pos < length) {
+                int end = otherVersion.indexOf('.', pos);
+                if (end < 0) {
+                    end = length;
+                }
+                other = Integer.parseInt(otherVersion, pos, end, 10);
+                pos = end + 1;
+            }
+            int own = index < versionParts.length ? versionParts[index] : 0;
+            index++;
+            if (own != other) {
+                return own > other ? 1 : -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 拆分版本号，格式不正确时返回null，该固件不会下发给设备
+     */
+    private static int[] parseVersion(String version) {
+        if (version == null) {
+            return null;
+        }
+        String[] parts = version.split("\\.");
+        int[] result = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                result[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package xiaozhi.modules.device.ota;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.redis.CacheLoadGuard;
+import xiaozhi.common.redis.LocalCacheInvalidator;
+import xiaozhi.modules.device.dao.OtaDao;
+import xiaozhi.modules.device.entity.OtaEntity;
+import xiaozhi.modules.sys.params.SysParamsRegistry;
+
+/**
+ * 最新固件索引
+ * <p>
+ * 按板型保存最新固件，设备检查更新时不再查询数据库。固件上传、修改、删除后在事务提交时失效，
+ * 并通过Redis频道通知其他节点，下次读取时整体重建。
+ */
+@Component
+@RequiredArgsConstructor
+public class LatestFirmwareIndex {
+    /**
+     * 固件变更通知频道
+     */
+    public static final String CHANGE_CHANNEL = "ota:firmware:change";
+    private static final String INDEX = "index";
+
+    private final OtaDao otaDao;
+    private final SysParamsRegistry sysParamsRegistry;
+    private final LocalCacheInvalidator localCacheInvalidator;
+
+    private volatile Map<String, FirmwareDescriptor> byType;
+    private final CacheLoadGuard<String> loadGuard = new CacheLoadGuard<>();
+    /**
+     * 下载地址前缀，server.ota参数变化时重新生成
+     */
+    private volatile DownloadBase downloadBase = new DownloadBase(null, null);
+
+    @PostConstruct
+    public void subscribe() {
+        localCacheInvalidator.subscribe(message -> invalidateNow(), CHANGE_CHANNEL);
+    }
+
+    /**
+     * 获取板型的最新固件
+     *
+     * @param type 板型
+     * @return 最新固件，没有该板型的固件时返回null
+     */
+    public FirmwareDescriptor getLatest(String type) {
+        if (StringUtils.isBlank(type)) {
+            return null;
+        }
+        Map<String, FirmwareDescriptor> current = byType;
+        if (current == null) {
+            current = rebuild();
+        }
+        return current.get(type);
+    }
+
+    /**
+     * 获取固件下载地址前缀（server.ota中的/ota/替换为/otaMag/download/），未配置时返回null
+     */
+    public String getDownloadBaseUrl() {
+        String otaUrl = sysParamsRegistry.get().getString(Constant.SERVER_OTA);
+        DownloadBase base = downloadBase;
+        if (!StringUtils.equals(base.otaUrl(), otaUrl)) {
+            String url = StringUtils.isBlank(otaUrl) || otaUrl.equals("null") ? null
+                    : otaUrl.replace("/ota/", "/otaMag/download/");
+            base = new DownloadBase(otaUrl, url);
+            downloadBase = base;
+        }
+        return base.url();
+    }
+
+    /**
+     * 固件变更后失效，处于事务中时在提交后失效
+     */
+    public void invalidate() {
+        localCacheInvalidator.invalidateAfterCommit(this::invalidateNow, CHANGE_CHANNEL,
+                String.valueOf(System.currentTimeMillis()));
+    }
+
+    private void invalidateNow() {
+        byType = null;
+        loadGuard.invalidate(INDEX);
+    }
+
+    private synchronized Map<String, FirmwareDescriptor> rebuild() {
+        Map<String, FirmwareDescriptor> current = byType;
+        if (current != null) {
+            return current;
+        }
+        Object ticket = loadGuard.begin(INDEX);
+        // 与原先按update_date倒序取第一条的逻辑一致
+        Map<String, OtaEntity> latest = new HashMap<>();
+        for (OtaEntity entity : otaDao.selectList(new QueryWrapper<OtaEntity>()
+                .select("id", "type", "version", "update_date"))) {
+            if (entity.getType() == null) {
+                continue;
+            }
+            OtaEntity existing = latest.get(entity.getType());
+            if (existing == null || isAfter(entity.getUpdateDate(), existing.getUpdateDate())) {
+                latest.put(entity.getType(), entity);
+            }
+        }
+        Map<String, FirmwareDescriptor> index = new HashMap<>(latest.size() * 2);
+        latest.forEach((type, entity) -> index.put(type, new FirmwareDescriptor(entity)));
+        current = Collections.unmodifiableMap(index);
+        byType = current;
+        if (!loadGuard.confirm(INDEX, ticket)) {
+            byType = null;
+        }
+        return current;
+    }
+
+    private static boolean isAfter(Date date, Date other) {
+        if (date == null) {
+            return false;
+        }
+        return other == null || date.after(other);
+    }
+
+    private record DownloadBase(String otaUrl, String url) {
+    }
+}
@@ -0,0 +1,94 @@
+package xiaozhi.modules.device.redis;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.utils.ResourcesUtils;
+import xiaozhi.modules.device.config.FirmwareDownloadProperties;
+
+/**
+ * 固件下载令牌
+ * <p>
+ * 令牌保存在Redis中，集群内任一节点签发的令牌都可以在其他节点使用。
+ * 签发、计数、超限删除分别由一个Lua脚本原子完成，并发下载不会超出次数上限。
+ * 每次下载请求都计入次数，断点续传的分段请求也不例外，否则可以用Range请求绕过次数上限。
+ */
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(FirmwareDownloadProperties.class)
+public class FirmwareDownloadTokenRedis {
+    /**
+     * 下载目标为本地文件时的前缀，其余为固件ID
+     */
+    public static final String FILE_TARGET_PREFIX = "file:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ResourcesUtils resourcesUtils;
+    private final FirmwareDownloadProperties properties;
+
+    private DefaultRedisScript<Long> issueScript;
+    private DefaultRedisScript<String> consumeScript;
+    private DefaultRedisScript<Long> refundScript;
+
+    @PostConstruct
+    public void loadScripts() {
+        issueScript = new DefaultRedisScript<>(resourcesUtils.loadString("lua/otaTokenIssue.lua"), Long.class);
+        consumeScript = new DefaultRedisScript<>(resourcesUtils.loadString("lua/otaTokenConsume.lua"),
+                String.class);
+        refundScript = new DefaultRedisScript<>(resourcesUtils.loadString("lua/otaTokenRefund.lua"), Long.class);
+    }
+
+    /**
+     * 签发下载令牌
+     *
+     * @param target 下载目标，固件ID或带file:前缀的文件路径
+     * @param board  设备板型，用于匹配下载次数上限，可为空
+     * @return 令牌
+     */
+    public String issue(String target, String board) {
+        String token = UUID.randomUUID().toString();
+        redisTemplate.execute(issueScript, Collections.singletonList(RedisKeys.getOtaDownloadTokenKey(token)),
+                target, resolveLimit(target, board), properties.getExpireSeconds());
+        return token;
+    }
+
+    /**
+     * 使用下载令牌，计入一次下载次数
+     *
+     * @param token 令牌
+     * @return 下载目标，令牌不存在、已过期或次数超限时返回null
+     */
+    public String consume(String token) {
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+        return redisTemplate.execute(consumeScript,
+                Collections.singletonList(RedisKeys.getOtaDownloadTokenKey(token)));
+    }
+
+    /**
+     * 退还一次下载次数，用于没有下载文件的请求（如条件请求返回304）
+     *
+     * @param token 令牌
+     */
+    public void refund(String token) {
+        redisTemplate.execute(refundScript, Collections.singletonList(RedisKeys.getOtaDownloadTokenKey(token)));
+    }
+
+    private int resolveLimit(String target, String board) {
+        Integer limit = properties.getFirmwareLimits().get(target);
+        if (limit == null && StringUtils.isNotBlank(board)) {
+            limit = properties.getBoardLimits().get(board);
+        }
+        return limit != null ? limit : properties.getLimit();
+    }
+}
@@ -0,0 +1,29 @@
+package xiaozhi.modules.device.resolve;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 设备解析结果
+ * <p>
+ * 设备交互（OTA检查、配置获取、聊天上报）只需要设备和所属智能体的少量字段，
+ * 由{@link DeviceResolutionCache}按MAC地址缓存，构建后不再修改，多个请求共享同一实例。
+ */
+@Getter
+@AllArgsConstructor
+public final class DeviceResolution {
+    private final String deviceId;
+    private final String macAddress;
+    private final String agentId;
+    private final Long userId;
+    private final String board;
+    private final Integer autoUpdate;
+    /**
+     * 所属智能体是否存在
+     */
+    private final boolean agentExists;
+    /**
+     * 所属智能体的聊天记录配置，智能体不存在时为null
+     */
+    private final Integer chatHistoryConf;
+}
@@ -0,0 +1,315 @@
+package xiaozhi.modules.device.resolve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.redis.CacheLoadGuard;
+import xiaozhi.common.redis.LocalCacheInvalidator;
+import xiaozhi.modules.agent.dao.AgentDao;
+import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.config.dto.ConfigChangeEventDTO;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.entity.DeviceEntity;
+
+/**
+ * 设备解析缓存
+ * <p>
+ * 按MAC地址在本地缓存设备及所属智能体的解析结果，未绑定的MAC地址也短暂缓存，避免反复查询数据库。
+ * 绑定、解绑、手动添加、修改设备后按MAC地址失效，删除用户或智能体、修改智能体后按归属失效；
+ * 本节点在事务提交后失效，并通过Redis频道通知其他节点。
+ * 按归属维护到MAC地址的索引，按归属失效时只处理该归属下的设备，不遍历整个缓存。
+ */
+@Component
+@RequiredArgsConstructor
+public class DeviceResolutionCache {
+    /**
+     * 失效通知频道，消息内容为带前缀的MAC地址、智能体ID或用户ID
+     */
+    public static final String INVALIDATE_CHANNEL = "device:resolution:invalidate";
+
+    private static final String MAC_PREFIX = "mac:";
+    private static final String AGENT_PREFIX = "agent:";
+    private static final String USER_PREFIX = "user:";
+
+    private final DeviceDao deviceDao;
+    private final AgentDao agentDao;
+    private final LocalCacheInvalidator localCacheInvalidator;
+
+    private final Cache<String, DeviceResolution> resolved = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .<String, DeviceResolution>removalListener(this::onRemoval)
+            .build();
+    /**
+     * 归属（带前缀的智能体ID或用户ID） -> 已缓存的MAC地址
+     */
+    private final Map<String, Set<String>> macsByOwner = new ConcurrentHashMap<>();
+    /**
+     * 归属最近一次失效时的序号，加载开始后归属被失效的结果不保存；加载耗时远小于保留时长
+     */
+    private final Cache<String, Long> ownerInvalidations = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * 未绑定的MAC地址，设备激活前会反复上报，存活时间较短
+     */
+    private final Cache<String, Boolean> unbound = CacheBuilder.newBuilder()
+            .maximumSize(20000)
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .build();
+    /**
+     * 按MAC地址登记正在进行的加载
+     */
+    private final CacheLoadGuard<String> loadGuard = new CacheLoadGuard<>();
+
+    @PostConstruct
+    public void subscribe() {
+        localCacheInvalidator.subscribe(this::onMessage, INVALIDATE_CHANNEL, ConfigVersionRedis.CHANGE_CHANNEL);
+    }
+
+    /**
+     * 根据MAC地址解析设备
+     *
+     * @param macAddress MAC地址
+     * @return 解析结果，设备未绑定时返回null
+     */
+    public DeviceResolution resolve(String macAddress) {
+        if (StringUtils.isBlank(macAddress)) {
+            return null;
+        }
+        DeviceResolution resolution = resolved.getIfPresent(macAddress);
+        if (resolution != null) {
+            return resolution;
+        }
+        if (unbound.getIfPresent(macAddress) != null) {
+            return null;
+        }
+        long seq = sequence.get();
+        Object ticket = loadGuard.begin(macAddress);
+        resolution = load(macAddress);
+        store(macAddress, resolution, ticket, seq);
+        return resolution;
+    }
+
+    /**
+     * 根据MAC地址批量解析设备，未命中缓存的MAC地址合并为一次设备查询和一次智能体查询
+     *
+     * @param macAddresses MAC地址列表
+     * @return MAC地址 -> 解析结果，未绑定的MAC地址不返回
+     */
+    public Map<String, DeviceResolution> resolveAll(Collection<String> macAddresses) {
+        Map<String, DeviceResolution> result = new HashMap<>();
+        Map<String, Object> tickets = new HashMap<>();
+        long seq = sequence.get();
+        for (String macAddress : macAddresses) {
+            if (StringUtils.isBlank(macAddress) || result.containsKey(macAddress)
+                    || tickets.containsKey(macAddress)) {
+                continue;
+            }
+            DeviceResolution resolution = resolved.getIfPresent(macAddress);
+            if (resolution != null) {
+                result.put(macAddress, resolution);
+            } else if (unbound.getIfPresent(macAddress) == null) {
+                tickets.put(macAddress, loadGuard.begin(macAddress));
+            }
+        }
+        if (tickets.isEmpty()) {
+            return result;
+        }
+
+        Map<String, DeviceEntity> devices = new HashMap<>();
+        for (DeviceEntity device : deviceDao.selectList(
+                new QueryWrapper<DeviceEntity>().in("mac_address", tickets.keySet()))) {
+            devices.put(device.getMacAddress(), device);
+        }
+        Set<String> agentIds = new HashSet<>();
+        for (DeviceEntity device : devices.values()) {
+            if (StringUtils.isNotBlank(device.getAgentId())) {
+                agentIds.add(device.getAgentId());
+            }
+        }
+        Map<String, AgentEntity> agents = new HashMap<>();
+        if (!agentIds.isEmpty()) {
+            for (AgentEntity agent : agentDao.selectList(new QueryWrapper<AgentEntity>()
+                    .select("id", "chat_history_conf")
+                    .in("id", agentIds))) {
+                agents.put(agent.getId(), agent);
+            }
+        }
+
+        tickets.forEach((macAddress, ticket) -> {
+            DeviceEntity device = devices.get(macAddress);
+            DeviceResolution resolution = device == null ? null
+                    : toResolution(device, agents.get(device.getAgentId()));
+            store(macAddress, resolution, ticket, seq);
+            if (resolution != null) {
+                result.put(macAddress, resolution);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 设备绑定关系或属性变更后失效，处于事务中时在提交后失效
+     */
+    public void invalidateMac(String macAddress) {
+        if (StringUtils.isNotBlank(macAddress)) {
+            afterCommit(MAC_PREFIX + macAddress);
+        }
+    }
+
+    /**
+     * 智能体下的设备批量变更后失效
+     */
+    public void invalidateAgent(String agentId) {
+        if (StringUtils.isNotBlank(agentId)) {
+            afterCommit(AGENT_PREFIX + agentId);
+        }
+    }
+
+    /**
+     * 用户的设备批量变更后失效
+     */
+    public void invalidateUser(Long userId) {
+        if (userId != null) {
+            afterCommit(USER_PREFIX + userId);
+        }
+    }
+
+    private void onMessage(Object body) {
+        if (body instanceof String target) {
+            invalidateNow(target);
+        } else if (body instanceof ConfigChangeEventDTO event && event.getType() == ConfigChangeType.AGENT) {
+            // 智能体修改可能影响聊天记录配置
+            invalidateNow(AGENT_PREFIX + event.getAgentId());
+        }
+    }
+
+    private void afterCommit(String target) {
+        localCacheInvalidator.invalidateAfterCommit(() -> invalidateNow(target), INVALIDATE_CHANNEL, target);
+    }
+
+    private void invalidateNow(String target) {
+        if (target.startsWith(MAC_PREFIX)) {
+            String macAddress = target.substring(MAC_PREFIX.length());
+            resolved.invalidate(macAddress);
+            unbound.invalidate(macAddress);
+            loadGuard.invalidate(macAddress);
+        } else if (target.startsWith(AGENT_PREFIX) || target.startsWith(USER_PREFIX)) {
+            // 先记录失效序号，再按索引清除，与store的先写入索引、再检查序号相对应
+            ownerInvalidations.put(target, sequence.incrementAndGet());
+            Set<String> macAddresses = macsByOwner.remove(target);
+            if (macAddresses != null) {
+                resolved.invalidateAll(macAddresses);
+            }
+        }
+    }
+
+    /**
+     * 写入加载结果，加载期间MAC地址或所属智能体、用户被失效时撤回
+     *
+     * @param seq 加载开始前的失效序号
+     */
+    private void store(String macAddress, DeviceResolution resolution, Object ticket, long seq) {
+        if (resolution == null) {
+            unbound.put(macAddress, Boolean.TRUE);
+        } else {
+            resolved.put(macAddress, resolution);
+            for (String owner : owners(resolution)) {
+                macsByOwner.computeIfAbsent(owner, k -> ConcurrentHashMap.newKeySet()).add(macAddress);
+            }
+        }
+        if (!loadGuard.confirm(macAddress, ticket) || invalidatedSince(resolution, seq)) {
+            resolved.invalidate(macAddress);
+            unbound.invalidate(macAddress);
+        }
+    }
+
+    private boolean invalidatedSince(DeviceResolution resolution, long seq) {
+        if (resolution == null) {
+            return false;
+        }
+        for (String owner : owners(resolution)) {
+            Long invalidatedAt = ownerInvalidations.getIfPresent(owner);
+            if (invalidatedAt != null && invalidatedAt > seq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存条目移除时同步清理索引。被新值覆盖时索引由写入新值的一方维护
+     */
+    private void onRemoval(RemovalNotification<String, DeviceResolution> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED || notification.getValue() == null) {
+            return;
+        }
+        String macAddress = notification.getKey();
+        // 移除后又写入了同一归属的新值时保留索引
+        DeviceResolution current = resolved.asMap().get(macAddress);
+        List<String> currentOwners = current == null ? List.of() : owners(current);
+        for (String owner : owners(notification.getValue())) {
+            if (currentOwners.contains(owner)) {
+                continue;
+            }
+            macsByOwner.computeIfPresent(owner, (k, macAddresses) -> {
+                macAddresses.remove(macAddress);
+                return macAddresses.isEmpty() ? null : macAddresses;
+            });
+        }
+    }
+
+    private static List<String> owners(DeviceResolution resolution) {
+        List<String> owners = new ArrayList<>(2);
+        if (StringUtils.isNotBlank(resolution.getAgentId())) {
+            owners.add(AGENT_PREFIX + resolution.getAgentId());
+        }
+        if (resolution.getUserId() != null) {
+            owners.add(USER_PREFIX + resolution.getUserId());
+        }
+        return owners;
+    }
+
+    private DeviceResolution load(String macAddress) {
+        DeviceEntity device = deviceDao.selectOne(new QueryWrapper<DeviceEntity>().eq("mac_address", macAddress));
+        if (device == null) {
+            return null;
+        }
+        AgentEntity agent = null;
+        if (StringUtils.isNotBlank(device.getAgentId())) {
+            agent = agentDao.selectOne(new QueryWrapper<AgentEntity>()
+                    .select("id", "chat_history_conf")
+                    .eq("id", device.getAgentId()));
+        }
+        return toResolution(device, agent);
+    }
+
+    private static DeviceResolution toResolution(DeviceEntity device, AgentEntity agent) {
+        return new DeviceResolution(device.getId(), device.getMacAddress(), device.getAgentId(), device.getUserId(),
+                device.getBoard(), device.getAutoUpdate(), agent != null,
+                agent == null ? null : agent.getChatHistoryConf());
+    }
+}
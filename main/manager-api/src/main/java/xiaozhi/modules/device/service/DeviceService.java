@@ -1,5 +1,6 @@
 package xiaozhi.modules.device.service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +12,7 @@ import xiaozhi.modules.device.dto.DevicePageUserDTO;
 import xiaozhi.modules.device.dto.DeviceReportReqDTO;
 import xiaozhi.modules.device.dto.DeviceReportRespDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.resolve.DeviceResolution;
 import xiaozhi.modules.device.vo.UserShowDeviceListVO;
 
 public interface DeviceService extends BaseService<DeviceEntity> {
@@ -62,6 +64,14 @@ public interface DeviceService extends BaseService<DeviceEntity> {
      */
     Long selectCountByUserId(Long userId);
 
+    /**
+     * 批量获取用户的设备数量，一次分组查询
+     *
+     * @param userIds 用户ID
+     * @return 用户ID -> 设备数量，没有设备的用户不包含在内
+     */
+    Map<Long, Long> selectCountByUserIds(Collection<Long> userIds);
+
     /**
      * 分页获取全部设备信息
      *
@@ -78,6 +88,22 @@ public interface DeviceService extends BaseService<DeviceEntity> {
      */
     DeviceEntity getDeviceByMacAddress(String macAddress);
 
+    /**
+     * 根据MAC地址解析设备及所属智能体，结果经过缓存，适用于设备交互等高频场景
+     *
+     * @param macAddress MAC地址
+     * @return 解析结果，设备未绑定时返回null
+     */
+    DeviceResolution resolveByMacAddress(String macAddress);
+
+    /**
+     * 根据MAC地址批量解析设备及所属智能体，与单个解析共用缓存，未命中的MAC地址合并查询
+     *
+     * @param macAddresses MAC地址列表
+     * @return MAC地址 -> 解析结果，未绑定的MAC地址不返回
+     */
+    Map<String, DeviceResolution> resolveByMacAddresses(Collection<String> macAddresses);
+
     /**
      * 根据设备ID获取激活码
      * 
@@ -100,7 +126,7 @@ public interface DeviceService extends BaseService<DeviceEntity> {
     void manualAddDevice(Long userId, DeviceManualAddDTO dto);
 
     /**
-     * 更新设备连接信息
+     * 更新设备连接信息，合并后延迟批量写入
      */
     void updateDeviceConnectionInfo(String agentId, String deviceId, String appVersion);
 
@@ -0,0 +1,24 @@
+package xiaozhi.modules.device.service;
+
+import xiaozhi.modules.device.dto.DeviceToolsBatchCallReqDTO;
+import xiaozhi.modules.device.vo.DeviceToolsBatchCallVO;
+
+/**
+ * 批量调用设备工具
+ */
+public interface DeviceToolsBatchService {
+
+    /**
+     * 创建批量调用任务，在后台并行调用，立即返回任务进度
+     *
+     * @param userId 当前用户ID，只调用该用户的设备
+     */
+    DeviceToolsBatchCallVO submit(Long userId, DeviceToolsBatchCallReqDTO dto);
+
+    /**
+     * 查询任务进度
+     *
+     * @return 任务进度，任务不存在、已过期或不属于该用户时返回null
+     */
+    DeviceToolsBatchCallVO getProgress(Long userId, String taskId);
+}
@@ -6,22 +6,16 @@ import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.aop.framework.AopContext;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -30,15 +24,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 
-import cn.hutool.core.date.DatePattern;
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.RandomUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.digest.DigestUtil;
-import cn.hutool.http.ContentType;
-import cn.hutool.http.Header;
-import cn.hutool.http.HttpRequest;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
@@ -55,18 +41,29 @@ import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.user.UserDetail;
 import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.DateUtils;
+import xiaozhi.common.utils.HmacUtils;
+import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.common.utils.ToolUtil;
+import xiaozhi.modules.device.buffer.DeviceConnectionBuffer;
 import xiaozhi.modules.device.dao.DeviceDao;
 import xiaozhi.modules.device.dto.DeviceManualAddDTO;
 import xiaozhi.modules.device.dto.DevicePageUserDTO;
 import xiaozhi.modules.device.dto.DeviceReportReqDTO;
 import xiaozhi.modules.device.dto.DeviceReportRespDTO;
+import xiaozhi.modules.device.endpoint.WebSocketEndpointAssigner;
 import xiaozhi.modules.device.entity.DeviceEntity;
-import xiaozhi.modules.device.entity.OtaEntity;
+import xiaozhi.modules.device.gateway.McpCommands;
+import xiaozhi.modules.device.gateway.MqttGatewayClient;
+import xiaozhi.modules.device.online.DeviceOnlineStatusCache;
+import xiaozhi.modules.device.ota.FirmwareDescriptor;
+import xiaozhi.modules.device.ota.LatestFirmwareIndex;
+import xiaozhi.modules.device.redis.FirmwareDownloadTokenRedis;
+import xiaozhi.modules.device.resolve.DeviceResolution;
+import xiaozhi.modules.device.resolve.DeviceResolutionCache;
 import xiaozhi.modules.device.service.DeviceService;
-import xiaozhi.modules.device.service.OtaService;
 import xiaozhi.modules.device.vo.UserShowDeviceListVO;
 import xiaozhi.modules.security.user.SecurityUser;
+import xiaozhi.modules.sys.params.SysParamsRegistry;
 import xiaozhi.modules.sys.service.SysParamsService;
 import xiaozhi.modules.sys.service.SysUserUtilService;
 
@@ -74,29 +71,25 @@ import xiaozhi.modules.sys.service.SysUserUtilService;
 @Service
 @AllArgsConstructor
 public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity> implements DeviceService {
+    private static final Base64.Encoder URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
 
     private final DeviceDao deviceDao;
     private final SysUserUtilService sysUserUtilService;
     private final SysParamsService sysParamsService;
+    private final SysParamsRegistry sysParamsRegistry;
     private final RedisUtils redisUtils;
-    private final OtaService otaService;
+    private final LatestFirmwareIndex latestFirmwareIndex;
+    private final FirmwareDownloadTokenRedis firmwareDownloadTokenRedis;
+    private final DeviceResolutionCache deviceResolutionCache;
+    private final DeviceConnectionBuffer deviceConnectionBuffer;
+    private final WebSocketEndpointAssigner webSocketEndpointAssigner;
+    private final DeviceOnlineStatusCache deviceOnlineStatusCache;
+    private final MqttGatewayClient mqttGatewayClient;
 
-    @Async
+    @Override
     public void updateDeviceConnectionInfo(String agentId, String deviceId, String appVersion) {
-        try {
-            DeviceEntity device = new DeviceEntity();
-            device.setId(deviceId);
-            device.setLastConnectedAt(new Date());
-            if (StringUtils.isNotBlank(appVersion)) {
-                device.setAppVersion(appVersion);
-            }
-            deviceDao.updateById(device);
-            if (StringUtils.isNotBlank(agentId)) {
-                redisUtils.set(RedisKeys.getAgentDeviceLastConnectedAtById(agentId), new Date());
-            }
-        } catch (Exception e) {
-            log.error("异步更新设备连接信息失败", e);
-        }
+        // 合并后由后台线程批量写入
+        deviceConnectionBuffer.record(agentId, deviceId, appVersion);
     }
 
     @Override
@@ -151,6 +144,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
 
         // 清理redis缓存、清除智能体设备数量缓存
         redisUtils.delete(List.of(cacheDeviceKey, deviceKey, RedisKeys.getAgentDeviceCountById(agentId)));
+        deviceResolutionCache.invalidateMac(macAddress);
         return true;
     }
 
@@ -159,39 +153,21 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
      */
     @Override
     public String getDeviceOnlineData(String agentId) {
-        // 从系统参数中获取MQTT网关地址
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+        // 未配置MQTT网关时不返回在线状态
+        if (!deviceOnlineStatusCache.isAvailable()) {
             return "";
         }
-        // 构建完整的URL
-        String url = StrUtil.format("http://{}/api/devices/status", mqttGatewayUrl);
 
         // 获取当前用户的设备列表
         UserDetail user = SecurityUser.getUser();
         List<DeviceEntity> devices = getUserDevices(user.getId(), agentId);
 
         // 构建deviceIds数组
-        Set<String> deviceIds = devices.stream().map(o -> {
-            String macAddress = Optional.ofNullable(o.getMacAddress()).orElse("unknown").replace(":", "_");
-            String groupId = Optional.ofNullable(o.getBoard()).orElse("GID_default").replace(":", "_");
-            return StrUtil.format("{}@@@{}@@@{}", groupId, macAddress, macAddress);
-        }).collect(Collectors.toSet());
-
-        // 构建请求入参
-        Map<String, Set<String>> params = MapUtil
-                .builder(new HashMap<String, Set<String>>())
-                .put("clientIds", deviceIds).build();
+        Set<String> deviceIds = devices.stream().map(McpCommands::clientId).collect(Collectors.toSet());
 
         if (ToolUtil.isNotEmpty(deviceIds)) {
-            // 发送请求
-            String resultMessage = HttpRequest.post(url)
-                    .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                    .header(Header.AUTHORIZATION, "Bearer " + generateBearerToken())
-                    .body(JSONUtil.toJsonStr(params))
-                    .timeout(10000) // 超时，毫秒
-                    .execute().body();
-            return resultMessage;
+            // 从内存读取在线状态，首次查看的设备限时等待网关查询，格式与网关返回的一致
+            return JsonUtils.toJsonString(deviceOnlineStatusCache.getStatuses(deviceIds));
         }
         // 返回响应
         return "";
@@ -202,7 +178,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         DeviceReportRespDTO response = new DeviceReportRespDTO();
         response.setServer_time(buildServerTime());
 
-        DeviceEntity deviceById = getDeviceByMacAddress(macAddress);
+        DeviceResolution deviceById = resolveByMacAddress(macAddress);
 
         // 设备未绑定，则返回当前上传的固件信息（不更新）以此兼容旧固件版本
         if (deviceById == null) {
@@ -226,8 +202,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         String wsUrl = sysParamsService.getValue(Constant.SERVER_WEBSOCKET, true);
 
         // 检查是否启用认证并生成token
-        String authEnabled = sysParamsService.getValue(Constant.SERVER_AUTH_ENABLED, true);
-        if ("true".equalsIgnoreCase(authEnabled)) {
+        if (sysParamsRegistry.get().getBoolean(Constant.SERVER_AUTH_ENABLED, false)) {
             try {
                 // 生成token
                 String token = generateWebSocketToken(clientId, macAddress);
@@ -245,10 +220,10 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
             wsUrl = "ws://xiaozhi.server.com:8000/xiaozhi/v1/";
             websocket.setUrl(wsUrl);
         } else {
-            String[] wsUrls = wsUrl.split("\\;");
-            if (wsUrls.length > 0) {
-                // 随机选择一个WebSocket URL
-                websocket.setUrl(wsUrls[RandomUtil.randomInt(0, wsUrls.length)]);
+            // 按设备MAC在健康节点中分配，重连时保持同一节点
+            String assigned = webSocketEndpointAssigner.assign(wsUrl, macAddress);
+            if (assigned != null) {
+                websocket.setUrl(assigned);
             } else {
                 log.error("WebSocket地址未配置，请登录智控台，在参数管理找到【server.websocket】配置");
                 websocket.setUrl("ws://xiaozhi.server.com:8000/xiaozhi/v1/");
@@ -275,12 +250,10 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         }
 
         if (deviceById != null) {
-            // 如果设备存在，则异步更新上次连接时间和版本信息
+            // 如果设备存在，则更新上次连接时间和版本信息
             String appVersion = deviceReport.getApplication() != null ? deviceReport.getApplication().getVersion()
                     : null;
-            // 通过Spring代理调用异步方法
-            ((DeviceServiceImpl) AopContext.currentProxy()).updateDeviceConnectionInfo(deviceById.getAgentId(),
-                    deviceById.getId(), appVersion);
+            updateDeviceConnectionInfo(deviceById.getAgentId(), deviceById.getDeviceId(), appVersion);
         } else {
             // 如果设备不存在，则生成激活码
             DeviceReportRespDTO.Activation code = buildActivation(macAddress, deviceReport);
@@ -314,6 +287,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         wrapper.eq("user_id", userId);
         wrapper.eq("id", deviceId);
         baseDao.delete(wrapper);
+        deviceResolutionCache.invalidateMac(device.getMacAddress());
     }
 
     @Override
@@ -321,6 +295,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         UpdateWrapper<DeviceEntity> wrapper = new UpdateWrapper<>();
         wrapper.eq("user_id", userId);
         baseDao.delete(wrapper);
+        deviceResolutionCache.invalidateUser(userId);
     }
 
     @Override
@@ -330,11 +305,38 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         return baseDao.selectCount(wrapper);
     }
 
+    @Override
+    public Map<Long, Long> selectCountByUserIds(Collection<Long> userIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return counts;
+        }
+        List<Map<String, Object>> rows = baseDao.selectMaps(new QueryWrapper<DeviceEntity>()
+                .select("user_id AS userId", "COUNT(*) AS deviceCount")
+                .in("user_id", userIds)
+                .groupBy("user_id"));
+        for (Map<String, Object> row : rows) {
+            if (row.get("userId") instanceof Number userId && row.get("deviceCount") instanceof Number count) {
+                counts.put(userId.longValue(), count.longValue());
+            }
+        }
+        return counts;
+    }
+
     @Override
     public void deleteByAgentId(String agentId) {
         UpdateWrapper<DeviceEntity> wrapper = new UpdateWrapper<>();
         wrapper.eq("agent_id", agentId);
         baseDao.delete(wrapper);
+        deviceResolutionCache.invalidateAgent(agentId);
+    }
+
+    @Override
+    public boolean updateById(DeviceEntity entity) {
+        boolean updated = super.updateById(entity);
+        // 自动更新开关等属性影响设备解析结果
+        deviceResolutionCache.invalidateMac(entity.getMacAddress());
+        return updated;
     }
 
     @Override
@@ -348,13 +350,15 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
                 new QueryWrapper<DeviceEntity>()
                         // 必须设备关键词查找
                         .like(StringUtils.isNotBlank(dto.getKeywords()), "alias", dto.getKeywords()));
+        // 一次批量获取本页所有设备的绑定用户名
+        Map<Long, String> usernames = sysUserUtilService.getUsernames(
+                page.getRecords().stream().map(DeviceEntity::getUserId).toList());
         // 循环处理page获取回来的数据，返回需要的字段
         List<UserShowDeviceListVO> list = page.getRecords().stream().map(device -> {
             UserShowDeviceListVO vo = ConvertUtils.sourceToTarget(device, UserShowDeviceListVO.class);
             // 把最后修改的时间，改为简短描述的时间
             vo.setRecentChatTime(DateUtils.getShortTime(device.getUpdateDate()));
-            sysUserUtilService.assignUsername(device.getUserId(),
-                    vo::setBindUserName);
+            vo.setBindUserName(usernames.get(device.getUserId()));
             vo.setDeviceType(device.getBoard());
             return vo;
         }).toList();
@@ -372,6 +376,19 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         return baseDao.selectOne(wrapper);
     }
 
+    @Override
+    public DeviceResolution resolveByMacAddress(String macAddress) {
+        return deviceResolutionCache.resolve(macAddress);
+    }
+
+    @Override
+    public Map<String, DeviceResolution> resolveByMacAddresses(Collection<String> macAddresses) {
+        if (macAddresses == null || macAddresses.isEmpty()) {
+            return new HashMap<>();
+        }
+        return deviceResolutionCache.resolveAll(macAddresses);
+    }
+
     private DeviceReportRespDTO.ServerTime buildServerTime() {
         DeviceReportRespDTO.ServerTime serverTime = new DeviceReportRespDTO.ServerTime();
         TimeZone tz = TimeZone.getDefault();
@@ -462,26 +479,23 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
             currentVersion = "0.0.0";
         }
 
-        OtaEntity ota = otaService.getLatestOta(type);
+        FirmwareDescriptor ota = latestFirmwareIndex.getLatest(type);
         DeviceReportRespDTO.Firmware firmware = new DeviceReportRespDTO.Firmware();
         String downloadUrl = null;
 
         if (ota != null) {
             // 如果设备没有版本信息，或者OTA版本比设备版本新，则返回下载地址
-            if (compareVersions(ota.getVersion(), currentVersion) > 0) {
-                String otaUrl = sysParamsService.getValue(Constant.SERVER_OTA, true);
-                if (StringUtils.isBlank(otaUrl) || otaUrl.equals("null")) {
+            if (ota.isNewerThan(currentVersion)) {
+                String downloadBaseUrl = latestFirmwareIndex.getDownloadBaseUrl();
+                if (downloadBaseUrl == null) {
                     log.error("OTA地址未配置，请登录智控台，在参数管理找到【server.ota】配置");
-                    // 尝试从请求中获取
+                    // 尝试从请求中获取，将URL中的/ota/替换为/otaMag/download/
                     HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder
                             .getRequestAttributes())
                             .getRequest();
-                    otaUrl = request.getRequestURL().toString();
+                    downloadBaseUrl = request.getRequestURL().toString().replace("/ota/", "/otaMag/download/");
                 }
-                // 将URL中的/ota/替换为/otaMag/download/
-                String uuid = UUID.randomUUID().toString();
-                redisUtils.set(RedisKeys.getOtaIdKey(uuid), ota.getId());
-                downloadUrl = otaUrl.replace("/ota/", "/otaMag/download/") + uuid;
+                downloadUrl = downloadBaseUrl + firmwareDownloadTokenRedis.issue(ota.getId(), type);
             }
         }
 
@@ -490,35 +504,6 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         return firmware;
     }
 
-    /**
-     * 比较两个版本号
-     * 
-     * @param version1 版本1
-     * @param version2 版本2
-     * @return 如果version1 > version2返回1，version1 < version2返回-1，相等返回0
-     */
-    private static int compareVersions(String version1, String version2) {
-        if (version1 == null || version2 == null) {
-            return 0;
-        }
-
-        String[] v1Parts = version1.split("\\.");
-        String[] v2Parts = version2.split("\\.");
-
-        int length = Math.max(v1Parts.length, v2Parts.length);
-        for (int i = 0; i < length; i++) {
-            int v1 = i < v1Parts.length ? Integer.parseInt(v1Parts[i]) : 0;
-            int v2 = i < v2Parts.length ? Integer.parseInt(v2Parts[i]) : 0;
-
-            if (v1 > v2) {
-                return 1;
-            } else if (v1 < v2) {
-                return -1;
-            }
-        }
-        return 0;
-    }
-
     @Override
     public void manualAddDevice(Long userId, DeviceManualAddDTO dto) {
         // 检查mac是否已存在
@@ -546,6 +531,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
 
         // 添加：清除智能体设备数量缓存
         redisUtils.delete(RedisKeys.getAgentDeviceCountById(dto.getAgentId()));
+        deviceResolutionCache.invalidateMac(dto.getMacAddress());
     }
 
     @Override
@@ -564,10 +550,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
      * @return Base64编码的HMAC-SHA256签名
      */
     private String generatePasswordSignature(String content, String secretKey) throws Exception {
-        Mac hmac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        hmac.init(keySpec);
-        byte[] signature = hmac.doFinal(content.getBytes(StandardCharsets.UTF_8));
+        byte[] signature = HmacUtils.hmacSha256(secretKey, content);
         return Base64.getEncoder().encodeToString(signature);
     }
 
@@ -581,7 +564,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
     public String generateWebSocketToken(String clientId, String username)
             throws NoSuchAlgorithmException, InvalidKeyException {
         // 从系统参数获取密钥
-        String secretKey = sysParamsService.getValue(Constant.SERVER_SECRET, false);
+        String secretKey = sysParamsService.getValue(Constant.SERVER_SECRET, true);
         if (StringUtils.isBlank(secretKey)) {
             throw new IllegalStateException("WebSocket认证密钥未配置(server.secret)");
         }
@@ -590,19 +573,16 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         long timestamp = System.currentTimeMillis() / 1000;
 
         // 构建签名内容: clientId|username|timestamp
-        String content = String.format("%s|%s|%d", clientId, username, timestamp);
+        String content = clientId + "|" + username + "|" + timestamp;
 
         // 生成HMAC-SHA256签名
-        Mac hmac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        hmac.init(keySpec);
-        byte[] signature = hmac.doFinal(content.getBytes(StandardCharsets.UTF_8));
+        byte[] signature = HmacUtils.hmacSha256(secretKey, content);
 
         // Base64 URL-safe编码签名(去除填充符=)
-        String signatureBase64 = Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        String signatureBase64 = URL_ENCODER.encodeToString(signature);
 
         // 返回格式: signature.timestamp
-        return String.format("%s.%d", signatureBase64, timestamp);
+        return signatureBase64 + "." + timestamp;
     }
 
     /**
@@ -624,7 +604,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         // 构建客户端ID格式：groupId@@@macAddress@@@uuid
         String groupIdSafeStr = groupId.replace(":", "_");
         String deviceIdSafeStr = macAddress.replace(":", "_");
-        String mqttClientId = String.format("%s@@@%s@@@%s", groupIdSafeStr, deviceIdSafeStr, deviceIdSafeStr);
+        String mqttClientId = groupIdSafeStr + "@@@" + deviceIdSafeStr + "@@@" + deviceIdSafeStr;
 
         // 构建用户数据（包含IP等信息）
         Map<String, String> userData = new HashMap<>();
@@ -642,7 +622,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         }
 
         // 将用户数据编码为Base64 JSON
-        String userDataJson = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(userData);
+        String userDataJson = JsonUtils.toJsonString(userData);
         String username = Base64.getEncoder().encodeToString(userDataJson.getBytes(StandardCharsets.UTF_8));
 
         // 生成密码签名
@@ -659,27 +639,10 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         return mqtt;
     }
 
-    /**
-     * 生成BearerToken
-     */
-    private String generateBearerToken() {
-        try {
-            String dateStr = DateUtil.format(new Date(), DatePattern.NORM_DATE_PATTERN);
-            String signatureKey = sysParamsService.getValue(Constant.SERVER_MQTT_SECRET, false);
-            if (ToolUtil.isEmpty(signatureKey)) {
-                return null;
-            }
-            return DigestUtil.sha256Hex(dateStr + signatureKey);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
     @Override
     public Object getDeviceTools(String deviceId) {
-        // 从系统参数中获取MQTT网关地址
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+        // 未配置MQTT网关
+        if (!mqttGatewayClient.isAvailable()) {
             return null;
         }
 
@@ -695,13 +658,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
             return null;
         }
 
-        // 构建clientId
-        String macAddress = Optional.ofNullable(device.getMacAddress()).orElse("unknown").replace(":", "_");
-        String groupId = Optional.ofNullable(device.getBoard()).orElse("GID_default").replace(":", "_");
-        String clientId = StrUtil.format("{}@@@{}@@@{}", groupId, macAddress, macAddress);
-
-        // 构建完整的URL
-        String url = StrUtil.format("http://{}/api/commands/{}", mqttGatewayUrl, clientId);
+        String clientId = McpCommands.clientId(device);
 
         // 存储所有工具列表
         List<Object> allTools = new ArrayList<>();
@@ -709,37 +666,8 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
 
         // 循环获取分页数据
         while (true) {
-            // 构建params
-            Map<String, Object> paramsMap = MapUtil.builder(new HashMap<String, Object>())
-                    .put("withUserTools", true)
-                    .build();
-            // 如果有cursor，添加到请求参数中
-            if (StringUtils.isNotBlank(cursor)) {
-                paramsMap.put("cursor", cursor);
-            }
-
-            // 构建请求体
-            Map<String, Object> payload = MapUtil
-                    .builder(new HashMap<String, Object>())
-                    .put("jsonrpc", "2.0")
-                    .put("id", 2)
-                    .put("method", "tools/list")
-                    .put("params", paramsMap)
-                    .build();
-
-            Map<String, Object> requestBody = MapUtil
-                    .builder(new HashMap<String, Object>())
-                    .put("type", "mcp")
-                    .put("payload", payload)
-                    .build();
-
-            // 发送请求
-            String resultMessage = HttpRequest.post(url)
-                    .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                    .header(Header.AUTHORIZATION, "Bearer " + generateBearerToken())
-                    .body(JSONUtil.toJsonStr(requestBody))
-                    .timeout(10000) // 超时，毫秒
-                    .execute().body();
+            // 发送请求，工具列表查询可以安全重试
+            String resultMessage = mqttGatewayClient.sendCommand(clientId, McpCommands.toolsList(cursor), true);
 
             // 解析响应
             if (StringUtils.isBlank(resultMessage)) {
@@ -783,9 +711,8 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
 
     @Override
     public Object callDeviceTool(String deviceId, String toolName, Map<String, Object> arguments) {
-        // 从系统参数中获取MQTT网关地址
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+        // 未配置MQTT网关
+        if (!mqttGatewayClient.isAvailable()) {
             return null;
         }
 
@@ -801,75 +728,9 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
             return null;
         }
 
-        // 构建clientId
-        String macAddress = Optional.ofNullable(device.getMacAddress()).orElse("unknown").replace(":", "_");
-        String groupId = Optional.ofNullable(device.getBoard()).orElse("GID_default").replace(":", "_");
-        String clientId = StrUtil.format("{}@@@{}@@@{}", groupId, macAddress, macAddress);
-
-        // 构建完整的URL
-        String url = StrUtil.format("http://{}/api/commands/{}", mqttGatewayUrl, clientId);
-
-        // 构建请求体
-        Map<String, Object> params = MapUtil
-                .builder(new HashMap<String, Object>())
-                .put("name", toolName)
-                .put("arguments", arguments)
-                .build();
-
-        Map<String, Object> payload = MapUtil
-                .builder(new HashMap<String, Object>())
-                .put("jsonrpc", "2.0")
-                .put("id", 2)
-                .put("method", "tools/call")
-                .put("params", params)
-                .build();
-
-        Map<String, Object> requestBody = MapUtil
-                .builder(new HashMap<String, Object>())
-                .put("type", "mcp")
-                .put("payload", payload)
-                .build();
-
-        // 发送请求
-        String resultMessage = HttpRequest.post(url)
-                .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                .header(Header.AUTHORIZATION, "Bearer " + generateBearerToken())
-                .body(JSONUtil.toJsonStr(requestBody))
-                .timeout(10000) // 超时，毫秒
-                .execute().body();
-
-        // 解析响应
-        if (StringUtils.isNotBlank(resultMessage)) {
-            cn.hutool.json.JSONObject jsonObject = JSONUtil.parseObj(resultMessage);
-            if (jsonObject.getBool("success", false)) {
-                cn.hutool.json.JSONObject data = jsonObject.getJSONObject("data");
-                if (data != null) {
-                    cn.hutool.json.JSONArray content = data.getJSONArray("content");
-                    if (content != null && content.size() > 0) {
-                        cn.hutool.json.JSONObject firstContent = content.getJSONObject(0);
-                        if (firstContent != null && "text".equals(firstContent.getStr("type"))) {
-                            String text = firstContent.getStr("text");
-                            if (StringUtils.isNotBlank(text)) {
-                                String trimmedText = text.trim();
-                                if (trimmedText.startsWith("{") || trimmedText.startsWith("[")) {
-                                    try {
-                                        return JSONUtil.parseObj(trimmedText);
-                                    } catch (Exception e) {
-                                        return trimmedText;
-                                    }
-                                } else if ("true".equals(trimmedText)) {
-                                    return true;
-                                } else if ("false".equals(trimmedText)) {
-                                    return false;
-                                } else {
-                                    return trimmedText;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        // 发送请求，工具调用可能改变设备状态，不在超时后重发
+        String resultMessage = mqttGatewayClient.sendCommand(McpCommands.clientId(device),
+                McpCommands.toolsCall(toolName, arguments), false);
+        return McpCommands.parseToolCallResult(resultMessage);
     }
 }
@@ -0,0 +1,274 @@
+package xiaozhi.modules.device.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.config.MqttGatewayProperties;
+import xiaozhi.modules.device.dto.DeviceToolsBatchCallReqDTO;
+import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.gateway.McpCommands;
+import xiaozhi.modules.device.gateway.MqttGatewayClient;
+import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.service.DeviceToolsBatchService;
+import xiaozhi.modules.device.vo.DeviceToolsBatchCallVO;
+
+/**
+ * 批量调用设备工具
+ * <p>
+ * 每个任务由若干个工作线程从待调用设备队列中取设备，同时调用的设备数不超过任务的并发数。
+ * 所有任务共用的线程数即合计并发上限，小于MQTT网关客户端的并发上限，批量任务不会占满网关请求名额。
+ * 进度保存在本节点内存中，并节流写入Redis，轮询请求落到其他节点时也能查到：进行中只写入计数，完成后写入全部结果。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceToolsBatchServiceImpl implements DeviceToolsBatchService {
+    /**
+     * 任务进度保存时间，单位：秒
+     */
+    private static final long PROGRESS_EXPIRE_SECONDS = 60 * 60;
+    /**
+     * 任务进行中写入Redis的最小间隔
+     */
+    private static final long SAVE_INTERVAL_MILLIS = 1000;
+
+    private final DeviceService deviceService;
+    private final MqttGatewayClient mqttGatewayClient;
+    private final MqttGatewayProperties properties;
+    private final RedisUtils redisUtils;
+
+    private final Cache<String, Task> tasks = CacheBuilder.newBuilder()
+            .expireAfterWrite(PROGRESS_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, Math.min(properties.getFanoutTotalConcurrency(), properties.getMaxConcurrency() / 2));
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "DeviceToolsBatch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public DeviceToolsBatchCallVO submit(Long userId, DeviceToolsBatchCallReqDTO dto) {
+        if (!mqttGatewayClient.isAvailable()) {
+            throw new RenException("未配置MQTT网关，请在参数管理中设置server.mqtt_manager_api");
+        }
+        List<DeviceEntity> devices = selectDevices(userId, dto);
+        if (devices.isEmpty()) {
+            throw new RenException(ErrorCode.DEVICE_NOT_EXIST);
+        }
+
+        int maxConcurrency = properties.getFanoutConcurrency();
+        int concurrency = dto.getConcurrency() == null ? maxConcurrency : Math.min(dto.getConcurrency(), maxConcurrency);
+        int timeoutMillis = dto.getTimeoutMillis() == null ? properties.getFanoutTimeoutMillis() : dto.getTimeoutMillis();
+
+        Task task = new Task(UUID.randomUUID().toString().replace("-", ""), userId, dto.getName(),
+                dto.getArguments(), timeoutMillis, devices);
+        tasks.put(task.taskId, task);
+        save(task);
+        for (int i = 0; i < Math.min(concurrency, devices.size()); i++) {
+            executor.execute(() -> run(task));
+        }
+        return task.toVO(true);
+    }
+
+    @Override
+    public DeviceToolsBatchCallVO getProgress(Long userId, String taskId) {
+        Task task = tasks.getIfPresent(taskId);
+        if (task != null) {
+            return task.userId.equals(userId) ? task.toVO(true) : null;
+        }
+        Map<String, Object> saved = redisUtils.hGetAll(RedisKeys.getDeviceToolsBatchKey(taskId));
+        if (saved == null || !String.valueOf(userId).equals(saved.get("userId"))) {
+            return null;
+        }
+        return (DeviceToolsBatchCallVO) saved.get("progress");
+    }
+
+    private List<DeviceEntity> selectDevices(Long userId, DeviceToolsBatchCallReqDTO dto) {
+        Set<String> deviceIds = dto.getDeviceIds() == null || dto.getDeviceIds().isEmpty() ? null
+                : new HashSet<>(dto.getDeviceIds());
+        List<DeviceEntity> devices = new ArrayList<>();
+        for (DeviceEntity device : deviceService.getUserDevices(userId, dto.getAgentId())) {
+            if (deviceIds != null && !deviceIds.contains(device.getId())) {
+                continue;
+            }
+            if (StringUtils.isNotBlank(dto.getBoard()) && !dto.getBoard().equals(device.getBoard())) {
+                continue;
+            }
+            devices.add(device);
+        }
+        return devices;
+    }
+
+    /**
+     * 工作线程：依次调用队列中的设备，直到队列为空
+     */
+    private void run(Task task) {
+        DeviceEntity device;
+        while ((device = task.pending.poll()) != null) {
+            DeviceToolsBatchCallVO.DeviceResult result = new DeviceToolsBatchCallVO.DeviceResult();
+            result.setDeviceId(device.getId());
+            result.setMacAddress(device.getMacAddress());
+            long start = System.currentTimeMillis();
+            try {
+                String resultMessage = mqttGatewayClient.sendCommand(McpCommands.clientId(device),
+                        McpCommands.toolsCall(task.toolName, task.arguments), false, task.timeoutMillis);
+                Object value = McpCommands.parseToolCallResult(resultMessage);
+                result.setSuccess(value != null);
+                result.setResult(value);
+                if (value == null) {
+                    result.setError("设备未返回结果");
+                }
+            } catch (Exception e) {
+                result.setSuccess(false);
+                result.setError(e.getMessage());
+            }
+            result.setCostMillis(System.currentTimeMillis() - start);
+
+            if (task.complete(result)) {
+                save(task);
+                log.info("批量调用设备工具完成，任务 {}，工具 {}，成功 {}，失败 {}", task.taskId, task.toolName,
+                        task.succeeded.get(), task.failed.get());
+            } else if (task.shouldSave()) {
+                save(task);
+            }
+        }
+    }
+
+    /**
+     * 写入进度。同一任务的写入串行进行，进度在锁内读取，后写入的不会比先写入的旧；完成后的进度写入后不再写入
+     */
+    private void save(Task task) {
+        synchronized (task) {
+            if (task.finalSaved) {
+                return;
+            }
+            boolean finished = task.isFinished();
+            try {
+                Map<String, Object> saved = new HashMap<>(4);
+                saved.put("userId", String.valueOf(task.userId));
+                DeviceToolsBatchCallVO progress = task.toVO(finished);
+                // 读取结果时恰好完成的，留给最后完成的线程写入带结果的进度
+                progress.setFinished(finished);
+                saved.put("progress", progress);
+                redisUtils.hMSet(RedisKeys.getDeviceToolsBatchKey(task.taskId), saved, PROGRESS_EXPIRE_SECONDS);
+                task.finalSaved = finished;
+            } catch (Exception e) {
+                log.warn("保存批量调用设备工具进度失败，任务 {}: {}", task.taskId, e.getMessage());
+            }
+        }
+    }
+
+    private static final class Task {
+        private final String taskId;
+        private final Long userId;
+        private final String toolName;
+        private final Map<String, Object> arguments;
+        private final int timeoutMillis;
+        private final int total;
+        private final Queue<DeviceEntity> pending;
+        private final Queue<DeviceToolsBatchCallVO.DeviceResult> results = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong lastSavedAt = new AtomicLong(System.currentTimeMillis());
+        /**
+         * 完成后的进度已写入，由save在锁内读写
+         */
+        private boolean finalSaved;
+
+        private Task(String taskId, Long userId, String toolName, Map<String, Object> arguments, int timeoutMillis,
+                List<DeviceEntity> devices) {
+            this.taskId = taskId;
+            this.userId = userId;
+            this.toolName = toolName;
+            this.arguments = arguments;
+            this.timeoutMillis = timeoutMillis;
+            this.total = devices.size();
+            this.pending = new ConcurrentLinkedQueue<>(devices);
+        }
+
+        /**
+         * 记录一个设备的调用结果
+         *
+         * @return 是否为最后一个完成的设备，只有一个线程会得到true
+         */
+        boolean complete(DeviceToolsBatchCallVO.DeviceResult result) {
+            results.add(result);
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            return completed.incrementAndGet() == total;
+        }
+
+        boolean isFinished() {
+            return completed.get() >= total;
+        }
+
+        /**
+         * 距上次写入超过间隔时由一个线程负责写入
+         */
+        boolean shouldSave() {
+            long now = System.currentTimeMillis();
+            long last = lastSavedAt.get();
+            return now - last >= SAVE_INTERVAL_MILLIS && lastSavedAt.compareAndSet(last, now);
+        }
+
+        /**
+         * @param withResults 是否带上各设备的调用结果，进行中的节流写入只写计数，避免每次复制全部结果
+         */
+        DeviceToolsBatchCallVO toVO(boolean withResults) {
+            DeviceToolsBatchCallVO vo = new DeviceToolsBatchCallVO();
+            vo.setTaskId(taskId);
+            vo.setToolName(toolName);
+            vo.setTotal(total);
+            vo.setCompleted(completed.get());
+            vo.setSucceeded(succeeded.get());
+            vo.setFailed(failed.get());
+            vo.setFinished(isFinished());
+            if (withResults) {
+                vo.setResults(new ArrayList<>(results));
+            }
+            return vo;
+        }
+    }
+}
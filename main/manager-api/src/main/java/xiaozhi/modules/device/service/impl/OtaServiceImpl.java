@@ -1,9 +1,11 @@
 package xiaozhi.modules.device.service.impl;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.springframework.stereotype.Service;
 
@@ -11,14 +13,20 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 
 import io.micrometer.common.util.StringUtils;
+import lombok.AllArgsConstructor;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.modules.device.dao.OtaDao;
 import xiaozhi.modules.device.entity.OtaEntity;
+import xiaozhi.modules.device.ota.FirmwareBlobStore;
+import xiaozhi.modules.device.ota.LatestFirmwareIndex;
 import xiaozhi.modules.device.service.OtaService;
 
 @Service
+@AllArgsConstructor
 public class OtaServiceImpl extends BaseServiceImpl<OtaDao, OtaEntity> implements OtaService {
+    private final LatestFirmwareIndex latestFirmwareIndex;
+    private final FirmwareBlobStore firmwareBlobStore;
 
     @Override
     public PageData<OtaEntity> page(Map<String, Object> params) {
@@ -50,13 +58,19 @@ public class OtaServiceImpl extends BaseServiceImpl<OtaDao, OtaEntity> implement
             throw new RuntimeException("已存在相同类型和版本的固件，请修改后重试");
         }
 
+        OtaEntity before = baseDao.selectById(entity.getId());
         entity.setUpdateDate(new Date());
         baseDao.updateById(entity);
+        latestFirmwareIndex.invalidate();
+        releaseReplacedFile(before, entity);
     }
 
     @Override
     public void delete(String[] ids) {
+        List<OtaEntity> deleted = baseDao.selectBatchIds(Arrays.asList(ids));
         baseDao.deleteBatchIds(Arrays.asList(ids));
+        latestFirmwareIndex.invalidate();
+        firmwareBlobStore.releaseAfterCommit(deleted.stream().map(OtaEntity::getFirmwarePath).toList());
     }
 
     @Override
@@ -69,9 +83,24 @@ public class OtaServiceImpl extends BaseServiceImpl<OtaDao, OtaEntity> implement
             OtaEntity otaBefore = otaList.get(0);
             entity.setId(otaBefore.getId());
             baseDao.updateById(entity);
+            latestFirmwareIndex.invalidate();
+            releaseReplacedFile(otaBefore, entity);
             return true;
         }
-        return baseDao.insert(entity) > 0;
+        boolean inserted = baseDao.insert(entity) > 0;
+        latestFirmwareIndex.invalidate();
+        return inserted;
+    }
+
+    /**
+     * 固件记录更换了文件时，原文件没有其他引用则删除
+     */
+    private void releaseReplacedFile(OtaEntity before, OtaEntity after) {
+        if (before == null || after.getFirmwarePath() == null
+                || Objects.equals(before.getFirmwarePath(), after.getFirmwarePath())) {
+            return;
+        }
+        firmwareBlobStore.releaseAfterCommit(Collections.singletonList(before.getFirmwarePath()));
     }
 
     @Override
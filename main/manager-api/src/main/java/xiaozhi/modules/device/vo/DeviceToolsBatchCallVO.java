@@ -0,0 +1,60 @@
+package xiaozhi.modules.device.vo;
+
+import java.io.Serializable;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "批量调用设备工具进度VO")
+public class DeviceToolsBatchCallVO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Schema(description = "任务ID")
+    private String taskId;
+
+    @Schema(description = "工具名称")
+    private String toolName;
+
+    @Schema(description = "设备总数")
+    private Integer total;
+
+    @Schema(description = "已完成设备数")
+    private Integer completed;
+
+    @Schema(description = "调用成功设备数")
+    private Integer succeeded;
+
+    @Schema(description = "调用失败设备数")
+    private Integer failed;
+
+    @Schema(description = "是否全部完成")
+    private Boolean finished;
+
+    @Schema(description = "已完成设备的调用结果，任务进行中从其他节点查询时为空")
+    private List<DeviceResult> results;
+
+    @Data
+    public static class DeviceResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Schema(description = "设备ID")
+        private String deviceId;
+
+        @Schema(description = "mac地址")
+        private String macAddress;
+
+        @Schema(description = "是否调用成功")
+        private Boolean success;
+
+        @Schema(description = "调用结果")
+        private Object result;
+
+        @Schema(description = "失败原因")
+        private String error;
+
+        @Schema(description = "耗时（毫秒）")
+        private Long costMillis;
+    }
+}
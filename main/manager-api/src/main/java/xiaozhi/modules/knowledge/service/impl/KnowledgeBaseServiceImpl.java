@@ -18,6 +18,8 @@ import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.knowledge.dao.KnowledgeBaseDao;
 import xiaozhi.modules.knowledge.dto.KnowledgeBaseDTO;
 import xiaozhi.modules.knowledge.dto.dataset.DatasetDTO;
@@ -49,6 +51,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
     private final ModelConfigService modelConfigService;
     private final ModelConfigDao modelConfigDao;
     private final RedisUtils redisUtils;
+    private final ConfigVersionRedis configVersionRedis;
 
     @Override
     public PageData<KnowledgeBaseDTO> getPageList(KnowledgeBaseDTO knowledgeBaseDTO, Integer page, Integer limit) {
@@ -282,6 +285,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
 
         // Clean cache
         redisUtils.delete(RedisKeys.getKnowledgeBaseCacheKey(entity.getId()));
+        configVersionRedis.bumpGlobal(ConfigChangeType.KNOWLEDGE_BASE);
 
         return ConvertUtils.sourceToTarget(entity, KnowledgeBaseDTO.class);
     }
@@ -337,6 +341,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
             int deleteCount = knowledgeBaseDao.deleteById(entity.getId());
             log.info("本地数据库删除结果: {}", deleteCount > 0 ? "成功" : "失败");
             redisUtils.delete(RedisKeys.getKnowledgeBaseCacheKey(entity.getId()));
+            configVersionRedis.bumpGlobal(ConfigChangeType.KNOWLEDGE_BASE);
         }
     }
 
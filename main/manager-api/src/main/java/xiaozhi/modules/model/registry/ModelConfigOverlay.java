@@ -0,0 +1,53 @@
+package xiaozhi.modules.model.registry;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 模型配置写时复制覆盖层
+ * <p>
+ * 读取时优先返回覆盖的值，没有覆盖时返回共享配置中的值；
+ * 只有存在覆盖字段时才在{@link #toMap()}中复制一份浅拷贝，否则直接返回共享的只读配置。
+ */
+public final class ModelConfigOverlay {
+    private final Map<String, Object> base;
+    private Map<String, Object> overrides;
+
+    ModelConfigOverlay(Map<String, Object> base) {
+        this.base = base;
+    }
+
+    /**
+     * 覆盖配置项
+     */
+    public ModelConfigOverlay put(String key, Object value) {
+        if (overrides == null) {
+            overrides = new HashMap<>();
+        }
+        overrides.put(key, value);
+        return this;
+    }
+
+    /**
+     * 读取配置项，覆盖层优先
+     */
+    public Object get(String key) {
+        if (overrides != null && overrides.containsKey(key)) {
+            return overrides.get(key);
+        }
+        return base.get(key);
+    }
+
+    /**
+     * 生成最终配置，没有覆盖字段时返回共享的只读配置
+     */
+    public Map<String, Object> toMap() {
+        if (overrides == null) {
+            return base;
+        }
+        Map<String, Object> merged = new LinkedHashMap<>(base);
+        merged.putAll(overrides);
+        return merged;
+    }
+}
@@ -0,0 +1,95 @@
+package xiaozhi.modules.model.registry;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.redis.CacheLoadGuard;
+import xiaozhi.common.redis.LocalCacheInvalidator;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.config.dto.ConfigChangeEventDTO;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
+import xiaozhi.modules.model.dao.ModelConfigDao;
+import xiaozhi.modules.model.entity.ModelConfigEntity;
+
+/**
+ * 模型配置注册表
+ * <p>
+ * 按模型ID在本地缓存解析好的只读视图，配置构建时所有请求共享同一实例。
+ * 本节点修改模型后在事务提交时失效，其他节点收到全局配置变更事件或读到更新的全局版本号时整体失效。
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelConfigRegistry {
+    private final ModelConfigDao modelConfigDao;
+    private final ConfigVersionRedis configVersionRedis;
+    private final LocalCacheInvalidator localCacheInvalidator;
+
+    /**
+     * 不存在的模型也缓存为空，避免反复查询数据库
+     */
+    private final Cache<String, Optional<ModelConfigView>> views = CacheBuilder.newBuilder()
+            .maximumSize(2000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+    private final CacheLoadGuard<String> loadGuard = new CacheLoadGuard<>();
+
+    @PostConstruct
+    public void subscribe() {
+        localCacheInvalidator.subscribe(this::onMessage, ConfigVersionRedis.CHANGE_CHANNEL);
+        configVersionRedis.onGlobalChange(this::invalidateAll);
+    }
+
+    /**
+     * 获取模型配置只读视图
+     *
+     * @param id 模型ID
+     * @return 只读视图，模型不存在时返回null
+     */
+    public ModelConfigView get(String id) {
+        if (StringUtils.isBlank(id)) {
+            return null;
+        }
+        Optional<ModelConfigView> view = views.getIfPresent(id);
+        if (view != null) {
+            return view.orElse(null);
+        }
+        Object ticket = loadGuard.begin(id);
+        ModelConfigEntity entity = modelConfigDao.selectById(id);
+        view = Optional.ofNullable(entity == null ? null : new ModelConfigView(entity));
+        views.put(id, view);
+        if (!loadGuard.confirm(id, ticket)) {
+            views.invalidate(id);
+        }
+        return view.orElse(null);
+    }
+
+    /**
+     * 模型新增、修改、删除后失效，处于事务中时在提交后失效
+     */
+    public void invalidate(String id) {
+        TransactionUtils.afterCommit(() -> {
+            views.invalidate(id);
+            loadGuard.invalidate(id);
+        });
+    }
+
+    private void onMessage(Object body) {
+        // 知识库等全局变更也可能涉及模型配置，统一整体失效
+        if (body instanceof ConfigChangeEventDTO event && event.getType() != null && event.getType().isGlobal()) {
+            invalidateAll();
+        }
+    }
+
+    private void invalidateAll() {
+        views.invalidateAll();
+        loadGuard.invalidateAll();
+    }
+}
@@ -0,0 +1,68 @@
+package xiaozhi.modules.model.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import xiaozhi.modules.model.entity.ModelConfigEntity;
+
+/**
+ * 模型配置只读视图
+ * <p>
+ * 配置JSON在加载时解析并深度冻结，多个请求可以共享同一实例；
+ * 需要按智能体覆盖字段时通过{@link #overlay()}获取写时复制的覆盖层，不会修改共享的配置。
+ */
+@Getter
+public final class ModelConfigView {
+    private final String id;
+    private final String modelType;
+    private final String modelName;
+    /**
+     * 只读的模型配置，未配置时为null
+     */
+    private final Map<String, Object> config;
+
+    public ModelConfigView(ModelConfigEntity entity) {
+        this.id = entity.getId();
+        this.modelType = entity.getModelType();
+        this.modelName = entity.getModelName();
+        this.config = entity.getConfigJson() == null ? null : freezeMap(entity.getConfigJson());
+    }
+
+    /**
+     * 读取配置项
+     */
+    public Object get(String key) {
+        return config == null ? null : config.get(key);
+    }
+
+    /**
+     * 创建覆盖层，写入的字段只保存在覆盖层中
+     */
+    public ModelConfigOverlay overlay() {
+        return new ModelConfigOverlay(config == null ? Collections.emptyMap() : config);
+    }
+
+    private static Map<String, Object> freezeMap(Map<?, ?> map) {
+        Map<String, Object> copy = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((key, value) -> copy.put(String.valueOf(key), freeze(value)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static Object freeze(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return freezeMap(map);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(freeze(item));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+}
@@ -30,6 +30,8 @@ import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.SensitiveDataUtils;
 import xiaozhi.modules.agent.dao.AgentDao;
 import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.model.dao.ModelConfigDao;
 import xiaozhi.modules.model.dto.LlmModelBasicInfoDTO;
 import xiaozhi.modules.model.dto.ModelBasicInfoDTO;
@@ -37,6 +39,7 @@ import xiaozhi.modules.model.dto.ModelConfigBodyDTO;
 import xiaozhi.modules.model.dto.ModelConfigDTO;
 import xiaozhi.modules.model.dto.ModelProviderDTO;
 import xiaozhi.modules.model.entity.ModelConfigEntity;
+import xiaozhi.modules.model.registry.ModelConfigRegistry;
 import xiaozhi.modules.model.service.ModelConfigService;
 import xiaozhi.modules.model.service.ModelProviderService;
 
@@ -49,6 +52,8 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
     private final ModelProviderService modelProviderService;
     private final RedisUtils redisUtils;
     private final AgentDao agentDao;
+    private final ConfigVersionRedis configVersionRedis;
+    private final ModelConfigRegistry modelConfigRegistry;
 
     @Override
     public List<ModelBasicInfoDTO> getModelCodeList(String modelType, String modelName) {
@@ -139,6 +144,9 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
 
         modelConfigDao.insert(modelConfigEntity);
 
+        // 清除查询过该ID时留下的空缓存
+        clearModelCache(modelConfigEntity.getId());
+
         return buildResponseDTO(modelConfigEntity);
     }
 
@@ -438,6 +446,8 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
     private void clearModelCache(String id) {
         redisUtils.delete(RedisKeys.getModelConfigById(id));
         redisUtils.delete(RedisKeys.getModelNameById(id));
+        modelConfigRegistry.invalidate(id);
+        configVersionRedis.bumpGlobal(ConfigChangeType.MODEL_CONFIG);
     }
 
     /**
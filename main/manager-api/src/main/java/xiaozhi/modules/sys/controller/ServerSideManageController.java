@@ -32,6 +32,7 @@ import xiaozhi.modules.sys.enums.ServerActionEnum;
 import xiaozhi.modules.sys.service.SysParamsService;
 import xiaozhi.modules.sys.utils.WebSocketClientManager;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.common.redis.NearCache;
 import xiaozhi.common.redis.RedisUtils;
 
 /**
@@ -45,6 +46,7 @@ public class ServerSideManageController {
     private final SysParamsService sysParamsService;
     private final DeviceService deviceService;
     private final RedisUtils redisUtils;
+    private final NearCache nearCache;
     private static final ObjectMapper objectMapper;
     static {
         objectMapper = new ObjectMapper();
@@ -63,6 +65,13 @@ public class ServerSideManageController {
         return new Result<List<String>>().ok(Arrays.asList(wsText.split(";")));
     }
 
+    @Operation(summary = "获取本地近端缓存命中统计")
+    @GetMapping("/near-cache-stats")
+    @RequiresPermissions("sys:role:superAdmin")
+    public Result<Map<String, Object>> getNearCacheStats() {
+        return new Result<Map<String, Object>>().ok(nearCache.stats());
+    }
+
     @Operation(summary = "通知python服务端更新配置")
     @PostMapping("/emit-action")
     @LogOperation("通知python服务端更新配置")
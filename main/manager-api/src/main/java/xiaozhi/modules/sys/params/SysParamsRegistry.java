@@ -0,0 +1,91 @@
+package xiaozhi.modules.sys.params;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.redis.CacheLoadGuard;
+import xiaozhi.common.redis.LocalCacheInvalidator;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.config.dto.ConfigChangeEventDTO;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
+import xiaozhi.modules.sys.dao.SysParamsDao;
+
+/**
+ * 系统参数注册表
+ * <p>
+ * 持有当前的系统参数快照，读取时不访问Redis和数据库。
+ * 本节点修改参数后在事务提交时失效，其他节点通过配置变更频道收到参数变更事件或读到更新的全局版本号时失效，
+ * 下次读取时从数据库重新加载并整体替换。另设最长存活时间，防止错过变更事件后长期使用旧值。
+ */
+@Component
+@RequiredArgsConstructor
+public class SysParamsRegistry {
+    /**
+     * 快照最长存活时间
+     */
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String SNAPSHOT = "snapshot";
+
+    private final SysParamsDao sysParamsDao;
+    private final ConfigVersionRedis configVersionRedis;
+    private final LocalCacheInvalidator localCacheInvalidator;
+
+    private volatile SysParamsSnapshot snapshot;
+    private volatile long loadedAt;
+    private final CacheLoadGuard<String> loadGuard = new CacheLoadGuard<>();
+
+    @PostConstruct
+    public void subscribe() {
+        localCacheInvalidator.subscribe(this::onMessage, ConfigVersionRedis.CHANGE_CHANNEL);
+        configVersionRedis.onGlobalChange(this::invalidateNow);
+    }
+
+    /**
+     * 获取当前参数快照
+     */
+    public SysParamsSnapshot get() {
+        SysParamsSnapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - loadedAt < MAX_AGE_MILLIS) {
+            return current;
+        }
+        return reload();
+    }
+
+    /**
+     * 参数变更后失效，处于事务中时在提交后失效
+     */
+    public void invalidate() {
+        TransactionUtils.afterCommit(this::invalidateNow);
+    }
+
+    private void onMessage(Object body) {
+        if (body instanceof ConfigChangeEventDTO event && event.getType() == ConfigChangeType.SYS_PARAMS) {
+            invalidateNow();
+        }
+    }
+
+    private void invalidateNow() {
+        snapshot = null;
+        loadGuard.invalidate(SNAPSHOT);
+    }
+
+    private synchronized SysParamsSnapshot reload() {
+        SysParamsSnapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - loadedAt < MAX_AGE_MILLIS) {
+            return current;
+        }
+        Object ticket = loadGuard.begin(SNAPSHOT);
+        long now = System.currentTimeMillis();
+        SysParamsSnapshot loaded = new SysParamsSnapshot(sysParamsDao.selectList(null));
+        loadedAt = now;
+        snapshot = loaded;
+        if (!loadGuard.confirm(SNAPSHOT, ticket)) {
+            snapshot = null;
+        }
+        return loaded;
+    }
+}
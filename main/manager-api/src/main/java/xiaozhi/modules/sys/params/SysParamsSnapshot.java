@@ -0,0 +1,213 @@
+package xiaozhi.modules.sys.params;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.modules.sys.entity.SysParamsEntity;
+
+/**
+ * 系统参数快照
+ * <p>
+ * 一次性加载全部参数并按值类型预先转换，构建后不再修改；
+ * 同时预先生成下发给xiaozhi-server的嵌套配置树，避免每次请求重复拆分参数编码和解析值。
+ */
+public final class SysParamsSnapshot {
+    /**
+     * 参数编码 -> 原始值
+     */
+    private final Map<String, String> values;
+    /**
+     * 参数编码 -> 按值类型转换后的值
+     */
+    private final Map<String, Object> typedValues;
+    /**
+     * 非系统参数组成的嵌套配置树
+     */
+    private final Map<String, Object> configTree;
+
+    public SysParamsSnapshot(List<SysParamsEntity> params) {
+        Map<String, String> values = new HashMap<>(params.size() * 2);
+        Map<String, Object> typedValues = new HashMap<>(params.size() * 2);
+        Map<String, Object> configTree = new HashMap<>();
+        for (SysParamsEntity param : params) {
+            String code = param.getParamCode();
+            if (code == null) {
+                continue;
+            }
+            Object typed = convert(param.getParamValue(), param.getValueType());
+            values.put(code, param.getParamValue());
+            if (typed != null) {
+                typedValues.put(code, typed);
+            }
+            // 只有非系统参数下发给xiaozhi-server
+            if (Integer.valueOf(1).equals(param.getParamType())) {
+                putNested(configTree, code, typed);
+            }
+        }
+        this.values = Collections.unmodifiableMap(values);
+        this.typedValues = Collections.unmodifiableMap(typedValues);
+        this.configTree = Collections.unmodifiableMap(configTree);
+    }
+
+    /**
+     * 获取参数原始值
+     */
+    public String getString(String paramCode) {
+        return values.get(paramCode);
+    }
+
+    /**
+     * 获取数字参数，未配置或不是数字时返回默认值
+     */
+    public Number getNumber(String paramCode, Number defaultValue) {
+        Object value = typedValues.get(paramCode);
+        if (value instanceof Number number) {
+            return number;
+        }
+        String str = values.get(paramCode);
+        if (StringUtils.isNotBlank(str)) {
+            try {
+                return Double.parseDouble(str.trim());
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+
+    public int getInt(String paramCode, int defaultValue) {
+        return getNumber(paramCode, defaultValue).intValue();
+    }
+
+    public double getDouble(String paramCode, double defaultValue) {
+        return getNumber(paramCode, defaultValue).doubleValue();
+    }
+
+    /**
+     * 获取布尔参数，未配置时返回默认值
+     */
+    public boolean getBoolean(String paramCode, boolean defaultValue) {
+        String str = values.get(paramCode);
+        if (StringUtils.isBlank(str)) {
+            return defaultValue;
+        }
+        return "true".equalsIgnoreCase(str.trim());
+    }
+
+    /**
+     * 获取数组参数（分号分隔），未配置时返回空列表
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getArray(String paramCode) {
+        Object value = typedValues.get(paramCode);
+        if (value instanceof List<?> list) {
+            return Collections.unmodifiableList((List<String>) list);
+        }
+        return splitArray(values.get(paramCode));
+    }
+
+    /**
+     * 获取JSON参数并转换为指定类型，每次返回新对象
+     */
+    public <T> T getJson(String paramCode, Class<T> clazz) {
+        return JsonUtils.parseObject(values.get(paramCode), clazz);
+    }
+
+    /**
+     * 获取配置树的副本，调用方可以自由修改
+     */
+    public Map<String, Object> copyConfigTree() {
+        return deepCopyMap(configTree);
+    }
+
+    /**
+     * 根据valueType转换值，转换失败时保留原始字符串
+     */
+    static Object convert(String value, String valueType) {
+        if (value == null || valueType == null) {
+            return value;
+        }
+        switch (valueType.toLowerCase()) {
+            case "number":
+                try {
+                    double doubleValue = Double.parseDouble(value);
+                    // 如果数值是整数形式，则转换为Integer
+                    if (doubleValue == (int) doubleValue) {
+                        return (int) doubleValue;
+                    }
+                    return doubleValue;
+                } catch (NumberFormatException e) {
+                    return value;
+                }
+            case "boolean":
+                return Boolean.parseBoolean(value);
+            case "array":
+                return splitArray(value);
+            case "json":
+                try {
+                    return JsonUtils.parseObject(value, Object.class);
+                } catch (Exception e) {
+                    return value;
+                }
+            default:
+                return value;
+        }
+    }
+
+    private static List<String> splitArray(String value) {
+        List<String> list = new ArrayList<>();
+        if (value == null) {
+            return list;
+        }
+        for (String item : value.split(";")) {
+            if (StringUtils.isNotBlank(item)) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putNested(Map<String, Object> tree, String paramCode, Object value) {
+        String[] keys = paramCode.split("\\.");
+        Map<String, Object> current = tree;
+        // 遍历除最后一个key之外的所有key
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object child = current.get(keys[i]);
+            if (!(child instanceof Map)) {
+                child = new HashMap<String, Object>();
+                current.put(keys[i], child);
+            }
+            current = (Map<String, Object>) child;
+        }
+        current.put(keys[keys.length - 1], value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object deepCopy(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return deepCopyMap((Map<String, Object>) map);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(deepCopy(item));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private static Map<String, Object> deepCopyMap(Map<String, Object> map) {
+        Map<String, Object> copy = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((key, value) -> copy.put(key, deepCopy(value)));
+        return copy;
+    }
+}
@@ -1,6 +1,8 @@
 package xiaozhi.modules.sys.service;
 
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -16,4 +18,11 @@ public interface SysUserUtilService {
      * @param setter 赋值方法
      */
     void assignUsername( Long userId, Consumer<String> setter);
+
+    /**
+     * 批量获取用户名，一次Redis批量读取，未命中的用户一次查询数据库
+     * @param userIds 用户id
+     * @return 用户id -> 用户名，不存在的用户不包含在内
+     */
+    Map<Long, String> getUsernames(Collection<Long> userIds);
 }
@@ -22,10 +22,12 @@ import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.common.utils.SM2Utils;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.sys.dao.SysParamsDao;
 import xiaozhi.modules.sys.dto.SysParamsDTO;
 import xiaozhi.modules.sys.entity.SysParamsEntity;
-import xiaozhi.modules.sys.redis.SysParamsRedis;
+import xiaozhi.modules.sys.params.SysParamsRegistry;
 import xiaozhi.modules.sys.service.SysParamsService;
 
 /**
@@ -34,7 +36,8 @@ import xiaozhi.modules.sys.service.SysParamsService;
 @AllArgsConstructor
 @Service
 public class SysParamsServiceImpl extends BaseServiceImpl<SysParamsDao, SysParamsEntity> implements SysParamsService {
-    private final SysParamsRedis sysParamsRedis;
+    private final SysParamsRegistry sysParamsRegistry;
+    private final ConfigVersionRedis configVersionRedis;
 
     @Override
     public PageData<SysParamsDTO> page(Map<String, Object> params) {
@@ -79,7 +82,8 @@ public class SysParamsServiceImpl extends BaseServiceImpl<SysParamsDao, SysParam
         SysParamsEntity entity = ConvertUtils.sourceToTarget(dto, SysParamsEntity.class);
         insert(entity);
 
-        sysParamsRedis.set(entity.getParamCode(), entity.getParamValue());
+        sysParamsRegistry.invalidate();
+        configVersionRedis.bumpGlobal(ConfigChangeType.SYS_PARAMS);
     }
 
     @Override
@@ -90,7 +94,8 @@ public class SysParamsServiceImpl extends BaseServiceImpl<SysParamsDao, SysParam
         SysParamsEntity entity = ConvertUtils.sourceToTarget(dto, SysParamsEntity.class);
         updateById(entity);
 
-        sysParamsRedis.set(entity.getParamCode(), entity.getParamValue());
+        sysParamsRegistry.invalidate();
+        configVersionRedis.bumpGlobal(ConfigChangeType.SYS_PARAMS);
     }
 
     /**
@@ -150,31 +155,19 @@ public class SysParamsServiceImpl extends BaseServiceImpl<SysParamsDao, SysParam
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void delete(String[] ids) {
-        // 删除Redis数据
-        List<String> paramCodeList = baseDao.getParamCodeList(ids);
-        String[] paramCodes = paramCodeList.toArray(new String[paramCodeList.size()]);
-        if (paramCodes.length > 0) {
-            sysParamsRedis.delete(paramCodes);
-        }
-
         // 删除
         deleteBatchIds(Arrays.asList(ids));
+        sysParamsRegistry.invalidate();
+        configVersionRedis.bumpGlobal(ConfigChangeType.SYS_PARAMS);
     }
 
     @Override
     public String getValue(String paramCode, Boolean fromCache) {
-        String paramValue = null;
         if (fromCache) {
-            paramValue = sysParamsRedis.get(paramCode);
-            if (paramValue == null) {
-                paramValue = baseDao.getValueByCode(paramCode);
-
-                sysParamsRedis.set(paramCode, paramValue);
-            }
-        } else {
-            paramValue = baseDao.getValueByCode(paramCode);
+            // 从本地参数快照读取，不访问Redis
+            return sysParamsRegistry.get().getString(paramCode);
         }
-        return paramValue;
+        return baseDao.getValueByCode(paramCode);
     }
 
     @Override
@@ -195,7 +188,8 @@ public class SysParamsServiceImpl extends BaseServiceImpl<SysParamsDao, SysParam
     @Transactional(rollbackFor = Exception.class)
     public int updateValueByCode(String paramCode, String paramValue) {
         int count = baseDao.updateValueByCode(paramCode, paramValue);
-        sysParamsRedis.set(paramCode, paramValue);
+        sysParamsRegistry.invalidate();
+        configVersionRedis.bumpGlobal(ConfigChangeType.SYS_PARAMS);
         return count;
     }
 
@@ -165,13 +165,15 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
                 getPage(params, "id", true),
                 new QueryWrapper<SysUserEntity>().like(StringUtils.isNotBlank(dto.getMobile()), "username",
                         dto.getMobile()));
+        // 一次分组查询本页所有用户的设备数量
+        Map<Long, Long> deviceCounts = deviceService.selectCountByUserIds(
+                page.getRecords().stream().map(SysUserEntity::getId).toList());
         // 循环处理page获取回来的数据，返回需要的字段
         List<AdminPageUserVO> list = page.getRecords().stream().map(user -> {
             AdminPageUserVO adminPageUserVO = new AdminPageUserVO();
             adminPageUserVO.setUserid(user.getId().toString());
             adminPageUserVO.setMobile(user.getUsername());
-            String deviceCount = deviceService.selectCountByUserId(user.getId()).toString();
-            adminPageUserVO.setDeviceCount(deviceCount);
+            adminPageUserVO.setDeviceCount(String.valueOf(deviceCounts.getOrDefault(user.getId(), 0L)));
             adminPageUserVO.setStatus(user.getStatus());
             adminPageUserVO.setCreateDate(user.getCreateDate());
             return adminPageUserVO;
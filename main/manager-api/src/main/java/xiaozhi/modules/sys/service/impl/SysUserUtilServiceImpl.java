@@ -1,5 +1,6 @@
 package xiaozhi.modules.sys.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import xiaozhi.common.redis.RedisKeys;
@@ -9,6 +10,13 @@ import xiaozhi.modules.sys.dao.SysUserDao;
 import xiaozhi.modules.sys.entity.SysUserEntity;
 import xiaozhi.modules.sys.service.SysUserUtilService;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 @Service
@@ -34,4 +42,36 @@ public class SysUserUtilServiceImpl extends BaseServiceImpl<SysUserDao, SysUserE
             }
         }
     }
+
+    @Override
+    public Map<Long, String> getUsernames(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        ids.removeIf(Objects::isNull);
+        Map<Long, String> usernames = new HashMap<>(ids.size() * 2);
+        if (ids.isEmpty()) {
+            return usernames;
+        }
+
+        List<Object> values = redisUtils.mGet(ids.stream().map(RedisKeys::getUserIdKey).toList());
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            if (value != null) {
+                usernames.put(ids.get(i), value.toString());
+            } else {
+                missing.add(ids.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, Object> toCache = new HashMap<>(missing.size() * 2);
+            for (SysUserEntity entity : baseDao.selectList(new QueryWrapper<SysUserEntity>()
+                    .select("id", "username").in("id", missing))) {
+                usernames.put(entity.getId(), entity.getUsername());
+                toCache.put(RedisKeys.getUserIdKey(entity.getId()), entity.getUsername());
+            }
+            redisUtils.mSet(toCache, 10);
+        }
+        return usernames;
+    }
 }
@@ -20,6 +20,8 @@ import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.model.dto.VoiceDTO;
 import xiaozhi.modules.security.user.SecurityUser;
 import xiaozhi.modules.timbre.dao.TimbreDao;
@@ -44,6 +46,7 @@ public class TimbreServiceImpl extends BaseServiceImpl<TimbreDao, TimbreEntity>
     private final TimbreDao timbreDao;
     private final VoiceCloneDao voiceCloneDao;
     private final RedisUtils redisUtils;
+    private final ConfigVersionRedis configVersionRedis;
 
     @Override
     public PageData<TimbreDetailsVO> page(TimbrePageDTO dto) {
@@ -109,12 +112,17 @@ public class TimbreServiceImpl extends BaseServiceImpl<TimbreDao, TimbreEntity>
         baseDao.updateById(timbreEntity);
         // 删除缓存
         redisUtils.delete(RedisKeys.getTimbreDetailsKey(timbreId));
+        configVersionRedis.bumpGlobal(ConfigChangeType.TIMBRE);
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void delete(String[] ids) {
         baseDao.deleteBatchIds(Arrays.asList(ids));
+        for (String id : ids) {
+            redisUtils.delete(RedisKeys.getTimbreDetailsKey(id));
+        }
+        configVersionRedis.bumpGlobal(ConfigChangeType.TIMBRE);
     }
 
     @Override
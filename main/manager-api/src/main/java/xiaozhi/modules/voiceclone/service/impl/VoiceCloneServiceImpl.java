@@ -27,6 +27,8 @@ import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.DateUtils;
 import xiaozhi.common.utils.ToolUtil;
+import xiaozhi.modules.config.enums.ConfigChangeType;
+import xiaozhi.modules.config.redis.ConfigVersionRedis;
 import xiaozhi.modules.model.entity.ModelConfigEntity;
 import xiaozhi.modules.model.service.ModelConfigService;
 import xiaozhi.modules.sys.dao.SysUserDao;
@@ -48,6 +50,7 @@ public class VoiceCloneServiceImpl extends BaseServiceImpl<VoiceCloneDao, VoiceC
     private final SysUserService sysUserService;
     private final SysUserDao sysUserDao;
     private final ObjectMapper objectMapper;
+    private final ConfigVersionRedis configVersionRedis;
 
     @Override
     public PageData<VoiceCloneEntity> page(Map<String, Object> params) {
@@ -127,6 +130,7 @@ public class VoiceCloneServiceImpl extends BaseServiceImpl<VoiceCloneDao, VoiceC
     @Override
     public void delete(String[] ids) {
         baseDao.deleteBatchIds(Arrays.asList(ids));
+        configVersionRedis.bumpGlobal(ConfigChangeType.VOICE_CLONE);
     }
 
     @Override
@@ -371,6 +375,7 @@ public class VoiceCloneServiceImpl extends BaseServiceImpl<VoiceCloneDao, VoiceC
                 entity.setVoiceId(speakerId);
                 entity.setTrainError("");
                 baseDao.updateById(entity);
+                configVersionRedis.bumpGlobal(ConfigChangeType.VOICE_CLONE);
             } else {
                 // 失败时使用StatusMessage作为错误信息
                 String errorMsg = StringUtils.isNotBlank(statusMessage) ? statusMessage : "训练失败";
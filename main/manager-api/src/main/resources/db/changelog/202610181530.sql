@@ -0,0 +1,5 @@
+-- 聊天音频改为按内容哈希保存在文件存储中，表中只保留引用
+ALTER TABLE ai_agent_chat_audio
+    ADD COLUMN content_hash VARCHAR(64) NULL COMMENT '音频内容SHA-256，文件存储的键' AFTER audio,
+    ADD COLUMN audio_size INT NULL COMMENT '音频大小(字节)' AFTER content_hash,
+    ADD INDEX idx_ai_agent_chat_audio_content_hash (content_hash);
@@ -0,0 +1,15 @@
+-- 聊天会话汇总表，写入聊天记录时增量维护，会话列表按最后聊天时间倒序分页查询
+DROP TABLE IF EXISTS ai_agent_chat_session;
+CREATE TABLE ai_agent_chat_session
+(
+    id            BIGINT AUTO_INCREMENT COMMENT '主键ID' PRIMARY KEY,
+    agent_id      VARCHAR(32) NOT NULL COMMENT '智能体id',
+    session_id    VARCHAR(50) NOT NULL COMMENT '会话ID',
+    first_chat_at DATETIME(3) NOT NULL COMMENT '第一条消息时间',
+    last_chat_at  DATETIME(3) NOT NULL COMMENT '最后一条消息时间',
+    chat_count    INT NOT NULL DEFAULT 0 COMMENT '消息条数',
+    title         VARCHAR(100) NULL COMMENT '会话标题，取第一条用户消息的开头',
+    updated_at    DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) NOT NULL ON UPDATE CURRENT_TIMESTAMP(3) COMMENT '更新时间',
+    UNIQUE INDEX uk_ai_agent_chat_session_agent_session (agent_id, session_id),
+    INDEX idx_ai_agent_chat_session_agent_last (agent_id, last_chat_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT '智能体聊天会话汇总表';
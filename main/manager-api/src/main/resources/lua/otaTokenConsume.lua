@@ -0,0 +1,13 @@
+-- 使用固件下载令牌：KEYS[1] 令牌key。每次请求（包括断点续传）计入一次下载次数
+-- 令牌有效时返回下载目标，不存在或次数超限时返回nil，超限的令牌同时删除
+local target = redis.call('HGET', KEYS[1], 'target')
+if not target then
+    return nil
+end
+local limit = tonumber(redis.call('HGET', KEYS[1], 'limit')) or 0
+local count = redis.call('HINCRBY', KEYS[1], 'count', 1)
+if limit > 0 and count > limit then
+    redis.call('DEL', KEYS[1])
+    return nil
+end
+return target
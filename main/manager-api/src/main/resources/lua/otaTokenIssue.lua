@@ -0,0 +1,7 @@
+-- 签发固件下载令牌：KEYS[1] 令牌key，ARGV[1] 下载目标，ARGV[2] 下载次数上限（0为不限），ARGV[3] 有效期（秒）
+redis.call('HSET', KEYS[1], 'target', ARGV[1], 'limit', ARGV[2], 'count', 0)
+local expireTime = tonumber(ARGV[3])
+if expireTime and expireTime > 0 then
+    redis.call('EXPIRE', KEYS[1], expireTime)
+end
+return 1
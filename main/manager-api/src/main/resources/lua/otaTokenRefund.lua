@@ -0,0 +1,5 @@
+-- 退还一次固件下载次数：KEYS[1] 令牌key。条件请求返回304时没有下载文件，令牌已删除时不处理
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+return redis.call('HINCRBY', KEYS[1], 'count', -1)
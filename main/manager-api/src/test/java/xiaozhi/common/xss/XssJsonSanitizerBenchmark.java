@@ -0,0 +1,87 @@
+package xiaozhi.common.xss;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Safelist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JSON请求体XSS过滤基准测试
+ * <p>
+ * 以带base64音频的聊天上报为请求体，对比改动前整体交给jsoup过滤的方式与逐个过滤字符串值的方式。
+ * 聊天内容中带有换行（JSON转义符），请求体不能走整体跳过的路径。直接运行main方法，关注结果中的平均耗时和gc.alloc.rate.norm。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XssJsonSanitizerBenchmark {
+    /**
+     * 音频大小，单位：字节
+     */
+    @Param({ "16384", "262144", "1048576" })
+    private int audioBytes;
+
+    private byte[] body;
+    private Safelist safelist;
+
+    @Setup
+    public void setup() {
+        byte[] audio = new byte[audioBytes];
+        new Random(42).nextBytes(audio);
+        String json = "{\"macAddress\":\"aa:bb:cc:dd:ee:ff\",\"sessionId\":\"79578c31-f1fb-426a-900e-1e934215f05a\","
+                + "\"chatType\":2,\"content\":\"好的，我来帮你查一下。\\n今天天气晴，最高气温25度。\","
+                + "\"reportTime\":1745657732,\"audioBase64\":\"" + Base64.getEncoder().encodeToString(audio) + "\"}";
+        body = json.getBytes(StandardCharsets.UTF_8);
+        safelist = XssUtils.whitelist();
+    }
+
+    /**
+     * 改动前的方式：整个请求体转为字符串后按XssUtils的白名单交给jsoup
+     */
+    @Benchmark
+    public byte[] wholeBody() {
+        return Jsoup.clean(new String(body, StandardCharsets.UTF_8), safelist).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] perValue() throws IOException {
+        return XssJsonSanitizer.sanitize(body, Set.of());
+    }
+
+    @Benchmark
+    public byte[] perValueWithRawField() throws IOException {
+        return XssJsonSanitizer.sanitize(body, Set.of("audioBase64"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(XssJsonSanitizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,57 @@
+package xiaozhi.common.xss;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JSON请求体XSS过滤测试")
+public class XssJsonSanitizerTest {
+
+    @Test
+    @DisplayName("不含标签和转义符的请求体原样返回")
+    public void testPlainBodyUnchanged() throws IOException {
+        byte[] json = bytes("{\"content\":\"你好 > 世界\",\"chatType\":1,\"reportTime\":1745657732}");
+        Assertions.assertSame(json, XssJsonSanitizer.sanitize(json, Set.of()));
+    }
+
+    @Test
+    @DisplayName("过滤字符串值中的标签，保留换行和数字精度")
+    public void testFilterStringValues() throws IOException {
+        byte[] json = bytes("{\"content\":\"第一行\\n<script>alert(1)</script><b>第二行</b>\","
+                + "\"price\":0.10000000000000000555,\"list\":[\"a&b\",\"plain\"]}");
+        String result = string(XssJsonSanitizer.sanitize(json, Set.of()));
+        Assertions.assertEquals("{\"content\":\"第一行\\n<b>第二行</b>\","
+                + "\"price\":0.10000000000000000555,\"list\":[\"a&amp;b\",\"plain\"]}", result);
+    }
+
+    @Test
+    @DisplayName("转义形式的标签同样被过滤")
+    public void testFilterEscapedTags() throws IOException {
+        byte[] json = bytes("{\"content\":\"\\u003cscript\\u003ealert(1)\\u003c/script\\u003e\"}");
+        Assertions.assertEquals("{\"content\":\"\"}", string(XssJsonSanitizer.sanitize(json, Set.of())));
+    }
+
+    @Test
+    @DisplayName("原样保留的字段及其下级内容不过滤")
+    public void testRawFields() throws IOException {
+        byte[] json = bytes("{\"systemPrompt\":\"<role>助手</role>\","
+                + "\"configJson\":{\"url\":\"http://a?x=1&y=2\",\"tags\":[\"<i>\"]},"
+                + "\"content\":\"<i>x</i>&\"}");
+        String result = string(XssJsonSanitizer.sanitize(json, Set.of("systemPrompt", "configJson")));
+        Assertions.assertEquals("{\"systemPrompt\":\"<role>助手</role>\","
+                + "\"configJson\":{\"url\":\"http://a?x=1&y=2\",\"tags\":[\"<i>\"]},"
+                + "\"content\":\"<i>x</i>&amp;\"}", result);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,289 @@
+package xiaozhi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 设备集群压测工具
+ * <p>
+ * 模拟N台ESP32设备循环执行：/ota 检查更新、/ota/activate 检查激活、/config/agent-models 拉取模型配置、
+ * /agent/chat-history/report 上报带音频的聊天记录，输出各接口的吞吐量、延迟分位数和每个请求执行的SQL次数。
+ * <p>
+ * 只访问本机启动的manager-api（默认 http://127.0.0.1:8002/xiaozhi），数据库和Redis使用本地实例
+ * （如xiaozhi-server目录下docker-compose中的MySQL、Redis），不访问外部网络。
+ * SQL次数来自Druid的URI统计，需要以 --spring.profiles.active=dev,loadtest 启动manager-api。
+ * <p>
+ * 参数均为 --名称=值 的形式：
+ * <ul>
+ * <li>base-url：manager-api地址</li>
+ * <li>devices：模拟设备数，默认100</li>
+ * <li>duration：压测时长，单位秒，默认60</li>
+ * <li>think-millis：每台设备两轮请求之间的平均间隔，默认1000</li>
+ * <li>audio-bytes：每次上报的音频大小，默认16000</li>
+ * <li>server-secret：参数server.secret，为空时跳过需要服务端密钥的接口</li>
+ * <li>user-token、agent-id：用户登录令牌和智能体ID，同时提供时压测前先把模拟设备绑定到该智能体</li>
+ * </ul>
+ */
+public class DeviceFleetSimulator {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String BOARD = "loadtest-board";
+
+    private final String baseUrl;
+    private final int devices;
+    private final int durationSeconds;
+    private final int thinkMillis;
+    private final String serverSecret;
+    private final String userToken;
+    private final String agentId;
+    private final String audioBase64;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    public DeviceFleetSimulator(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("base-url", "http://127.0.0.1:8002/xiaozhi");
+        this.devices = Integer.parseInt(options.getOrDefault("devices", "100"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        this.thinkMillis = Integer.parseInt(options.getOrDefault("think-millis", "1000"));
+        this.serverSecret = options.get("server-secret");
+        this.userToken = options.get("user-token");
+        this.agentId = options.get("agent-id");
+        byte[] audio = new byte[Integer.parseInt(options.getOrDefault("audio-bytes", "16000"))];
+        ThreadLocalRandom.current().nextBytes(audio);
+        this.audioBase64 = Base64.getEncoder().encodeToString(audio);
+        for (String operation : List.of("ota", "activate", "agent-models", "report")) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new DeviceFleetSimulator(options).run();
+    }
+
+    public void run() throws Exception {
+        if (userToken != null && agentId != null) {
+            bindDevices();
+        }
+        Map<String, long[]> jdbcBefore = fetchUriStats();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < devices; i++) {
+                String macAddress = macAddressOf(i);
+                executor.execute(() -> simulate(macAddress, deadline));
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, long[]> jdbcAfter = fetchUriStats();
+        printReport(elapsedSeconds, jdbcBefore, jdbcAfter);
+    }
+
+    /**
+     * 单台设备的请求循环，首轮前随机等待，避免所有设备同时发起请求
+     */
+    private void simulate(String macAddress, long deadline) {
+        String clientId = UUID.randomUUID().toString();
+        sleep(ThreadLocalRandom.current().nextInt(Math.max(1, thinkMillis)));
+        while (System.nanoTime() < deadline) {
+            checkOta(macAddress, clientId);
+            timed("activate", () -> post("/ota/activate", deviceHeaders(macAddress, clientId), "{}"));
+            if (serverSecret != null) {
+                timed("agent-models", () -> post("/config/agent-models", secretHeaders(), json(Map.of(
+                        "macAddress", macAddress,
+                        "clientId", clientId,
+                        "selectedModule", Map.of()))));
+                timed("report", () -> post("/agent/chat-history/report", secretHeaders(), json(Map.of(
+                        "macAddress", macAddress,
+                        "sessionId", clientId,
+                        "chatType", 1,
+                        "content", "压测消息",
+                        "audioBase64", audioBase64,
+                        "reportTime", System.currentTimeMillis() / 1000))));
+            }
+            sleep(thinkMillis / 2 + ThreadLocalRandom.current().nextInt(Math.max(1, thinkMillis)));
+        }
+    }
+
+    private void checkOta(String macAddress, String clientId) {
+        Map<String, Object> report = Map.of(
+                "mac_address", macAddress,
+                "application", Map.of("version", "1.0.0"),
+                "board", Map.of("type", BOARD));
+        timed("ota", () -> post("/ota/", deviceHeaders(macAddress, clientId), json(report)));
+    }
+
+    private void bindDevices() {
+        int bound = 0;
+        for (int i = 0; i < devices; i++) {
+            HttpResponse<String> response = post("/device/manual-add", Map.of("Authorization", "Bearer " + userToken),
+                    json(Map.of("agentId", agentId, "board", BOARD, "appVersion", "1.0.0",
+                            "macAddress", macAddressOf(i))));
+            if (response != null && isSuccess(response)) {
+                bound++;
+            }
+        }
+        System.out.printf("绑定模拟设备 %d/%d 台（已绑定的设备会绑定失败，可忽略）%n", bound, devices);
+    }
+
+    private void timed(String operation, RequestCall call) {
+        long start = System.nanoTime();
+        HttpResponse<String> response = call.execute();
+        histograms.get(operation).record(System.nanoTime() - start, response != null && isSuccess(response));
+    }
+
+    private HttpResponse<String> post(String path, Map<String, String> headers, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        headers.forEach(builder::header);
+        try {
+            return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 2xx、304视为成功，返回统一响应格式时还要求code为0
+     */
+    private static boolean isSuccess(HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 304) {
+            return true;
+        }
+        if (status < 200 || status >= 300) {
+            return false;
+        }
+        String body = response.body();
+        if (body == null || !body.startsWith("{\"code\"")) {
+            return true;
+        }
+        return body.startsWith("{\"code\":0");
+    }
+
+    /**
+     * 读取Druid的URI统计：URI -> [请求数, SQL执行次数]，未开启loadtest配置时返回空
+     */
+    private Map<String, long[]> fetchUriStats() {
+        Map<String, long[]> stats = new HashMap<>();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/druid/weburi.json"))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return stats;
+            }
+            JsonNode content = MAPPER.readTree(response.body()).path("Content");
+            for (JsonNode uri : content) {
+                stats.put(uri.path("URI").asText(), new long[] { uri.path("RequestCount").asLong(),
+                        uri.path("JdbcExecuteCount").asLong() });
+            }
+        } catch (Exception e) {
+            // 统计接口不可用时只输出延迟
+        }
+        return stats;
+    }
+
+    private void printReport(double elapsedSeconds, Map<String, long[]> jdbcBefore, Map<String, long[]> jdbcAfter) {
+        System.out.printf("%n设备数 %d，时长 %.1f 秒%n", devices, elapsedSeconds);
+        System.out.printf("%-14s %9s %7s %9s %9s %9s %9s %9s %9s %9s%n", "接口", "请求数", "失败", "QPS",
+                "mean(ms)", "p50", "p90", "p99", "p999", "max");
+        histograms.forEach((operation, histogram) -> {
+            if (histogram.getCount() == 0) {
+                return;
+            }
+            System.out.printf("%-14s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation,
+                    histogram.getCount(), histogram.getErrors(), histogram.getCount() / elapsedSeconds,
+                    histogram.getMeanMillis(), histogram.getPercentileMillis(0.5),
+                    histogram.getPercentileMillis(0.9), histogram.getPercentileMillis(0.99),
+                    histogram.getPercentileMillis(0.999), histogram.getMaxMillis());
+        });
+
+        if (jdbcAfter.isEmpty()) {
+            System.out.println("\n未获取到Druid统计，如需每个请求的SQL次数，请以dev,loadtest配置启动manager-api");
+            return;
+        }
+        System.out.printf("%n%-40s %9s %9s %12s%n", "URI", "请求数", "SQL次数", "SQL/请求");
+        List<String> uris = new ArrayList<>(jdbcAfter.keySet());
+        uris.sort(null);
+        for (String uri : uris) {
+            long[] after = jdbcAfter.get(uri);
+            long[] before = jdbcBefore.getOrDefault(uri, new long[2]);
+            long requests = after[0] - before[0];
+            long queries = after[1] - before[1];
+            if (requests > 0) {
+                System.out.printf("%-40s %9d %9d %12.2f%n", uri, requests, queries, (double) queries / requests);
+            }
+        }
+    }
+
+    private static Map<String, String> deviceHeaders(String macAddress, String clientId) {
+        return Map.of("Device-Id", macAddress, "Client-Id", clientId);
+    }
+
+    private Map<String, String> secretHeaders() {
+        return Map.of("Authorization", "Bearer " + serverSecret);
+    }
+
+    /**
+     * 模拟设备的MAC地址，使用本地管理地址段，避免与真实设备冲突
+     */
+    private static String macAddressOf(int index) {
+        return String.format("02:00:00:%02x:%02x:%02x", (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+    }
+
+    private static String json(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RequestCall {
+        HttpResponse<String> execute();
+    }
+}
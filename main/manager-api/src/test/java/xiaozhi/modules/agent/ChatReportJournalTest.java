@@ -0,0 +1,100 @@
+package xiaozhi.modules.agent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import xiaozhi.modules.agent.ingest.ChatReportJournal;
+
+@DisplayName("聊天上报日志测试")
+public class ChatReportJournalTest {
+    private static final long SEGMENT_BYTES = 100;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("重启后从检查点重放，丢弃末尾不完整的记录")
+    public void testReplayFromCheckpoint() throws IOException {
+        ChatReportJournal journal = new ChatReportJournal(dir, SEGMENT_BYTES);
+        Assertions.assertTrue(journal.open().isEmpty());
+        List<ChatReportJournal.Position> positions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ChatReportJournal.Position position = journal.append(payload(i));
+            journal.sync(position);
+            positions.add(position);
+        }
+        journal.checkpoint(positions.get(3));
+        journal.close();
+        appendToLastSegment(new byte[] { 0, 0, 0, 50, 1, 2 });
+
+        ChatReportJournal reopened = new ChatReportJournal(dir, SEGMENT_BYTES);
+        List<ChatReportJournal.Record> records = reopened.open();
+        Assertions.assertEquals(6, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Assertions.assertArrayEquals(payload(i + 4), records.get(i).payload());
+        }
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("检查点之后追加的记录在重启后重放")
+    public void testReplayAfterCheckpointAtEnd() throws IOException {
+        ChatReportJournal journal = new ChatReportJournal(dir, SEGMENT_BYTES);
+        journal.open();
+        ChatReportJournal.Position written = journal.append(payload(0));
+        journal.checkpoint(written);
+        ChatReportJournal.Position pending = journal.append(payload(1));
+        journal.sync(pending);
+        journal.close();
+
+        ChatReportJournal reopened = new ChatReportJournal(dir, SEGMENT_BYTES);
+        List<ChatReportJournal.Record> records = reopened.open();
+        Assertions.assertEquals(1, records.size());
+        Assertions.assertArrayEquals(payload(1), records.get(0).payload());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("检查点损坏时从最早的日志文件开始重放")
+    public void testReplayFromStartWhenCheckpointCorrupt() throws IOException {
+        ChatReportJournal journal = new ChatReportJournal(dir, SEGMENT_BYTES);
+        journal.open();
+        ChatReportJournal.Position written = journal.append(payload(0));
+        journal.sync(journal.append(payload(1)));
+        journal.checkpoint(written);
+        journal.close();
+        Files.writeString(dir.resolve("checkpoint"), "garbage", StandardCharsets.UTF_8);
+
+        ChatReportJournal reopened = new ChatReportJournal(dir, SEGMENT_BYTES);
+        List<ChatReportJournal.Record> records = reopened.open();
+        Assertions.assertEquals(2, records.size());
+        Assertions.assertArrayEquals(payload(0), records.get(0).payload());
+        reopened.close();
+    }
+
+    private void appendToLastSegment(byte[] bytes) throws IOException {
+        Path last;
+        try (Stream<Path> files = Files.list(dir)) {
+            last = files.filter(file -> file.toString().endsWith(".log")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (OutputStream out = Files.newOutputStream(last, StandardOpenOption.APPEND)) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] payload(int index) {
+        return ("{\"content\":\"report-" + index + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,131 @@
+package xiaozhi.modules.agent.service.impl;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.SpringContextUtils;
+import xiaozhi.modules.agent.Enums.AgentChatHistoryType;
+import xiaozhi.modules.agent.dao.AiAgentChatSessionDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentChatSessionEntity;
+
+@DisplayName("聊天会话汇总测试")
+public class AgentChatSessionServiceImplTest {
+    private AiAgentChatSessionDao sessionDao;
+    private AgentChatSessionServiceImpl service;
+
+    @BeforeAll
+    public static void setUpMessages() {
+        // RenException从Spring上下文中读取错误信息
+        if (SpringContextUtils.applicationContext == null) {
+            StaticMessageSource messageSource = new StaticMessageSource();
+            messageSource.setUseCodeAsDefaultMessage(true);
+            ApplicationContext context = mock(ApplicationContext.class);
+            when(context.getBean("messageSource")).thenReturn(messageSource);
+            SpringContextUtils.applicationContext = context;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        sessionDao = mock(AiAgentChatSessionDao.class);
+        service = new AgentChatSessionServiceImpl();
+        ReflectionTestUtils.setField(service, "baseMapper", sessionDao);
+    }
+
+    @Test
+    @DisplayName("按会话汇总时间范围和条数，标题取最早的用户消息")
+    @SuppressWarnings("unchecked")
+    public void testRecordMessagesAggregatesBySession() {
+        List<AgentChatHistoryEntity> messages = new ArrayList<>();
+        messages.add(message("agent1", "s2", AgentChatHistoryType.AGENT, "回复", 3000));
+        messages.add(message("agent1", "s1", AgentChatHistoryType.USER, "第二个问题", 2000));
+        messages.add(message("agent1", "s1", AgentChatHistoryType.AGENT, "回复", 1500));
+        messages.add(message("agent1", "s1", AgentChatHistoryType.USER, "第一个问题", 1000));
+        messages.add(message("agent1", null, AgentChatHistoryType.USER, "没有会话", 1000));
+
+        service.recordMessages(messages);
+
+        ArgumentCaptor<List<AgentChatSessionEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sessionDao).upsertIncrement(captor.capture());
+        List<AgentChatSessionEntity> sessions = captor.getValue();
+        Assertions.assertEquals(2, sessions.size());
+
+        AgentChatSessionEntity s1 = sessions.get(0);
+        Assertions.assertEquals("s1", s1.getSessionId());
+        Assertions.assertEquals(3, s1.getChatCount());
+        Assertions.assertEquals(new Date(1000), s1.getFirstChatAt());
+        Assertions.assertEquals(new Date(2000), s1.getLastChatAt());
+        Assertions.assertEquals("第一个问题", s1.getTitle());
+
+        AgentChatSessionEntity s2 = sessions.get(1);
+        Assertions.assertEquals("s2", s2.getSessionId());
+        Assertions.assertEquals(1, s2.getChatCount());
+        Assertions.assertNull(s2.getTitle());
+    }
+
+    @Test
+    @DisplayName("没有会话ID的聊天记录不写入汇总")
+    public void testRecordMessagesWithoutSession() {
+        service.recordMessages(List.of(message("agent1", null, AgentChatHistoryType.USER, "你好", 1000)));
+        verify(sessionDao, never()).upsertIncrement(anyList());
+    }
+
+    @Test
+    @DisplayName("标题取带说话人JSON中的content，超长时截断且不截断代理对")
+    public void testBuildTitle() {
+        Assertions.assertNull(AgentChatSessionServiceImpl.buildTitle("  "));
+        Assertions.assertEquals("你好", AgentChatSessionServiceImpl.buildTitle("  你好 "));
+        Assertions.assertEquals("今天天气怎么样",
+                AgentChatSessionServiceImpl.buildTitle("{\"speaker\":\"张三\",\"content\":\"今天天气怎么样\"}"));
+        Assertions.assertEquals("{不是JSON", AgentChatSessionServiceImpl.buildTitle("{不是JSON"));
+
+        Assertions.assertEquals("a".repeat(50), AgentChatSessionServiceImpl.buildTitle("a".repeat(80)));
+        String emoji = "a".repeat(49) + "😀" + "b";
+        Assertions.assertEquals("a".repeat(49), AgentChatSessionServiceImpl.buildTitle(emoji));
+    }
+
+    @Test
+    @DisplayName("游标解析为最后聊天时间和主键，格式错误时抛出参数错误")
+    public void testParseCursor() {
+        AgentChatSessionEntity after = AgentChatSessionServiceImpl.parseCursor("1745657732000_42");
+        Assertions.assertEquals(new Date(1745657732000L), after.getLastChatAt());
+        Assertions.assertEquals(42L, after.getId());
+
+        for (String cursor : List.of("", "1745657732000", "abc_42", "1_2_3")) {
+            RenException e = Assertions.assertThrows(RenException.class,
+                    () -> AgentChatSessionServiceImpl.parseCursor(cursor));
+            Assertions.assertEquals(ErrorCode.PARAMS_GET_ERROR, e.getCode());
+        }
+    }
+
+    private static AgentChatHistoryEntity message(String agentId, String sessionId, AgentChatHistoryType type,
+            String content, long createdAt) {
+        AgentChatHistoryEntity entity = new AgentChatHistoryEntity();
+        entity.setAgentId(agentId);
+        entity.setSessionId(sessionId);
+        entity.setChatType(type.getValue());
+        entity.setContent(content);
+        entity.setCreatedAt(new Date(createdAt));
+        return entity;
+    }
+}
@@ -0,0 +1,161 @@
+package xiaozhi.modules.device;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.dto.DeviceOnlineEventsDTO;
+import xiaozhi.modules.device.online.DeviceOnlineStatus;
+import xiaozhi.modules.device.online.DeviceOnlineStatusCache;
+import xiaozhi.modules.device.online.DeviceStatusGateway;
+
+@DisplayName("设备在线状态缓存测试")
+public class DeviceOnlineStatusCacheTest {
+    private static final String ONLINE_DEVICE = "GID_default@@@aa_bb_cc_dd_ee_01@@@aa_bb_cc_dd_ee_01";
+    private static final String OFFLINE_DEVICE = "GID_default@@@aa_bb_cc_dd_ee_02@@@aa_bb_cc_dd_ee_02";
+
+    private StubGateway gateway;
+    private DeviceOnlineStatusCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        gateway = new StubGateway();
+        cache = new DeviceOnlineStatusCache(gateway, mock(RedisUtils.class), mock(RedisTemplate.class),
+                mock(RedisMessageListenerContainer.class));
+        cache.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cache.stop();
+    }
+
+    @Test
+    @DisplayName("首次查询等待网关返回实际状态，之后从内存读取")
+    public void testReadFromMemoryAfterFirstQuery() {
+        Set<String> clientIds = Set.of(ONLINE_DEVICE, OFFLINE_DEVICE);
+        Map<String, DeviceOnlineStatus> statuses = cache.getStatuses(clientIds);
+        Assertions.assertEquals(Boolean.TRUE, statuses.get(ONLINE_DEVICE).isAlive());
+        Assertions.assertFalse(statuses.get(OFFLINE_DEVICE).exists());
+        Assertions.assertEquals(1, gateway.queries.size());
+
+        statuses = cache.getStatuses(clientIds);
+        Assertions.assertEquals(2, statuses.size());
+        Assertions.assertEquals(1, gateway.queries.size());
+    }
+
+    @Test
+    @DisplayName("网关响应慢时首次查询限时返回，查询完成后读取到状态")
+    public void testColdLookupWaitBounded() throws InterruptedException {
+        gateway.blocked = true;
+        Set<String> clientIds = Set.of(ONLINE_DEVICE);
+        long start = System.nanoTime();
+        Assertions.assertTrue(cache.getStatuses(clientIds).isEmpty());
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+
+        gateway.blocked = false;
+        Assertions.assertEquals(Boolean.TRUE, awaitStatuses(clientIds).get(ONLINE_DEVICE).isAlive());
+    }
+
+    @Test
+    @DisplayName("查询之后收到的事件覆盖查询结果，不受网关时钟影响")
+    public void testEventsOverrideEarlierQuery() throws InterruptedException {
+        Set<String> clientIds = Set.of(ONLINE_DEVICE);
+        cache.getStatuses(clientIds);
+        long queriedAt = awaitStatuses(clientIds).get(ONLINE_DEVICE).updatedAt();
+
+        // 网关时钟比管理端慢一分钟
+        cache.onEvents(List.of(event(ONLINE_DEVICE, false, queriedAt - 60000)));
+        Assertions.assertEquals(Boolean.FALSE, cache.getStatuses(clientIds).get(ONLINE_DEVICE).isAlive());
+    }
+
+    @Test
+    @DisplayName("事件之间按网关时间排序，晚到的旧事件被丢弃")
+    public void testOutOfOrderEventsDropped() {
+        cache.onEvents(List.of(event(OFFLINE_DEVICE, false, 2000)));
+        cache.onEvents(List.of(event(OFFLINE_DEVICE, true, 1000)));
+        Assertions.assertEquals(Boolean.FALSE, cache.getStatuses(Set.of(OFFLINE_DEVICE)).get(OFFLINE_DEVICE).isAlive());
+    }
+
+    @Test
+    @DisplayName("同一设备的后台查询未完成时不重复提交")
+    public void testLookupSubmittedOnce() throws InterruptedException {
+        gateway.blocked = true;
+        Set<String> clientIds = Set.of(OFFLINE_DEVICE);
+        ExecutorService readers = Executors.newFixedThreadPool(10);
+        for (int i = 0; i < 20; i++) {
+            readers.execute(() -> cache.getStatuses(clientIds));
+        }
+        readers.shutdown();
+        Assertions.assertTrue(readers.awaitTermination(30, TimeUnit.SECONDS));
+        gateway.blocked = false;
+        awaitStatuses(clientIds);
+        Assertions.assertEquals(1, gateway.queries.size());
+    }
+
+    private Map<String, DeviceOnlineStatus> awaitStatuses(Set<String> clientIds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Map<String, DeviceOnlineStatus> statuses = cache.getStatuses(clientIds);
+        while (statuses.size() < clientIds.size() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            statuses = cache.getStatuses(clientIds);
+        }
+        Assertions.assertEquals(clientIds.size(), statuses.size());
+        return statuses;
+    }
+
+    private static DeviceOnlineEventsDTO.Event event(String clientId, boolean online, long timestamp) {
+        DeviceOnlineEventsDTO.Event event = new DeviceOnlineEventsDTO.Event();
+        event.setClientId(clientId);
+        event.setOnline(online);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+
+    /**
+     * 本地网关桩，只有ONLINE_DEVICE在线
+     */
+    private static class StubGateway implements DeviceStatusGateway {
+        private final List<Collection<String>> queries = new CopyOnWriteArrayList<>();
+        /**
+         * 为true时查询阻塞，模拟网关响应慢
+         */
+        private volatile boolean blocked;
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public Map<String, DeviceOnlineStatus> queryStatus(Collection<String> clientIds, long queriedAt) {
+            while (blocked) {
+                Thread.onSpinWait();
+            }
+            queries.add(List.copyOf(clientIds));
+            Map<String, DeviceOnlineStatus> result = new HashMap<>();
+            if (clientIds.contains(ONLINE_DEVICE)) {
+                result.put(ONLINE_DEVICE, new DeviceOnlineStatus(true, true, queriedAt));
+            }
+            return result;
+        }
+    }
+}
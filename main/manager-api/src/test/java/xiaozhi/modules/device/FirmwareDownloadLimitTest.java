@@ -0,0 +1,93 @@
+package xiaozhi.modules.device;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.controller.OTAMagController;
+import xiaozhi.modules.device.ota.FirmwareBlobStore;
+import xiaozhi.modules.device.redis.FirmwareDownloadTokenRedis;
+import xiaozhi.modules.device.service.OtaService;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+@DisplayName("固件下载次数测试")
+public class FirmwareDownloadLimitTest {
+    private static final String TOKEN = "token";
+    private static final int LIMIT = 2;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 与otaTokenConsume.lua、otaTokenRefund.lua相同的计数规则
+     */
+    private final AtomicInteger count = new AtomicInteger();
+    private OTAMagController controller;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path firmware = Files.write(dir.resolve("firmware.bin"), new byte[1024]);
+        String target = FirmwareDownloadTokenRedis.FILE_TARGET_PREFIX + firmware.toAbsolutePath();
+
+        FirmwareDownloadTokenRedis tokenRedis = mock(FirmwareDownloadTokenRedis.class);
+        when(tokenRedis.consume(TOKEN)).thenAnswer(invocation -> count.incrementAndGet() > LIMIT ? null : target);
+        doAnswer(invocation -> count.decrementAndGet()).when(tokenRedis).refund(TOKEN);
+
+        controller = new OTAMagController(mock(OtaService.class), mock(RedisUtils.class),
+                mock(SysParamsService.class), tokenRedis, mock(FirmwareBlobStore.class));
+    }
+
+    @Test
+    @DisplayName("Range请求同样计入下载次数，次数用完后续传请求被拒绝")
+    public void testRangeRequestsCounted() {
+        Assertions.assertEquals(HttpStatus.OK, download("bytes=0-", null).getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, download("bytes=512-", null).getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, download("bytes=0-", null).getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, download("bytes=512-", null).getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, download(null, null).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("条件请求返回304时不消耗下载次数")
+    public void testNotModifiedNotCounted() {
+        ResponseEntity<Resource> first = download(null, null);
+        Assertions.assertEquals(HttpStatus.OK, first.getStatusCode());
+        String eTag = first.getHeaders().getETag();
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(HttpStatus.NOT_MODIFIED, download(null, eTag).getStatusCode());
+        }
+        Assertions.assertEquals(1, count.get());
+        Assertions.assertEquals(HttpStatus.OK, download("bytes=512-", null).getStatusCode());
+    }
+
+    private ResponseEntity<Resource> download(String range, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/otaMag/download/" + TOKEN);
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return controller.downloadFirmware(TOKEN, range,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+    }
+}
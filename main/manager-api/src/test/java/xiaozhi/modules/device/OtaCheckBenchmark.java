@@ -0,0 +1,136 @@
+package xiaozhi.modules.device;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.ResponseEntity;
+
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.buffer.DeviceConnectionBuffer;
+import xiaozhi.modules.device.controller.OTAController;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.dto.DeviceReportReqDTO;
+import xiaozhi.modules.device.endpoint.WebSocketEndpointAssigner;
+import xiaozhi.modules.device.gateway.MqttGatewayClient;
+import xiaozhi.modules.device.online.DeviceOnlineStatusCache;
+import xiaozhi.modules.device.entity.OtaEntity;
+import xiaozhi.modules.device.ota.FirmwareDescriptor;
+import xiaozhi.modules.device.ota.LatestFirmwareIndex;
+import xiaozhi.modules.device.redis.FirmwareDownloadTokenRedis;
+import xiaozhi.modules.device.resolve.DeviceResolution;
+import xiaozhi.modules.device.resolve.DeviceResolutionCache;
+import xiaozhi.modules.device.service.impl.DeviceServiceImpl;
+import xiaozhi.modules.sys.entity.SysParamsEntity;
+import xiaozhi.modules.sys.params.SysParamsRegistry;
+import xiaozhi.modules.sys.params.SysParamsSnapshot;
+import xiaozhi.modules.sys.service.SysParamsService;
+import xiaozhi.modules.sys.service.SysUserUtilService;
+
+/**
+ * OTA检查接口基准测试
+ * <p>
+ * 以已绑定设备、开启认证和MQTT为场景，测量/ota请求（校验、checkDeviceActive、响应序列化）的延迟分布和单次请求分配的内存，
+ * Redis和数据库访问均以桩代替。直接运行main方法，关注结果中的p0.99和gc.alloc.rate.norm。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OtaCheckBenchmark {
+    private static final String MAC_ADDRESS = "aa:bb:cc:dd:ee:ff";
+
+    private OTAController controller;
+    private DeviceReportReqDTO report;
+
+    @Setup
+    public void setup() {
+        SysParamsService sysParamsService = stub(SysParamsService.class);
+        when(sysParamsService.getValue(Constant.SERVER_WEBSOCKET, true)).thenReturn("ws://127.0.0.1:8000/xiaozhi/v1/");
+        when(sysParamsService.getValue(Constant.SERVER_MQTT_GATEWAY, true)).thenReturn("127.0.0.1:1883");
+        when(sysParamsService.getValue("server.mqtt_signature_key", true)).thenReturn("mqtt-signature-key");
+        when(sysParamsService.getValue(Constant.SERVER_SECRET, true)).thenReturn("server-secret");
+
+        List<SysParamsEntity> params = new ArrayList<>();
+        SysParamsEntity authEnabled = new SysParamsEntity();
+        authEnabled.setParamCode(Constant.SERVER_AUTH_ENABLED);
+        authEnabled.setParamValue("true");
+        authEnabled.setValueType("boolean");
+        params.add(authEnabled);
+        SysParamsRegistry sysParamsRegistry = stub(SysParamsRegistry.class);
+        when(sysParamsRegistry.get()).thenReturn(new SysParamsSnapshot(params));
+
+        DeviceResolutionCache resolutionCache = stub(DeviceResolutionCache.class);
+        when(resolutionCache.resolve(MAC_ADDRESS)).thenReturn(new DeviceResolution(MAC_ADDRESS, MAC_ADDRESS,
+                "agent-1", 1L, "bread-compact-wifi", 1, true, 1));
+
+        OtaEntity ota = new OtaEntity();
+        ota.setId("ota-1");
+        ota.setType("bread-compact-wifi");
+        ota.setVersion("1.6.2");
+        LatestFirmwareIndex firmwareIndex = stub(LatestFirmwareIndex.class);
+        when(firmwareIndex.getLatest("bread-compact-wifi")).thenReturn(new FirmwareDescriptor(ota));
+        when(firmwareIndex.getDownloadBaseUrl()).thenReturn("http://127.0.0.1:8002/xiaozhi/otaMag/download/");
+
+        FirmwareDownloadTokenRedis tokenRedis = stub(FirmwareDownloadTokenRedis.class);
+        when(tokenRedis.issue(anyString(), any())).thenReturn("token");
+
+        DeviceServiceImpl deviceService = new DeviceServiceImpl(stub(DeviceDao.class), stub(SysUserUtilService.class),
+                sysParamsService, sysParamsRegistry, stub(RedisUtils.class), firmwareIndex, tokenRedis,
+                resolutionCache, stub(DeviceConnectionBuffer.class), new WebSocketEndpointAssigner(stub(RedisUtils.class)),
+                stub(DeviceOnlineStatusCache.class), stub(MqttGatewayClient.class));
+        controller = new OTAController(deviceService, sysParamsService);
+
+        report = new DeviceReportReqDTO();
+        DeviceReportReqDTO.Application application = new DeviceReportReqDTO.Application();
+        application.setVersion("1.6.0");
+        report.setApplication(application);
+        DeviceReportReqDTO.BoardInfo board = new DeviceReportReqDTO.BoardInfo();
+        board.setType("bread-compact-wifi");
+        report.setBoard(board);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> checkOTAVersion() {
+        return controller.checkOTAVersion(report, MAC_ADDRESS, MAC_ADDRESS);
+    }
+
+    /**
+     * 只保留桩行为，不记录调用，避免基准测试期间调用记录持续占用内存
+     */
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OtaCheckBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
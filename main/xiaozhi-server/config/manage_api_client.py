@@ -1,5 +1,9 @@
 import os
+import copy
+import json
 import base64
+import struct
+from collections import OrderedDict
 from typing import Optional, Dict
 
 import httpx
@@ -21,6 +25,9 @@ class ManageApiClient:
     _instance = None
     _async_clients = {}  # 为每个事件循环存储独立的客户端
     _secret = None
+    _etag_cache = OrderedDict()  # 条件请求缓存：缓存键 -> (ETag, 响应数据)
+    _etag_cache_size = 1024
+    _binary_report_supported = True  # 旧版manager-api没有二进制上报接口，返回404后改用JSON上报
 
     def __new__(cls, config):
         """单例模式确保全局唯一实例，并支持传入配置参数"""
@@ -80,14 +87,22 @@ class ManageApiClient:
             raise Exception("必须在异步上下文中调用")
 
     @classmethod
-    async def _async_request(cls, method: str, endpoint: str, **kwargs) -> Dict:
-        """发送单次异步HTTP请求并处理响应"""
+    async def _async_request(
+        cls, method: str, endpoint: str, cache_key: str = None, **kwargs
+    ) -> Dict:
+        """发送单次异步HTTP请求并处理响应，指定cache_key时携带上次的ETag，未变化时返回上次的数据"""
         # 确保客户端已创建
         client = await cls._ensure_async_client()
         endpoint = endpoint.lstrip("/")
+        cached = cls._etag_cache.get(cache_key) if cache_key else None
+        if cached:
+            kwargs["headers"] = {**kwargs.get("headers", {}), "If-None-Match": cached[0]}
         response = None
         try:
             response = await client.request(method, endpoint, **kwargs)
+            if cached and response.status_code == 304:
+                cls._etag_cache.move_to_end(cache_key)
+                return copy.deepcopy(cached[1])
             response.raise_for_status()
 
             result = response.json()
@@ -101,12 +116,26 @@ class ManageApiClient:
                 raise Exception(f"API返回错误: {result.get('msg', '未知错误')}")
 
             # 返回成功数据
-            return result.get("data") if result.get("code") == 0 else None
+            data = result.get("data")
+            if cache_key:
+                cls._remember_etag(cache_key, response.headers.get("ETag"), data)
+            return data
         finally:
             # 确保响应被关闭（即使异常也会执行）
             if response is not None:
                 await response.aclose()
 
+    @classmethod
+    def _remember_etag(cls, cache_key: str, etag: Optional[str], data):
+        """保存ETag和对应数据的副本，调用方修改返回值不影响缓存"""
+        if not etag:
+            cls._etag_cache.pop(cache_key, None)
+            return
+        cls._etag_cache[cache_key] = (etag, copy.deepcopy(data))
+        cls._etag_cache.move_to_end(cache_key)
+        while len(cls._etag_cache) > cls._etag_cache_size:
+            cls._etag_cache.popitem(last=False)
+
     @classmethod
     def _should_retry(cls, exception: Exception) -> bool:
         """判断异常是否应该重试"""
@@ -158,13 +187,14 @@ class ManageApiClient:
             except Exception:
                 pass
         cls._async_clients.clear()
+        cls._etag_cache.clear()
         cls._instance = None
 
 
 async def get_server_config() -> Optional[Dict]:
     """获取服务器基础配置"""
     return await ManageApiClient._instance._execute_async_request(
-        "POST", "/config/server-base"
+        "POST", "/config/server-base", cache_key="server-base"
     )
 
 
@@ -175,6 +205,7 @@ async def get_agent_models(
     return await ManageApiClient._instance._execute_async_request(
         "POST",
         "/config/agent-models",
+        cache_key=f"agent-models:{mac_address}",
         json={
             "macAddress": mac_address,
             "clientId": client_id,
@@ -198,19 +229,31 @@ async def generate_and_save_chat_summary(session_id: str) -> Optional[Dict]:
 async def report(
     mac_address: str, session_id: str, chat_type: int, content: str, audio, report_time
 ) -> Optional[Dict]:
-    """异步聊天记录上报"""
+    """异步聊天记录上报，优先使用二进制帧：4字节大端序元数据长度 + JSON元数据 + 原始音频；
+    manager-api不支持二进制上报时改用JSON上报，音频以base64编码"""
     if not content or not ManageApiClient._instance:
         return None
+    metadata = {
+        "macAddress": mac_address,
+        "sessionId": session_id,
+        "chatType": chat_type,
+        "content": content,
+        "reportTime": report_time,
+    }
     try:
+        if ManageApiClient._binary_report_supported:
+            try:
+                return await _report_binary(metadata, audio)
+            except httpx.HTTPStatusError as e:
+                if e.response.status_code != 404:
+                    raise
+                ManageApiClient._binary_report_supported = False
+                print("manager-api不支持二进制上报，改用JSON上报")
         return await ManageApiClient._instance._execute_async_request(
             "POST",
-            f"/agent/chat-history/report",
+            "/agent/chat-history/report",
             json={
-                "macAddress": mac_address,
-                "sessionId": session_id,
-                "chatType": chat_type,
-                "content": content,
-                "reportTime": report_time,
+                **metadata,
                 "audioBase64": (
                     base64.b64encode(audio).decode("utf-8") if audio else None
                 ),
@@ -221,6 +264,16 @@ async def report(
         return None
 
 
+async def _report_binary(metadata: Dict, audio) -> Optional[Dict]:
+    body = json.dumps(metadata, ensure_ascii=False).encode("utf-8")
+    return await ManageApiClient._instance._execute_async_request(
+        "POST",
+        "/agent/chat-history/report/binary",
+        content=struct.pack(">I", len(body)) + body + (audio or b""),
+        headers={"Content-Type": "application/octet-stream"},
+    )
+
+
 def init_service(config):
     ManageApiClient(config)
 